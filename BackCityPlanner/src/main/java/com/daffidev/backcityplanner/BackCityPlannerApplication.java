@@ -4,15 +4,22 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.cache.annotation.EnableCaching;
 
 @SpringBootApplication
+@EnableCaching
 public class BackCityPlannerApplication {
 
     public static final Logger WAKOLOGGER = LoggerFactory.getLogger(BackCityPlannerApplication.class);
 
-    public static void main(String[] args) {
-        SpringApplication.run(BackCityPlannerApplication.class, args);
+    /** Startup steps kept for StartupTimingsReporter and /actuator/startup. */
+    private static final int STARTUP_STEPS = 4096;
 
+    public static void main(String[] args) {
+        SpringApplication application = new SpringApplication(BackCityPlannerApplication.class);
+        application.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEPS));
+        application.run(args);
     }
 
 }
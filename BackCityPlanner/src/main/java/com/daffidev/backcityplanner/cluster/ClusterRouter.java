@@ -0,0 +1,241 @@
+package com.daffidev.backcityplanner.cluster;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cluster membership and request forwarding for multi-instance deployments.
+ *
+ * Every instance lists the same members in cluster.nodes and its own base URL in
+ * cluster.self. A {@link HashRing} over the members decides which one owns each
+ * rendering key (see {@link ClusterRoutingFilter}); only the owner downloads, decodes
+ * and renders that key, and the others forward to it. A member that refuses or times out
+ * the connection is skipped for cluster.retry-after-ms, its keys falling to the next
+ * member clockwise; one that is reached but slow keeps its keys.
+ *
+ * Successful forwarded GET responses are kept in a small near-cache bounded by bytes
+ * (cluster.near-cache.max-bytes) for cluster.near-cache.ttl-seconds, so hot tiles do
+ * not cross the network on every request.
+ *
+ * Disabled unless cluster.enabled=true.
+ */
+@Component
+public class ClusterRouter {
+
+	private static final Logger logger = LoggerFactory.getLogger(ClusterRouter.class);
+
+	/** Marks a forwarded request, which the receiver always serves itself. */
+	public static final String FORWARDED_HEADER = "X-Cluster-Forwarded-By";
+	/** Added to responses served on behalf of another node. */
+	public static final String OWNER_HEADER = "X-Cluster-Owner";
+
+	private static final List<String> FORWARDED_RESPONSE_HEADERS =
+			List.of("Content-Type", "Content-Encoding", "Cache-Control", "Content-Disposition", "Server-Timing",
+					"X-Raster-Width", "X-Raster-Height", "X-Raster-Encoding", "X-Raster-Scale", "X-Raster-Offset",
+					"X-Raster-NoData", "X-Raster-Transform");
+
+	private final boolean enabled;
+	private final String self;
+	private final HashRing ring;
+	private final long retryAfterMillis;
+	private final Duration forwardTimeout;
+	private final Map<String, Long> unavailableUntil = new ConcurrentHashMap<>();
+	private final Cache<String, ForwardedResponse> nearCache;
+	private final HttpClient client;
+
+	private final Counter forwarded;
+	private final Counter nearCacheHits;
+	private final Counter forwardFailures;
+
+	public ClusterRouter(MeterRegistry meterRegistry,
+						 @Value("${cluster.enabled:false}") boolean enabled,
+						 @Value("${cluster.nodes:}") String nodes,
+						 @Value("${cluster.self:http://localhost:${server.port:8080}}") String self,
+						 @Value("${cluster.virtual-nodes:128}") int virtualNodes,
+						 @Value("${cluster.retry-after-ms:10000}") long retryAfterMillis,
+						 @Value("${cluster.connect-timeout-ms:1000}") long connectTimeoutMillis,
+						 @Value("${cluster.forward-timeout-ms:60000}") long forwardTimeoutMillis,
+						 @Value("${cluster.near-cache.max-bytes:16777216}") long nearCacheMaxBytes,
+						 @Value("${cluster.near-cache.ttl-seconds:300}") long nearCacheTtlSeconds) {
+		this.self = normalize(self);
+		List<String> members = new ArrayList<>();
+		Arrays.stream(nodes.split(","))
+				.map(String::trim)
+				.filter(node -> !node.isEmpty())
+				.map(ClusterRouter::normalize)
+				.distinct()
+				.forEach(members::add);
+		if (enabled && !members.contains(this.self)) {
+			throw new IllegalStateException("cluster.self (" + this.self + ") must be one of cluster.nodes " + members);
+		}
+		this.enabled = enabled && members.size() > 1;
+		this.ring = members.isEmpty() ? null : new HashRing(members, virtualNodes);
+		this.retryAfterMillis = retryAfterMillis;
+		this.forwardTimeout = Duration.ofMillis(forwardTimeoutMillis);
+		this.nearCache = Caffeine.newBuilder()
+				.maximumWeight(nearCacheMaxBytes)
+				.weigher((String key, ForwardedResponse response) -> response.body().length)
+				.expireAfterWrite(nearCacheTtlSeconds, TimeUnit.SECONDS)
+				.build();
+		this.client = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_1_1)
+				.connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+				.build();
+		this.forwarded = Counter.builder("cluster.forwarded")
+				.description("Requests forwarded to the owning node")
+				.register(meterRegistry);
+		this.nearCacheHits = Counter.builder("cluster.nearcache.hits")
+				.description("Requests for keys owned elsewhere served from the near-cache")
+				.register(meterRegistry);
+		this.forwardFailures = Counter.builder("cluster.forward.failures")
+				.description("Forwards that failed to reach or hear back from the owning node")
+				.register(meterRegistry);
+		if (this.enabled) {
+			logger.info("Cluster mode: self={}, members={}, virtualNodes={}", this.self, members, virtualNodes);
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public String getSelf() {
+		return self;
+	}
+
+	public List<String> getNodes() {
+		return ring == null ? List.of(self) : ring.getNodes();
+	}
+
+	/** Members currently skipped after a failed forward. */
+	public List<String> getUnavailableNodes() {
+		long now = System.currentTimeMillis();
+		return getNodes().stream().filter(node -> unavailableUntil.getOrDefault(node, 0L) > now).toList();
+	}
+
+	public long getNearCacheSize() {
+		return nearCache.estimatedSize();
+	}
+
+	/**
+	 * The member that should serve a key, if it is not this instance.
+	 */
+	public Optional<String> remoteOwner(String key) {
+		if (!enabled) {
+			return Optional.empty();
+		}
+		long now = System.currentTimeMillis();
+		String owner = ring.owner(key, node -> node.equals(self) || unavailableUntil.getOrDefault(node, 0L) <= now);
+		return owner == null || owner.equals(self) ? Optional.empty() : Optional.of(owner);
+	}
+
+	/**
+	 * Response to a GET previously forwarded for the same path and query, if still cached.
+	 */
+	public Optional<ForwardedResponse> nearCached(String pathAndQuery) {
+		ForwardedResponse cached = nearCache.getIfPresent(pathAndQuery);
+		if (cached != null) {
+			nearCacheHits.increment();
+		}
+		return Optional.ofNullable(cached);
+	}
+
+	/**
+	 * Sends a request to its owner. If the owner cannot be connected to it is skipped for
+	 * a while; a response timeout leaves it in the ring, since a slow download or store
+	 * on a healthy owner is not a reason to move all of its keys.
+	 *
+	 * @param headers request headers to pass on (e.g. Accept, Content-Type)
+	 * @param body request body, empty for GET
+	 * @return the owner's response, whatever its status
+	 * @throws IOException if the owner cannot be reached
+	 */
+	public ForwardedResponse forward(String owner, String method, String pathAndQuery,
+									 Map<String, String> headers, byte[] body) throws IOException {
+		HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(owner + pathAndQuery))
+				.timeout(forwardTimeout)
+				.header(FORWARDED_HEADER, self)
+				.method(method, body.length == 0
+						? HttpRequest.BodyPublishers.noBody()
+						: HttpRequest.BodyPublishers.ofByteArray(body));
+		headers.forEach(request::header);
+
+		HttpResponse<byte[]> response;
+		try {
+			response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while forwarding to " + owner);
+		} catch (IOException e) {
+			forwardFailures.increment();
+			if (isConnectFailure(e)) {
+				markUnavailable(owner, e.toString());
+			}
+			throw e;
+		}
+
+		forwarded.increment();
+		ForwardedResponse result = new ForwardedResponse(owner, response.statusCode(), headers(response), response.body());
+		if ("GET".equals(method) && response.statusCode() == 200) {
+			nearCache.put(pathAndQuery, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Whether a failed forward never reached the owner, as opposed to an owner that was
+	 * reached but answered too slowly or dropped the connection. Only the former moves
+	 * the owner's keys to other members.
+	 */
+	public static boolean isConnectFailure(IOException e) {
+		return e instanceof ConnectException || e instanceof HttpConnectTimeoutException
+				|| e.getCause() instanceof ConnectException;
+	}
+
+	private void markUnavailable(String node, String reason) {
+		unavailableUntil.put(node, System.currentTimeMillis() + retryAfterMillis);
+		logger.warn("Cluster node {} unavailable ({}); serving its keys locally for {} ms", node, reason, retryAfterMillis);
+	}
+
+	private static Map<String, String> headers(HttpResponse<?> response) {
+		Map<String, String> headers = new LinkedHashMap<>();
+		for (String name : FORWARDED_RESPONSE_HEADERS) {
+			response.headers().firstValue(name).ifPresent(value -> headers.put(name, value));
+		}
+		return headers;
+	}
+
+	private static String normalize(String node) {
+		return node.trim().replaceAll("/+$", "");
+	}
+
+	/**
+	 * Status, selected headers and body of a response from the owning node.
+	 */
+	public record ForwardedResponse(String owner, int status, Map<String, String> headers, byte[] body) {
+	}
+}
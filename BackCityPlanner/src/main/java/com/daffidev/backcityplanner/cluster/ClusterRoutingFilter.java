@@ -0,0 +1,196 @@
+package com.daffidev.backcityplanner.cluster;
+
+import com.daffidev.backcityplanner.tracing.RequestTracing;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Sends rendering requests to the cluster member that owns them (see {@link ClusterRouter}).
+ *
+ * Ownership is decided per source raster rather than per rendered image, so one member
+ * downloads and decodes each country-year and serves all of its tiles, points, stats
+ * and regions from memory:
+ * <ul>
+ *   <li>/api/rasters/{iso3}/{year}/... is keyed by iso3 and year;</li>
+ *   <li>/api/rasters/{iso3}/animation by iso3 and the animation parameters;</li>
+ *   <li>/api/worldpop/tiff/convert by the source URL.</li>
+ * </ul>
+ * Requests already forwarded by another member are always served locally, and so is a
+ * request whose owner cannot be reached. An owner that is reached but does not answer
+ * within cluster.forward-timeout-ms is still working on the request, so the client gets
+ * a 504 rather than a second copy of the work.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class ClusterRoutingFilter extends OncePerRequestFilter {
+
+	private static final Logger logger = LoggerFactory.getLogger(ClusterRoutingFilter.class);
+
+	private static final Pattern RASTER_PATH = Pattern.compile("^/api/rasters/([A-Za-z]{3})/(\\d{4})/.+");
+	private static final Pattern ANIMATION_PATH = Pattern.compile("^/api/rasters/([A-Za-z]{3})/animation$");
+	private static final String CONVERT_PATH = "/api/worldpop/tiff/convert";
+
+	private final ClusterRouter router;
+
+	public ClusterRoutingFilter(ClusterRouter router) {
+		this.router = router;
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		return !router.isEnabled() || request.getHeader(ClusterRouter.FORWARDED_HEADER) != null
+				|| key(request) == null;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		Optional<String> owner = router.remoteOwner(key(request));
+		if (owner.isEmpty()) {
+			chain.doFilter(request, response);
+			return;
+		}
+
+		String pathAndQuery = request.getQueryString() == null
+				? request.getRequestURI()
+				: request.getRequestURI() + '?' + request.getQueryString();
+		boolean get = "GET".equals(request.getMethod());
+		Optional<ClusterRouter.ForwardedResponse> cached = get ? router.nearCached(pathAndQuery) : Optional.empty();
+		if (cached.isPresent()) {
+			write(cached.get(), response);
+			return;
+		}
+
+		// The body is read once for the forward and replayed if the request is served locally
+		byte[] body = get ? new byte[0] : request.getInputStream().readAllBytes();
+		ClusterRouter.ForwardedResponse forwarded;
+		try (RequestTracing.Span span = RequestTracing.span("forward")) {
+			Map<String, String> headers = new LinkedHashMap<>();
+			copyHeader(request, headers, "Accept");
+			copyHeader(request, headers, "Content-Type");
+			forwarded = router.forward(owner.get(), request.getMethod(), pathAndQuery, headers, body);
+			span.bytes(forwarded.body().length);
+		} catch (IOException e) {
+			if (e instanceof HttpTimeoutException && !ClusterRouter.isConnectFailure(e)) {
+				// The owner is alive and still working on it: serving it here too would double the work
+				logger.warn("Owner {} did not answer {} in time", owner.get(), pathAndQuery);
+				response.sendError(HttpServletResponse.SC_GATEWAY_TIMEOUT, "Owner " + owner.get() + " did not answer in time");
+				return;
+			}
+			logger.warn("Serving {} locally, owner {} failed: {}", pathAndQuery, owner.get(), e.toString());
+			chain.doFilter(get ? request : new CachedBodyRequest(request, body), response);
+			return;
+		}
+		write(forwarded, response);
+	}
+
+	private static void write(ClusterRouter.ForwardedResponse forwarded, HttpServletResponse response) throws IOException {
+		response.setStatus(forwarded.status());
+		forwarded.headers().forEach(response::setHeader);
+		response.setHeader(ClusterRouter.OWNER_HEADER, forwarded.owner());
+		response.setContentLength(forwarded.body().length);
+		response.getOutputStream().write(forwarded.body());
+	}
+
+	private static void copyHeader(HttpServletRequest request, Map<String, String> headers, String name) {
+		String value = request.getHeader(name);
+		if (value != null) {
+			headers.put(name, value);
+		}
+	}
+
+	/**
+	 * A request whose body was already read, replaying the stored bytes.
+	 */
+	private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+		private final byte[] body;
+
+		CachedBodyRequest(HttpServletRequest request, byte[] body) {
+			super(request);
+			this.body = body;
+		}
+
+		@Override
+		public ServletInputStream getInputStream() {
+			ByteArrayInputStream in = new ByteArrayInputStream(body);
+			return new ServletInputStream() {
+				@Override
+				public int read() {
+					return in.read();
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) {
+					return in.read(b, off, len);
+				}
+
+				@Override
+				public boolean isFinished() {
+					return in.available() == 0;
+				}
+
+				@Override
+				public boolean isReady() {
+					return true;
+				}
+
+				@Override
+				public void setReadListener(ReadListener listener) {
+					throw new UnsupportedOperationException("Cached request bodies are read synchronously");
+				}
+			};
+		}
+
+		@Override
+		public BufferedReader getReader() throws UnsupportedEncodingException {
+			String encoding = getCharacterEncoding() != null ? getCharacterEncoding() : StandardCharsets.UTF_8.name();
+			return new BufferedReader(new InputStreamReader(getInputStream(), encoding));
+		}
+	}
+
+	/**
+	 * Ownership key of a request, or null for requests that are not routed.
+	 */
+	static String key(HttpServletRequest request) {
+		String path = request.getRequestURI();
+		Matcher raster = RASTER_PATH.matcher(path);
+		if (raster.matches()) {
+			return raster.group(1).toUpperCase(Locale.ROOT) + '/' + raster.group(2);
+		}
+		Matcher animation = ANIMATION_PATH.matcher(path);
+		if (animation.matches()) {
+			String query = request.getQueryString();
+			return animation.group(1).toUpperCase(Locale.ROOT) + "/animation" + (query == null ? "" : '?' + query);
+		}
+		if (CONVERT_PATH.equals(path) && request.getParameter("url") != null) {
+			return request.getParameter("url");
+		}
+		return null;
+	}
+}
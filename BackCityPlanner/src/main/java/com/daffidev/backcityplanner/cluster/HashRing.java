@@ -0,0 +1,87 @@
+package com.daffidev.backcityplanner.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Consistent-hash ring over cluster nodes.
+ *
+ * Each node is placed on the ring at {@code virtualNodes} pseudo-random points; a key
+ * belongs to the first node clockwise from the key's own hash. Adding or removing a
+ * node therefore only moves the keys between that node's points and their
+ * predecessors, about 1/N of them, and the many points per node keep the share of
+ * each node close to even. Immutable.
+ */
+public final class HashRing {
+
+	private final List<String> nodes;
+	private final TreeMap<Long, String> ring = new TreeMap<>();
+
+	public HashRing(List<String> nodes, int virtualNodes) {
+		if (nodes.isEmpty()) {
+			throw new IllegalArgumentException("A hash ring needs at least one node");
+		}
+		if (virtualNodes < 1) {
+			throw new IllegalArgumentException("virtualNodes must be at least 1");
+		}
+		this.nodes = List.copyOf(nodes);
+		for (String node : this.nodes) {
+			for (int i = 0; i < virtualNodes; i++) {
+				ring.put(hash(node + '#' + i), node);
+			}
+		}
+	}
+
+	public List<String> getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Node owning a key.
+	 */
+	public String owner(String key) {
+		return owner(key, node -> true);
+	}
+
+	/**
+	 * First node clockwise from the key that is available, e.g. skipping nodes that
+	 * failed recently; their keys fall to their successors and return once they are back.
+	 *
+	 * @return the owner, or null if no node is available
+	 */
+	public String owner(String key, Predicate<String> available) {
+		long hash = hash(key);
+		for (Map.Entry<Long, String> entry : ring.tailMap(hash, true).entrySet()) {
+			if (available.test(entry.getValue())) {
+				return entry.getValue();
+			}
+		}
+		for (Map.Entry<Long, String> entry : ring.headMap(hash, false).entrySet()) {
+			if (available.test(entry.getValue())) {
+				return entry.getValue();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * First 8 bytes of the MD5 digest: stable across JVMs and well spread.
+	 */
+	static long hash(String value) {
+		try {
+			byte[] digest = MessageDigest.getInstance("MD5").digest(value.getBytes(StandardCharsets.UTF_8));
+			long hash = 0;
+			for (int i = 0; i < 8; i++) {
+				hash = (hash << 8) | (digest[i] & 0xFF);
+			}
+			return hash;
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("MD5 is not available", e);
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package com.daffidev.backcityplanner.controllers;
+
+import com.daffidev.backcityplanner.cluster.ClusterRouter;
+import com.daffidev.backcityplanner.dto.ClusterStatusDto;
+import com.daffidev.backcityplanner.tracing.RequestTrace;
+import com.daffidev.backcityplanner.tracing.SlowRequestLog;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * Controller for request diagnostics.
+ */
+@RestController
+@RequestMapping("/api/diagnostics")
+public class DiagnosticsController {
+
+	private final SlowRequestLog slowRequestLog;
+	private final ClusterRouter clusterRouter;
+
+	public DiagnosticsController(SlowRequestLog slowRequestLog, ClusterRouter clusterRouter) {
+		this.slowRequestLog = slowRequestLog;
+		this.clusterRouter = clusterRouter;
+	}
+
+	/**
+	 * Lists the slowest traced requests with their per-stage durations and byte counts.
+	 * Empty when tracing is disabled.
+	 *
+	 * Example: GET /api/diagnostics/slow-requests
+	 *
+	 * @return retained requests, slowest first
+	 */
+	@GetMapping("/slow-requests")
+	public ResponseEntity<List<RequestTrace.Snapshot>> getSlowRequests() {
+		return ResponseEntity.ok(slowRequestLog.getSlowest());
+	}
+
+	/**
+	 * Clears the slow-request log.
+	 *
+	 * Example: DELETE /api/diagnostics/slow-requests
+	 */
+	@DeleteMapping("/slow-requests")
+	public ResponseEntity<Void> clearSlowRequests() {
+		slowRequestLog.clear();
+		return ResponseEntity.noContent().build();
+	}
+
+	/**
+	 * This instance's view of the cluster: members, members currently skipped and
+	 * near-cache size.
+	 *
+	 * Example: GET /api/diagnostics/cluster
+	 */
+	@GetMapping("/cluster")
+	public ResponseEntity<ClusterStatusDto> getCluster() {
+		return ResponseEntity.ok(new ClusterStatusDto(clusterRouter.isEnabled(), clusterRouter.getSelf(),
+				clusterRouter.getNodes(), clusterRouter.getUnavailableNodes(), clusterRouter.getNearCacheSize()));
+	}
+}
@@ -0,0 +1,182 @@
+package com.daffidev.backcityplanner.controllers;
+
+import com.daffidev.backcityplanner.dto.GraficoPageDto;
+import com.daffidev.backcityplanner.dto.PopulationImageDto;
+import com.daffidev.backcityplanner.entities.Grafico;
+import com.daffidev.backcityplanner.services.GraficoService;
+import com.daffidev.backcityplanner.services.GraficoWriteBehindQueue;
+import com.daffidev.backcityplanner.services.MapService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Controller for the stored population graphics ('grafico' table).
+ */
+@RestController
+@RequestMapping("/api/graphics")
+public class GraficoController {
+
+	private static final Logger logger = LoggerFactory.getLogger(GraficoController.class);
+
+	private final GraficoService graficoService;
+	private final MapService mapService;
+	private final GraficoWriteBehindQueue writeBehindQueue;
+
+	public GraficoController(GraficoService graficoService, MapService mapService,
+							 GraficoWriteBehindQueue writeBehindQueue) {
+		this.graficoService = graficoService;
+		this.mapService = mapService;
+		this.writeBehindQueue = writeBehindQueue;
+	}
+
+	/**
+	 * Lists stored graphics page by page, ordered by name, year and id.
+	 * Items carry only id, name and year.
+	 *
+	 * Example: GET /api/graphics?limit=100
+	 * Example: GET /api/graphics?name=MEX&cursor=TUVYCjIwMjAKNDI
+	 *
+	 * @param name optional name/ISO3 filter
+	 * @param cursor next_cursor from the previous page
+	 * @param limit page size (default 100, max 1000)
+	 * @return the page and the cursor for the next one
+	 */
+	@GetMapping
+	public ResponseEntity<GraficoPageDto> list(@RequestParam(name = "name", required = false) String name,
+											   @RequestParam(name = "cursor", required = false) String cursor,
+											   @RequestParam(name = "limit", defaultValue = "100") int limit) {
+		try {
+			return ResponseEntity.ok(graficoService.getGraphicsPage(name, cursor, limit));
+		} catch (IllegalArgumentException e) {
+			logger.warn("Rejected graphics page request: {}", e.getMessage());
+			return ResponseEntity.badRequest().build();
+		}
+	}
+
+	/**
+	 * Exports stored graphics as newline-delimited JSON, streamed row by row.
+	 *
+	 * Example: GET /api/graphics/export
+	 * Example: GET /api/graphics/export?name=MEX
+	 *
+	 * @param name optional name/ISO3 filter
+	 * @param response servlet response the rows are written to
+	 * @throws IOException if writing the response fails
+	 */
+	@GetMapping("/export")
+	public void export(@RequestParam(name = "name", required = false) String name,
+					   HttpServletResponse response) throws IOException {
+		response.setContentType("application/x-ndjson");
+		response.setCharacterEncoding("UTF-8");
+		response.setHeader("Content-Disposition", "attachment; filename=\"graficos.ndjson\"");
+		graficoService.exportGraphics(name, response.getOutputStream());
+	}
+
+	/**
+	 * Retrieves the stored graphics for a name (ISO3).
+	 *
+	 * Example: GET /api/graphics/MEX
+	 *
+	 * @param name the name/ISO3 to search for
+	 * @return List of stored Grafico entities
+	 */
+	@GetMapping("/{name}")
+	public ResponseEntity<List<Grafico>> getByName(@PathVariable String name) {
+		List<Grafico> graficos = graficoService.getGraphicsByName(name);
+		if (graficos.isEmpty()) {
+			return ResponseEntity.noContent().build();
+		}
+		return ResponseEntity.ok(graficos);
+	}
+
+	/**
+	 * Retrieves the stored graphic for a name (ISO3) and year.
+	 *
+	 * Example: GET /api/graphics/MEX/2020
+	 *
+	 * @param name the name/ISO3 to search for
+	 * @param year the population year
+	 * @return the stored Grafico, or 404 if there is none
+	 */
+	@GetMapping("/{name}/{year}")
+	public ResponseEntity<Grafico> getByNameAndYear(@PathVariable String name, @PathVariable Integer year) {
+		return ResponseEntity.of(graficoService.getGraphicByNameAndYear(name, year));
+	}
+
+	/**
+	 * Fetches population images for several countries from WorldPop and upserts them
+	 * in one transaction, stored under their ISO3 code. Safe to repeat.
+	 * In write-behind mode the rows are queued and 202 Accepted is returned instead.
+	 *
+	 * Example: POST /api/graphics/ingest?iso3=MEX,COL,PER
+	 *
+	 * @param iso3 ISO3 country codes to ingest
+	 * @return List of saved Grafico entities
+	 */
+	@PostMapping("/ingest")
+	public ResponseEntity<List<Grafico>> ingest(@RequestParam(name = "iso3") List<String> iso3) {
+		logger.info("Bulk ingest requested for {} countries", iso3.size());
+
+		Map<String, List<PopulationImageDto>> dtosByName = new LinkedHashMap<>();
+		for (String code : iso3) {
+			List<PopulationImageDto> dtos = mapService.getPopulationImages(code);
+			if (dtos.isEmpty()) {
+				logger.warn("No population images to ingest for iso3={}", code);
+				continue;
+			}
+			dtosByName.put(code, dtos);
+		}
+
+		if (dtosByName.isEmpty()) {
+			return ResponseEntity.noContent().build();
+		}
+		return save(dtosByName);
+	}
+
+	/**
+	 * Upserts already-fetched graphics, keyed by name.
+	 * In write-behind mode the rows are queued and 202 Accepted is returned instead.
+	 *
+	 * Example: POST /api/graphics/bulk
+	 * Body: {"MEX": [{"popyear": 2020, "url_img": "https://..."}], "COL": [...]}
+	 *
+	 * @param dtosByName DTOs to save, keyed by the name to store them under
+	 * @return List of saved Grafico entities
+	 */
+	@PostMapping("/bulk")
+	public ResponseEntity<List<Grafico>> bulkSave(@RequestBody Map<String, List<PopulationImageDto>> dtosByName) {
+		if (dtosByName.isEmpty()) {
+			return ResponseEntity.badRequest().build();
+		}
+		return save(dtosByName);
+	}
+
+	private ResponseEntity<List<Grafico>> save(Map<String, List<PopulationImageDto>> dtosByName) {
+		if (!writeBehindQueue.isEnabled()) {
+			return ResponseEntity.ok(graficoService.bulkSavePopulationGraphics(dtosByName));
+		}
+
+		int queued;
+		try {
+			queued = writeBehindQueue.enqueue(dtosByName);
+		} catch (GraficoWriteBehindQueue.QueueFullException e) {
+			logger.warn("Rejected graphics save, nothing queued: {}", e.getMessage());
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+					.header(HttpHeaders.RETRY_AFTER, "1")
+					.build();
+		}
+		return ResponseEntity.accepted()
+				.header("X-Queued-Rows", Integer.toString(queued))
+				.build();
+	}
+}
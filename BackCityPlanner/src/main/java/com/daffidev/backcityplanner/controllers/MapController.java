@@ -1,7 +1,10 @@
 package com.daffidev.backcityplanner.controllers;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.daffidev.backcityplanner.scheduling.WorkPriority;
+import com.daffidev.backcityplanner.scheduling.WorkScheduler;
 import com.daffidev.backcityplanner.services.MapService;
+import com.daffidev.backcityplanner.services.PngMode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpHeaders;
@@ -20,9 +23,11 @@ public class MapController {
     private static final Logger logger = LoggerFactory.getLogger(MapController.class);
 
     private final MapService mapService;
+    private final WorkScheduler scheduler;
 
-    public MapController(MapService mapService) {
+    public MapController(MapService mapService, WorkScheduler scheduler) {
         this.mapService = mapService;
+        this.scheduler = scheduler;
     }
 
     @GetMapping()
@@ -44,11 +49,22 @@ public class MapController {
     }
 
 
+    /**
+	 * Downloads a TIFF and converts it to PNG. mode=indexed writes density classes to a
+	 * palette PNG (transparent nodata) instead of the TIFF's own layout.
+	 *
+	 * Example: GET /api/worldpop/tiff/convert?url=https://...tif
+	 * Example: GET /api/worldpop/tiff/convert?url=https://...tif&mode=indexed&classes=15
+	 */
     @GetMapping("/tiff/convert")
-	public ResponseEntity<byte[]> convertTiffFromUrl(@RequestParam String url) {
+	public ResponseEntity<byte[]> convertTiffFromUrl(@RequestParam String url,
+													 @RequestParam(name = "mode", defaultValue = "rgba") String mode,
+													 @RequestParam(name = "classes", defaultValue = "${png.indexed.classes:15}") int classes) {
 		try {
 			logger.info("Received request to convert TIFF from URL: {}", url);
-			byte[] pngData = mapService.downloadAndConvertTiffToPng(url);
+			PngMode pngMode = PngMode.parse(mode);
+			byte[] pngData = scheduler.run(WorkPriority.STANDARD,
+					() -> mapService.downloadAndConvertTiffToPng(url, pngMode, classes));
 
 			HttpHeaders headers = new HttpHeaders();
 			headers.setContentType(MediaType.IMAGE_PNG);
@@ -56,6 +72,9 @@ public class MapController {
 			headers.set("Content-Disposition", "inline; filename=\"converted.png\"");
 
 			return new ResponseEntity<>(pngData, headers, HttpStatus.OK);
+		} catch (IllegalArgumentException e) {
+			logger.warn("Rejected TIFF conversion request: {}", e.getMessage());
+			return ResponseEntity.badRequest().build();
 		} catch (IOException e) {
 			logger.error("Failed to convert TIFF from URL: {}", url, e);
 			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -64,14 +83,16 @@ public class MapController {
 
     /**
 	 * Accepts a TIFF file upload and converts it to PNG.
-	 * Returns the PNG image directly in the response.
+	 * Returns the PNG image directly in the response; mode=indexed as for /tiff/convert.
 	 *
 	 * Example: POST /api/worldpop/tiff/upload
 	 * Content-Type: multipart/form-data
 	 * Body: file=@map.tiff
 	 */
 	@PostMapping("/tiff/upload")
-	public ResponseEntity<byte[]> convertTiffFromUpload(@RequestParam("file") MultipartFile file) {
+	public ResponseEntity<byte[]> convertTiffFromUpload(@RequestParam("file") MultipartFile file,
+														@RequestParam(name = "mode", defaultValue = "rgba") String mode,
+														@RequestParam(name = "classes", defaultValue = "${png.indexed.classes:15}") int classes) {
 		try {
 			if (file.isEmpty()) {
 				logger.warn("Received empty file upload");
@@ -80,7 +101,8 @@ public class MapController {
 
 			logger.info("Received TIFF file upload: {} ({} bytes)", file.getOriginalFilename(), file.getSize());
 			byte[] tiffData = file.getBytes();
-			byte[] pngData = mapService.convertTiffToPng(tiffData);
+			PngMode pngMode = PngMode.parse(mode);
+			byte[] pngData = scheduler.run(WorkPriority.STANDARD, () -> mapService.convertTiffToPng(tiffData, pngMode, classes));
 
 			HttpHeaders headers = new HttpHeaders();
 			headers.setContentType(MediaType.IMAGE_PNG);
@@ -91,6 +113,9 @@ public class MapController {
 			headers.set("Content-Disposition", "inline; filename=\"" + filename + "\"");
 
 			return new ResponseEntity<>(pngData, headers, HttpStatus.OK);
+		} catch (IllegalArgumentException e) {
+			logger.warn("Rejected TIFF upload conversion: {}", e.getMessage());
+			return ResponseEntity.badRequest().build();
 		} catch (IOException e) {
 			logger.error("Failed to convert uploaded TIFF file", e);
 			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -0,0 +1,106 @@
+package com.daffidev.backcityplanner.controllers;
+
+import com.daffidev.backcityplanner.dto.PopulationGrowth;
+import com.daffidev.backcityplanner.entities.PopulationStat;
+import com.daffidev.backcityplanner.scheduling.WorkPriority;
+import com.daffidev.backcityplanner.scheduling.WorkScheduler;
+import com.daffidev.backcityplanner.services.PopulationStatsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Controller for the population time series used by the dashboard.
+ */
+@RestController
+@RequestMapping("/api/population")
+public class PopulationStatsController {
+
+	private static final Logger logger = LoggerFactory.getLogger(PopulationStatsController.class);
+
+	private final PopulationStatsService populationStatsService;
+	private final WorkScheduler scheduler;
+
+	public PopulationStatsController(PopulationStatsService populationStatsService, WorkScheduler scheduler) {
+		this.populationStatsService = populationStatsService;
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Downloads every available year of a country and stores its figures.
+	 * Runs as bulk work, so it yields to tile and preview requests between bands.
+	 *
+	 * Example: POST /api/population/ingest?iso3=MEX
+	 *
+	 * @param iso3 ISO3 country code
+	 * @return the stored series
+	 */
+	@PostMapping("/ingest")
+	public ResponseEntity<List<PopulationStat>> ingest(@RequestParam(name = "iso3") String iso3) {
+		logger.info("Population stats ingest requested for iso3={}", iso3);
+		List<PopulationStat> series;
+		try {
+			series = scheduler.run(WorkPriority.BULK, () -> populationStatsService.ingestCountry(iso3));
+		} catch (IOException e) {
+			logger.error("Population stats ingest failed for iso3={}", iso3, e);
+			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+		}
+		if (series.isEmpty()) {
+			return ResponseEntity.noContent().build();
+		}
+		return ResponseEntity.ok(series);
+	}
+
+	/**
+	 * Retrieves the stored series of a country.
+	 *
+	 * Example: GET /api/population/MEX/series?from=2000&to=2020
+	 */
+	@GetMapping("/{iso3}/series")
+	public ResponseEntity<List<PopulationStat>> getSeries(@PathVariable String iso3,
+														  @RequestParam(name = "from", required = false) Integer from,
+														  @RequestParam(name = "to", required = false) Integer to) {
+		List<PopulationStat> series = populationStatsService.getSeries(iso3, from, to);
+		if (series.isEmpty()) {
+			return ResponseEntity.noContent().build();
+		}
+		return ResponseEntity.ok(series);
+	}
+
+	/**
+	 * Growth rate and CAGR of a country between two years.
+	 *
+	 * Example: GET /api/population/MEX/growth?from=2000&to=2020
+	 */
+	@GetMapping("/{iso3}/growth")
+	public ResponseEntity<PopulationGrowth> getGrowth(@PathVariable String iso3,
+													  @RequestParam(name = "from") int from,
+													  @RequestParam(name = "to") int to) {
+		try {
+			return ResponseEntity.of(populationStatsService.getGrowth(iso3, from, to));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		}
+	}
+
+	/**
+	 * Fastest-growing countries by CAGR between two years.
+	 *
+	 * Example: GET /api/population/growth/top?from=2000&to=2020&limit=10
+	 */
+	@GetMapping("/growth/top")
+	public ResponseEntity<List<PopulationGrowth>> getTopGrowth(@RequestParam(name = "from") int from,
+															   @RequestParam(name = "to") int to,
+															   @RequestParam(name = "limit", defaultValue = "10") int limit) {
+		try {
+			return ResponseEntity.ok(populationStatsService.getTopGrowth(from, to, limit));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		}
+	}
+}
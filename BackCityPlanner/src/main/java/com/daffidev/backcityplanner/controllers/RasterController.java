@@ -0,0 +1,405 @@
+package com.daffidev.backcityplanner.controllers;
+
+import com.daffidev.backcityplanner.dto.AnimationDto;
+import com.daffidev.backcityplanner.dto.CatchmentDto;
+import com.daffidev.backcityplanner.dto.CatchmentRequestDto;
+import com.daffidev.backcityplanner.dto.RasterCacheStatsDto;
+import com.daffidev.backcityplanner.dto.RasterPointDto;
+import com.daffidev.backcityplanner.dto.StoredRasterDto;
+import com.daffidev.backcityplanner.raster.BinaryRasterWriter;
+import com.daffidev.backcityplanner.raster.GeoTransform;
+import com.daffidev.backcityplanner.raster.RasterSummary;
+import com.daffidev.backcityplanner.scheduling.WorkPriority;
+import com.daffidev.backcityplanner.scheduling.WorkScheduler;
+import com.daffidev.backcityplanner.services.AnimationService;
+import com.daffidev.backcityplanner.services.CatchmentService;
+import com.daffidev.backcityplanner.services.DecodedRasterCache;
+import com.daffidev.backcityplanner.services.PngMode;
+import com.daffidev.backcityplanner.services.RasterService;
+import com.daffidev.backcityplanner.services.UrbanExtentService;
+import com.daffidev.backcityplanner.tracing.RequestTracing;
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Controller for tiles, point queries and statistics served from decoded
+ * population rasters kept in memory, and for region renders read from the
+ * local tiled store. Reads run as interactive work on the {@link WorkScheduler};
+ * storing a raster runs as bulk work.
+ *
+ * Tiles and regions are also served uncoloured as binary arrays (.bin) for clients
+ * that colour and query densities themselves. The body is a little-endian float32,
+ * uint16 or uint8 array of width × height cells, row by row from the north-west;
+ * the X-Raster-* headers carry its size, encoding, {@code value = offset + code * scale},
+ * the nodata marker and the grid's transform (lon, lat of the north-west corner and
+ * cell width and height in degrees). With deflate=true the body is sent with
+ * Content-Encoding: deflate, which browsers inflate transparently.
+ */
+@RestController
+@RequestMapping("/api/rasters")
+public class RasterController {
+
+	private static final Logger logger = LoggerFactory.getLogger(RasterController.class);
+
+	private final RasterService rasterService;
+	private final DecodedRasterCache rasterCache;
+	private final WorkScheduler scheduler;
+	private final AnimationService animationService;
+	private final UrbanExtentService urbanExtentService;
+	private final CatchmentService catchmentService;
+	private final int deflateLevel;
+
+	public RasterController(RasterService rasterService, DecodedRasterCache rasterCache, WorkScheduler scheduler,
+							AnimationService animationService, UrbanExtentService urbanExtentService,
+							CatchmentService catchmentService,
+							@Value("${raster.binary.deflate-level:6}") int deflateLevel) {
+		this.rasterService = rasterService;
+		this.rasterCache = rasterCache;
+		this.scheduler = scheduler;
+		this.animationService = animationService;
+		this.urbanExtentService = urbanExtentService;
+		this.catchmentService = catchmentService;
+		this.deflateLevel = deflateLevel;
+	}
+
+	/**
+	 * Renders a 256×256 PNG tile of a country's density raster.
+	 * Level 0 is full resolution; each level up halves it.
+	 * mode=indexed writes a palette PNG of density classes instead of ARGB.
+	 *
+	 * Example: GET /api/rasters/MEX/2020/tiles/3/1/0.png
+	 * Example: GET /api/rasters/MEX/2020/tiles/3/1/0.png?mode=indexed&classes=7
+	 */
+	@GetMapping("/{iso3}/{year}/tiles/{level}/{x}/{y}.png")
+	public ResponseEntity<byte[]> getTile(@PathVariable String iso3, @PathVariable int year, @PathVariable int level,
+										  @PathVariable int x, @PathVariable int y,
+										  @RequestParam(name = "mode", defaultValue = "rgba") String mode,
+										  @RequestParam(name = "classes", defaultValue = "${png.indexed.classes:15}") int classes) {
+		try {
+			PngMode pngMode = PngMode.parse(mode);
+			byte[] png = scheduler.run(WorkPriority.INTERACTIVE,
+					() -> rasterService.getTilePng(iso3, year, level, x, y, pngMode, classes));
+			return ResponseEntity.ok()
+					.contentType(MediaType.IMAGE_PNG)
+					.cacheControl(CacheControl.maxAge(Duration.ofDays(1)))
+					.body(png);
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		} catch (IOException e) {
+			return failure(iso3, year, e);
+		}
+	}
+
+	/**
+	 * A tile as a binary array of 256×256 densities; cells beyond the raster edge are nodata.
+	 * A uint16 tile of a raster cached quantized is sent code for code with the raster's
+	 * own scale and offset, so tiles of one raster share them. The encoding defaults to
+	 * float32, or to uint16 when rasters are cached quantized; float32 is then refused
+	 * with 400, since the cache no longer holds the exact densities.
+	 *
+	 * Example: GET /api/rasters/MEX/2020/tiles/3/1/0.bin
+	 * Example: GET /api/rasters/MEX/2020/tiles/3/1/0.bin?encoding=uint8&deflate=true
+	 */
+	@GetMapping("/{iso3}/{year}/tiles/{level}/{x}/{y}.bin")
+	public void getTileArray(@PathVariable String iso3, @PathVariable int year, @PathVariable int level,
+							 @PathVariable int x, @PathVariable int y,
+							 @RequestParam(name = "encoding", required = false) String encoding,
+							 @RequestParam(name = "deflate", defaultValue = "false") boolean deflate,
+							 HttpServletResponse response) throws IOException {
+		BinaryRasterWriter writer;
+		try {
+			BinaryRasterWriter.Encoding parsed = encoding != null ? BinaryRasterWriter.Encoding.parse(encoding) : null;
+			writer = scheduler.run(WorkPriority.INTERACTIVE,
+					() -> rasterService.getTileArray(iso3, year, level, x, y, parsed));
+		} catch (IllegalArgumentException e) {
+			response.setStatus(HttpStatus.BAD_REQUEST.value());
+			return;
+		} catch (IOException e) {
+			response.setStatus(failure(iso3, year, e).getStatusCode().value());
+			return;
+		}
+		writeArray(writer, deflate, response);
+	}
+
+	/**
+	 * Density at a point.
+	 *
+	 * Example: GET /api/rasters/MEX/2020/point?lon=-99.13&lat=19.43
+	 */
+	@GetMapping("/{iso3}/{year}/point")
+	public ResponseEntity<RasterPointDto> getPoint(@PathVariable String iso3, @PathVariable int year,
+												   @RequestParam(name = "lon") double lon,
+												   @RequestParam(name = "lat") double lat) {
+		try {
+			return ResponseEntity.ok(scheduler.run(WorkPriority.INTERACTIVE, () -> rasterService.getPoint(iso3, year, lon, lat)));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		} catch (IOException e) {
+			return failure(iso3, year, e);
+		}
+	}
+
+	/**
+	 * Population figures of a country, or of a bounding box within it.
+	 *
+	 * Example: GET /api/rasters/MEX/2020/stats
+	 * Example: GET /api/rasters/MEX/2020/stats?bbox=-99.4,19.1,-98.9,19.7
+	 */
+	@GetMapping("/{iso3}/{year}/stats")
+	public ResponseEntity<RasterSummary> getStats(@PathVariable String iso3, @PathVariable int year,
+												  @RequestParam(name = "bbox", required = false) List<Double> bbox) {
+		try {
+			double[] box = bbox != null ? bbox.stream().mapToDouble(Double::doubleValue).toArray() : null;
+			return ResponseEntity.ok(scheduler.run(WorkPriority.INTERACTIVE, () -> rasterService.getStats(iso3, year, box)));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		} catch (IOException e) {
+			return failure(iso3, year, e);
+		}
+	}
+
+	/**
+	 * Renders a bounding box from the local tiled copy of a country's raster, at the
+	 * finest overview level that fits in maxSize pixels.
+	 *
+	 * Example: GET /api/rasters/MEX/2020/region.png?bbox=-99.4,19.1,-98.9,19.7&maxSize=512
+	 * Example: GET /api/rasters/MEX/2020/region.png?bbox=-99.4,19.1,-98.9,19.7&mode=indexed
+	 */
+	@GetMapping("/{iso3}/{year}/region.png")
+	public ResponseEntity<byte[]> getRegion(@PathVariable String iso3, @PathVariable int year,
+											@RequestParam(name = "bbox") List<Double> bbox,
+											@RequestParam(name = "maxSize", defaultValue = "1024") int maxSize,
+											@RequestParam(name = "mode", defaultValue = "rgba") String mode,
+											@RequestParam(name = "classes", defaultValue = "${png.indexed.classes:15}") int classes) {
+		try {
+			PngMode pngMode = PngMode.parse(mode);
+			double[] box = bbox.stream().mapToDouble(Double::doubleValue).toArray();
+			byte[] png = scheduler.run(WorkPriority.INTERACTIVE,
+					() -> rasterService.getRegionPng(iso3, year, box, maxSize, pngMode, classes));
+			return ResponseEntity.ok()
+					.contentType(MediaType.IMAGE_PNG)
+					.cacheControl(CacheControl.maxAge(Duration.ofDays(1)))
+					.body(png);
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		} catch (IllegalStateException e) {
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+		} catch (IOException e) {
+			return failure(iso3, year, e);
+		}
+	}
+
+	/**
+	 * A bounding box as a binary array, read from the local tiled store at the same
+	 * level and window as region.png.
+	 *
+	 * Example: GET /api/rasters/MEX/2020/region.bin?bbox=-99.4,19.1,-98.9,19.7&maxSize=512&encoding=uint8
+	 */
+	@GetMapping("/{iso3}/{year}/region.bin")
+	public void getRegionArray(@PathVariable String iso3, @PathVariable int year,
+							   @RequestParam(name = "bbox") List<Double> bbox,
+							   @RequestParam(name = "maxSize", defaultValue = "1024") int maxSize,
+							   @RequestParam(name = "encoding", defaultValue = "float32") String encoding,
+							   @RequestParam(name = "deflate", defaultValue = "false") boolean deflate,
+							   HttpServletResponse response) throws IOException {
+		BinaryRasterWriter writer;
+		try {
+			BinaryRasterWriter.Encoding parsed = BinaryRasterWriter.Encoding.parse(encoding);
+			double[] box = bbox.stream().mapToDouble(Double::doubleValue).toArray();
+			writer = scheduler.run(WorkPriority.INTERACTIVE,
+					() -> rasterService.getRegionArray(iso3, year, box, maxSize, parsed));
+		} catch (IllegalArgumentException e) {
+			response.setStatus(HttpStatus.BAD_REQUEST.value());
+			return;
+		} catch (IllegalStateException e) {
+			response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+			return;
+		} catch (IOException e) {
+			response.setStatus(failure(iso3, year, e).getStatusCode().value());
+			return;
+		}
+		writeArray(writer, deflate, response);
+	}
+
+	/**
+	 * Urban extents of a country as GeoJSON: clusters of connected cells at or above
+	 * threshold people/km² holding at least minPopulation people, each with its
+	 * population, area, mean density, bounding box and convex-hull outline.
+	 * Tiles are labelled in parallel by the service, so this call is not wrapped in one
+	 * piece of scheduled work.
+	 *
+	 * Example: GET /api/rasters/MEX/2020/urban
+	 * Example: GET /api/rasters/MEX/2020/urban?threshold=1500&minPopulation=50000
+	 */
+	@GetMapping("/{iso3}/{year}/urban")
+	public ResponseEntity<JsonNode> getUrbanExtent(@PathVariable String iso3, @PathVariable int year,
+												   @RequestParam(name = "threshold", defaultValue = "300") double threshold,
+												   @RequestParam(name = "minPopulation", defaultValue = "5000") double minPopulation) {
+		try {
+			return ResponseEntity.ok()
+					.contentType(MediaType.parseMediaType("application/geo+json"))
+					.cacheControl(CacheControl.maxAge(Duration.ofDays(1)))
+					.body(urbanExtentService.getUrbanExtent(iso3, year, threshold, minPopulation));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		} catch (IllegalStateException e) {
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+		} catch (IOException e) {
+			return failure(iso3, year, e);
+		}
+	}
+
+	/**
+	 * Population within a radius of each of a batch of facilities, and within reach of
+	 * at least one of them. Radii are in km, per facility or as the request default.
+	 * Bands of the raster are computed in parallel by the service, so this call is not
+	 * wrapped in one piece of scheduled work.
+	 *
+	 * Example: POST /api/rasters/MEX/2020/catchments
+	 * {"radius_km": 2, "facilities": [{"id": "clinic-1", "lon": -96.13, "lat": 19.18},
+	 *                                  {"id": "school-7", "lon": -96.15, "lat": 19.2, "radius_km": 1}]}
+	 */
+	@PostMapping("/{iso3}/{year}/catchments")
+	public ResponseEntity<CatchmentDto> getCatchments(@PathVariable String iso3, @PathVariable int year,
+													  @RequestBody CatchmentRequestDto request) {
+		try {
+			return ResponseEntity.ok(catchmentService.getCatchments(iso3, year, request));
+		} catch (IllegalArgumentException e) {
+			logger.warn("Rejected catchment request for {} {}: {}", iso3, year, e.getMessage());
+			return ResponseEntity.badRequest().build();
+		} catch (IllegalStateException e) {
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+		} catch (IOException e) {
+			return failure(iso3, year, e);
+		}
+	}
+
+	/**
+	 * Animation of a country (or a bounding box within it) across every year WorldPop
+	 * lists: a PNG keyframe for the first year, then only the 64×64 blocks that changed
+	 * from one year to the next, all on the same colour scale.
+	 * Years are rendered in parallel by the service, so this call is not wrapped in one
+	 * piece of scheduled work.
+	 *
+	 * Example: GET /api/rasters/MEX/animation?maxSize=512
+	 * Example: GET /api/rasters/MEX/animation?bbox=-99.4,19.1,-98.9,19.7&from=2010&to=2020
+	 */
+	@GetMapping("/{iso3}/animation")
+	public ResponseEntity<AnimationDto> getAnimation(@PathVariable String iso3,
+													 @RequestParam(name = "bbox", required = false) List<Double> bbox,
+													 @RequestParam(name = "maxSize", defaultValue = "512") int maxSize,
+													 @RequestParam(name = "from", required = false) Integer from,
+													 @RequestParam(name = "to", required = false) Integer to) {
+		try {
+			double[] box = bbox != null ? bbox.stream().mapToDouble(Double::doubleValue).toArray() : null;
+			return ResponseEntity.ok()
+					.cacheControl(CacheControl.maxAge(Duration.ofDays(1)))
+					.body(animationService.getAnimation(iso3, box, maxSize, from, to));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		} catch (IllegalStateException e) {
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+		} catch (IOException e) {
+			if (e instanceof FileNotFoundException) {
+				logger.warn("No rasters to animate for {}: {}", iso3, e.getMessage());
+				return ResponseEntity.notFound().build();
+			}
+			logger.error("Failed to build animation for {}", iso3, e);
+			return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+		}
+	}
+
+	/**
+	 * Writes a country's raster into the local store as a tiled GeoTIFF with overviews,
+	 * verified pixel for pixel against the download. With rebuild=true the raster is
+	 * downloaded again and everything cached from the old file is dropped.
+	 *
+	 * Example: POST /api/rasters/MEX/2020/store
+	 * Example: POST /api/rasters/MEX/2020/store?rebuild=true
+	 */
+	@PostMapping("/{iso3}/{year}/store")
+	public ResponseEntity<StoredRasterDto> store(@PathVariable String iso3, @PathVariable int year,
+												 @RequestParam(name = "rebuild", defaultValue = "false") boolean rebuild) {
+		try {
+			return ResponseEntity.ok(scheduler.run(WorkPriority.BULK, () -> rasterService.storeRaster(iso3, year, rebuild)));
+		} catch (IllegalArgumentException e) {
+			return ResponseEntity.badRequest().build();
+		} catch (IllegalStateException e) {
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+		} catch (IOException e) {
+			return failure(iso3, year, e);
+		}
+	}
+
+	/**
+	 * Size and budget of the decoded-raster cache.
+	 *
+	 * Example: GET /api/rasters/cache
+	 */
+	@GetMapping("/cache")
+	public ResponseEntity<RasterCacheStatsDto> getCacheStats() {
+		return ResponseEntity.ok(new RasterCacheStatsDto(rasterCache.size(), rasterCache.getUsedBytes(),
+				rasterCache.getMaxBytes(), rasterCache.getStorage().name()));
+	}
+
+	/**
+	 * Sends the X-Raster-* headers and streams the array into the response, deflated if asked.
+	 */
+	private void writeArray(BinaryRasterWriter writer, boolean deflate, HttpServletResponse response) throws IOException {
+		response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+		response.setHeader("Cache-Control", CacheControl.maxAge(Duration.ofDays(1)).getHeaderValue());
+		response.setHeader("X-Raster-Width", Integer.toString(writer.getWidth()));
+		response.setHeader("X-Raster-Height", Integer.toString(writer.getHeight()));
+		response.setHeader("X-Raster-Encoding", writer.getEncoding().name().toLowerCase(Locale.ROOT));
+		response.setHeader("X-Raster-Scale", Double.toString(writer.getScale()));
+		response.setHeader("X-Raster-Offset", Double.toString(writer.getOffset()));
+		response.setHeader("X-Raster-NoData", writer.getEncoding() == BinaryRasterWriter.Encoding.FLOAT32
+				? "NaN" : Integer.toString((int) writer.getNoData()));
+		GeoTransform transform = writer.getTransform();
+		if (transform.isKnown()) {
+			response.setHeader("X-Raster-Transform", transform.originX() + "," + transform.originY() + ","
+					+ transform.pixelWidth() + "," + transform.pixelHeight());
+		}
+
+		try (RequestTracing.Span span = RequestTracing.span("encode").bytes(writer.getLength())) {
+			if (!deflate) {
+				response.setContentLengthLong(writer.getLength());
+				writer.writeTo(response.getOutputStream());
+				return;
+			}
+			response.setHeader("Content-Encoding", "deflate");
+			Deflater deflater = new Deflater(deflateLevel);
+			try (OutputStream out = new DeflaterOutputStream(response.getOutputStream(), deflater, 64 * 1024)) {
+				writer.writeTo(out);
+			} finally {
+				deflater.end();
+			}
+		}
+	}
+
+	private static <T> ResponseEntity<T> failure(String iso3, int year, IOException e) {
+		if (e instanceof FileNotFoundException) {
+			logger.warn("No raster for {} {}: {}", iso3, year, e.getMessage());
+			return ResponseEntity.notFound().build();
+		}
+		logger.error("Failed to load raster for {} {}", iso3, year, e);
+		return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+	}
+}
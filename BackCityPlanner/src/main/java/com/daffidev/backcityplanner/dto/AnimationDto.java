@@ -0,0 +1,120 @@
+package com.daffidev.backcityplanner.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * DTO for a population animation across years: frames in year order, all
+ * width × height pixels and coloured on the same density scale. Apply each
+ * frame's tiles over the previous frame to reconstruct it.
+ */
+public class AnimationDto {
+
+	@JsonProperty("iso3")
+	private String iso3;
+
+	@JsonProperty("width")
+	private int width;
+
+	@JsonProperty("height")
+	private int height;
+
+	@JsonProperty("level")
+	private int level;
+
+	@JsonProperty("tile_size")
+	private int tileSize;
+
+	@JsonProperty("frames")
+	private List<AnimationFrameDto> frames;
+
+	public AnimationDto() {
+	}
+
+	public AnimationDto(String iso3, int width, int height, int level, int tileSize, List<AnimationFrameDto> frames) {
+		this.iso3 = iso3;
+		this.width = width;
+		this.height = height;
+		this.level = level;
+		this.tileSize = tileSize;
+		this.frames = frames;
+	}
+
+	public String getIso3() {
+		return iso3;
+	}
+
+	public void setIso3(String iso3) {
+		this.iso3 = iso3;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public void setWidth(int width) {
+		this.width = width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public void setHeight(int height) {
+		this.height = height;
+	}
+
+	public int getLevel() {
+		return level;
+	}
+
+	public void setLevel(int level) {
+		this.level = level;
+	}
+
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	public void setTileSize(int tileSize) {
+		this.tileSize = tileSize;
+	}
+
+	public List<AnimationFrameDto> getFrames() {
+		return frames;
+	}
+
+	public void setFrames(List<AnimationFrameDto> frames) {
+		this.frames = frames;
+	}
+
+	/**
+	 * Bytes of PNG data across all frames.
+	 */
+	@JsonIgnore
+	public long getPngBytes() {
+		long bytes = 0;
+		if (frames != null) {
+			for (AnimationFrameDto frame : frames) {
+				for (AnimationTileDto tile : frame.getTiles()) {
+					bytes += tile.getPng().length;
+				}
+			}
+		}
+		return bytes;
+	}
+
+	@Override
+	public String toString() {
+		return "AnimationDto{" +
+				"iso3='" + iso3 + '\'' +
+				", width=" + width +
+				", height=" + height +
+				", level=" + level +
+				", tileSize=" + tileSize +
+				", frames=" + (frames != null ? frames.size() : 0) +
+				'}';
+	}
+}
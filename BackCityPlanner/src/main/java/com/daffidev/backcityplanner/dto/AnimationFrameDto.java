@@ -0,0 +1,64 @@
+package com.daffidev.backcityplanner.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * DTO for one year of an animation. The keyframe has a single tile covering the
+ * whole image; every other frame only lists the tiles that changed since the
+ * previous year.
+ */
+public class AnimationFrameDto {
+
+	@JsonProperty("year")
+	private int year;
+
+	@JsonProperty("keyframe")
+	private boolean keyframe;
+
+	@JsonProperty("tiles")
+	private List<AnimationTileDto> tiles;
+
+	public AnimationFrameDto() {
+	}
+
+	public AnimationFrameDto(int year, boolean keyframe, List<AnimationTileDto> tiles) {
+		this.year = year;
+		this.keyframe = keyframe;
+		this.tiles = tiles;
+	}
+
+	public int getYear() {
+		return year;
+	}
+
+	public void setYear(int year) {
+		this.year = year;
+	}
+
+	public boolean isKeyframe() {
+		return keyframe;
+	}
+
+	public void setKeyframe(boolean keyframe) {
+		this.keyframe = keyframe;
+	}
+
+	public List<AnimationTileDto> getTiles() {
+		return tiles;
+	}
+
+	public void setTiles(List<AnimationTileDto> tiles) {
+		this.tiles = tiles;
+	}
+
+	@Override
+	public String toString() {
+		return "AnimationFrameDto{" +
+				"year=" + year +
+				", keyframe=" + keyframe +
+				", tiles=" + (tiles != null ? tiles.size() : 0) +
+				'}';
+	}
+}
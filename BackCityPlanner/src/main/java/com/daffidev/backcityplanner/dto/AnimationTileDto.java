@@ -0,0 +1,87 @@
+package com.daffidev.backcityplanner.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * DTO for one rectangle of an animation frame, as a PNG (base64 in JSON)
+ * to draw at (x, y) over the previous frame.
+ */
+public class AnimationTileDto {
+
+	@JsonProperty("x")
+	private int x;
+
+	@JsonProperty("y")
+	private int y;
+
+	@JsonProperty("width")
+	private int width;
+
+	@JsonProperty("height")
+	private int height;
+
+	@JsonProperty("png")
+	private byte[] png;
+
+	public AnimationTileDto() {
+	}
+
+	public AnimationTileDto(int x, int y, int width, int height, byte[] png) {
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+		this.png = png;
+	}
+
+	public int getX() {
+		return x;
+	}
+
+	public void setX(int x) {
+		this.x = x;
+	}
+
+	public int getY() {
+		return y;
+	}
+
+	public void setY(int y) {
+		this.y = y;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public void setWidth(int width) {
+		this.width = width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public void setHeight(int height) {
+		this.height = height;
+	}
+
+	public byte[] getPng() {
+		return png;
+	}
+
+	public void setPng(byte[] png) {
+		this.png = png;
+	}
+
+	@Override
+	public String toString() {
+		return "AnimationTileDto{" +
+				"x=" + x +
+				", y=" + y +
+				", width=" + width +
+				", height=" + height +
+				", pngBytes=" + (png != null ? png.length : 0) +
+				'}';
+	}
+}
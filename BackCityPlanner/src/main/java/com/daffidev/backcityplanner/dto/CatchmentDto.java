@@ -0,0 +1,103 @@
+package com.daffidev.backcityplanner.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * DTO for a batch catchment result: population within reach of each facility,
+ * within reach of at least one (union_population), and its share of the
+ * country's population.
+ */
+public class CatchmentDto {
+
+	@JsonProperty("iso3")
+	private String iso3;
+
+	@JsonProperty("year")
+	private int year;
+
+	@JsonProperty("total_population")
+	private double totalPopulation;
+
+	@JsonProperty("union_population")
+	private double unionPopulation;
+
+	@JsonProperty("covered_share")
+	private double coveredShare;
+
+	@JsonProperty("facilities")
+	private List<FacilityCatchmentDto> facilities;
+
+	public CatchmentDto() {
+	}
+
+	public CatchmentDto(String iso3, int year, double totalPopulation, double unionPopulation, double coveredShare, List<FacilityCatchmentDto> facilities) {
+		this.iso3 = iso3;
+		this.year = year;
+		this.totalPopulation = totalPopulation;
+		this.unionPopulation = unionPopulation;
+		this.coveredShare = coveredShare;
+		this.facilities = facilities;
+	}
+
+	public String getIso3() {
+		return iso3;
+	}
+
+	public void setIso3(String iso3) {
+		this.iso3 = iso3;
+	}
+
+	public int getYear() {
+		return year;
+	}
+
+	public void setYear(int year) {
+		this.year = year;
+	}
+
+	public double getTotalPopulation() {
+		return totalPopulation;
+	}
+
+	public void setTotalPopulation(double totalPopulation) {
+		this.totalPopulation = totalPopulation;
+	}
+
+	public double getUnionPopulation() {
+		return unionPopulation;
+	}
+
+	public void setUnionPopulation(double unionPopulation) {
+		this.unionPopulation = unionPopulation;
+	}
+
+	public double getCoveredShare() {
+		return coveredShare;
+	}
+
+	public void setCoveredShare(double coveredShare) {
+		this.coveredShare = coveredShare;
+	}
+
+	public List<FacilityCatchmentDto> getFacilities() {
+		return facilities;
+	}
+
+	public void setFacilities(List<FacilityCatchmentDto> facilities) {
+		this.facilities = facilities;
+	}
+
+	@Override
+	public String toString() {
+		return "CatchmentDto{" +
+				"iso3='" + iso3 + '\'' +
+				", year=" + year +
+				", totalPopulation=" + totalPopulation +
+				", unionPopulation=" + unionPopulation +
+				", coveredShare=" + coveredShare +
+				", facilities=" + (facilities != null ? facilities.size() : 0) +
+				'}';
+	}
+}
@@ -0,0 +1,50 @@
+package com.daffidev.backcityplanner.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * DTO for a batch catchment request: facilities and the radius (km) used for
+ * those that do not set their own.
+ */
+public class CatchmentRequestDto {
+
+	@JsonProperty("radius_km")
+	private Double radiusKm;
+
+	@JsonProperty("facilities")
+	private List<FacilityDto> facilities;
+
+	public CatchmentRequestDto() {
+	}
+
+	public CatchmentRequestDto(Double radiusKm, List<FacilityDto> facilities) {
+		this.radiusKm = radiusKm;
+		this.facilities = facilities;
+	}
+
+	public Double getRadiusKm() {
+		return radiusKm;
+	}
+
+	public void setRadiusKm(Double radiusKm) {
+		this.radiusKm = radiusKm;
+	}
+
+	public List<FacilityDto> getFacilities() {
+		return facilities;
+	}
+
+	public void setFacilities(List<FacilityDto> facilities) {
+		this.facilities = facilities;
+	}
+
+	@Override
+	public String toString() {
+		return "CatchmentRequestDto{" +
+				"radiusKm=" + radiusKm +
+				", facilities=" + (facilities != null ? facilities.size() : 0) +
+				'}';
+	}
+}
@@ -0,0 +1,90 @@
+package com.daffidev.backcityplanner.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * DTO describing this instance's view of the cluster.
+ * Unavailable nodes are skipped until their retry delay has passed.
+ */
+public class ClusterStatusDto {
+
+	@JsonProperty("enabled")
+	private boolean enabled;
+
+	@JsonProperty("self")
+	private String self;
+
+	@JsonProperty("nodes")
+	private List<String> nodes;
+
+	@JsonProperty("unavailable_nodes")
+	private List<String> unavailableNodes;
+
+	@JsonProperty("near_cache_entries")
+	private long nearCacheEntries;
+
+	public ClusterStatusDto() {
+	}
+
+	public ClusterStatusDto(boolean enabled, String self, List<String> nodes, List<String> unavailableNodes,
+							long nearCacheEntries) {
+		this.enabled = enabled;
+		this.self = self;
+		this.nodes = nodes;
+		this.unavailableNodes = unavailableNodes;
+		this.nearCacheEntries = nearCacheEntries;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	public String getSelf() {
+		return self;
+	}
+
+	public void setSelf(String self) {
+		this.self = self;
+	}
+
+	public List<String> getNodes() {
+		return nodes;
+	}
+
+	public void setNodes(List<String> nodes) {
+		this.nodes = nodes;
+	}
+
+	public List<String> getUnavailableNodes() {
+		return unavailableNodes;
+	}
+
+	public void setUnavailableNodes(List<String> unavailableNodes) {
+		this.unavailableNodes = unavailableNodes;
+	}
+
+	public long getNearCacheEntries() {
+		return nearCacheEntries;
+	}
+
+	public void setNearCacheEntries(long nearCacheEntries) {
+		this.nearCacheEntries = nearCacheEntries;
+	}
+
+	@Override
+	public String toString() {
+		return "ClusterStatusDto{" +
+				"enabled=" + enabled +
+				", self='" + self + '\'' +
+				", nodes=" + nodes +
+				", unavailableNodes=" + unavailableNodes +
+				", nearCacheEntries=" + nearCacheEntries +
+				'}';
+	}
+}
@@ -0,0 +1,60 @@
+package com.daffidev.backcityplanner.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * DTO for the population within a facility's radius.
+ */
+public class FacilityCatchmentDto {
+
+	@JsonProperty("id")
+	private String id;
+
+	@JsonProperty("radius_km")
+	private double radiusKm;
+
+	@JsonProperty("population")
+	private double population;
+
+	public FacilityCatchmentDto() {
+	}
+
+	public FacilityCatchmentDto(String id, double radiusKm, double population) {
+		this.id = id;
+		this.radiusKm = radiusKm;
+		this.population = population;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public double getRadiusKm() {
+		return radiusKm;
+	}
+
+	public void setRadiusKm(double radiusKm) {
+		this.radiusKm = radiusKm;
+	}
+
+	public double getPopulation() {
+		return population;
+	}
+
+	public void setPopulation(double population) {
+		this.population = population;
+	}
+
+	@Override
+	public String toString() {
+		return "FacilityCatchmentDto{" +
+				"id='" + id + '\'' +
+				", radiusKm=" + radiusKm +
+				", population=" + population +
+				'}';
+	}
+}
@@ -0,0 +1,74 @@
+package com.daffidev.backcityplanner.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * DTO for a facility in a catchment request. radius_km overrides the
+ * request's default radius for this facility.
+ */
+public class FacilityDto {
+
+	@JsonProperty("id")
+	private String id;
+
+	@JsonProperty("lon")
+	private Double lon;
+
+	@JsonProperty("lat")
+	private Double lat;
+
+	@JsonProperty("radius_km")
+	private Double radiusKm;
+
+	public FacilityDto() {
+	}
+
+	public FacilityDto(String id, Double lon, Double lat, Double radiusKm) {
+		this.id = id;
+		this.lon = lon;
+		this.lat = lat;
+		this.radiusKm = radiusKm;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public Double getLon() {
+		return lon;
+	}
+
+	public void setLon(Double lon) {
+		this.lon = lon;
+	}
+
+	public Double getLat() {
+		return lat;
+	}
+
+	public void setLat(Double lat) {
+		this.lat = lat;
+	}
+
+	public Double getRadiusKm() {
+		return radiusKm;
+	}
+
+	public void setRadiusKm(Double radiusKm) {
+		this.radiusKm = radiusKm;
+	}
+
+	@Override
+	public String toString() {
+		return "FacilityDto{" +
+				"id='" + id + '\'' +
+				", lon=" + lon +
+				", lat=" + lat +
+				", radiusKm=" + radiusKm +
+				'}';
+	}
+}
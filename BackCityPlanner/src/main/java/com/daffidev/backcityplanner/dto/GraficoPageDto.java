@@ -0,0 +1,51 @@
+package com.daffidev.backcityplanner.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * One keyset page of stored graphics.
+ * Pass nextCursor back as the cursor parameter to fetch the following page;
+ * it is null on the last page.
+ */
+public class GraficoPageDto {
+
+	@JsonProperty("items")
+	private List<GraficoSummary> items;
+
+	@JsonProperty("next_cursor")
+	private String nextCursor;
+
+	public GraficoPageDto() {
+	}
+
+	public GraficoPageDto(List<GraficoSummary> items, String nextCursor) {
+		this.items = items;
+		this.nextCursor = nextCursor;
+	}
+
+	public List<GraficoSummary> getItems() {
+		return items;
+	}
+
+	public void setItems(List<GraficoSummary> items) {
+		this.items = items;
+	}
+
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	public void setNextCursor(String nextCursor) {
+		this.nextCursor = nextCursor;
+	}
+
+	@Override
+	public String toString() {
+		return "GraficoPageDto{" +
+				"items=" + (items != null ? items.size() : 0) +
+				", nextCursor='" + nextCursor + '\'' +
+				'}';
+	}
+}
@@ -0,0 +1,14 @@
+package com.daffidev.backcityplanner.dto;
+
+/**
+ * Lightweight projection of a 'grafico' row for listings.
+ * Leaves out the TEXT url column and created_at.
+ */
+public interface GraficoSummary {
+
+	Long getId();
+
+	String getName();
+
+	Integer getYear();
+}
@@ -0,0 +1,22 @@
+package com.daffidev.backcityplanner.dto;
+
+/**
+ * Population change of a country between two years.
+ * growthRate is the total relative change, cagr the compound annual growth rate.
+ */
+public interface PopulationGrowth {
+
+	String getIso3();
+
+	Integer getStartYear();
+
+	Integer getEndYear();
+
+	Double getStartPopulation();
+
+	Double getEndPopulation();
+
+	Double getGrowthRate();
+
+	Double getCagr();
+}
@@ -4,7 +4,8 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
  * DTO for population density image information.
- * Contains the year and URL of the population image.
+ * Contains the year and URL of the population image, and the URL of the
+ * source GeoTIFF when WorldPop lists one.
  */
 public class PopulationImageDto {
 
@@ -14,6 +15,9 @@ public class PopulationImageDto {
 	@JsonProperty("url_img")
 	private String urlImage;
 
+	@JsonProperty("url_tiff")
+	private String urlTiff;
+
 	public PopulationImageDto() {
 	}
 
@@ -22,6 +26,12 @@ public class PopulationImageDto {
 		this.urlImage = urlImage;
 	}
 
+	public PopulationImageDto(Integer popYear, String urlImage, String urlTiff) {
+		this.popYear = popYear;
+		this.urlImage = urlImage;
+		this.urlTiff = urlTiff;
+	}
+
 	public Integer getPopYear() {
 		return popYear;
 	}
@@ -38,11 +48,20 @@ public class PopulationImageDto {
 		this.urlImage = urlImage;
 	}
 
+	public String getUrlTiff() {
+		return urlTiff;
+	}
+
+	public void setUrlTiff(String urlTiff) {
+		this.urlTiff = urlTiff;
+	}
+
 	@Override
 	public String toString() {
 		return "PopulationImageDto{" +
 				"popYear=" + popYear +
 				", urlImage='" + urlImage + '\'' +
+				", urlTiff='" + urlTiff + '\'' +
 				'}';
 	}
 }
@@ -0,0 +1,73 @@
+package com.daffidev.backcityplanner.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * DTO describing the decoded-raster cache: entries, off-heap bytes used and budget.
+ */
+public class RasterCacheStatsDto {
+
+	@JsonProperty("entries")
+	private int entries;
+
+	@JsonProperty("used_bytes")
+	private long usedBytes;
+
+	@JsonProperty("max_bytes")
+	private long maxBytes;
+
+	@JsonProperty("storage")
+	private String storage;
+
+	public RasterCacheStatsDto() {
+	}
+
+	public RasterCacheStatsDto(int entries, long usedBytes, long maxBytes, String storage) {
+		this.entries = entries;
+		this.usedBytes = usedBytes;
+		this.maxBytes = maxBytes;
+		this.storage = storage;
+	}
+
+	public int getEntries() {
+		return entries;
+	}
+
+	public void setEntries(int entries) {
+		this.entries = entries;
+	}
+
+	public long getUsedBytes() {
+		return usedBytes;
+	}
+
+	public void setUsedBytes(long usedBytes) {
+		this.usedBytes = usedBytes;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	public String getStorage() {
+		return storage;
+	}
+
+	public void setStorage(String storage) {
+		this.storage = storage;
+	}
+
+	@Override
+	public String toString() {
+		return "RasterCacheStatsDto{" +
+				"entries=" + entries +
+				", usedBytes=" + usedBytes +
+				", maxBytes=" + maxBytes +
+				", storage='" + storage + '\'' +
+				'}';
+	}
+}
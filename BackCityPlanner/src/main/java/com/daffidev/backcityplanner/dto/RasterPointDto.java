@@ -0,0 +1,87 @@
+package com.daffidev.backcityplanner.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * DTO for a point query against a population density raster.
+ * Density is null when the cell holds no data (e.g. sea).
+ */
+public class RasterPointDto {
+
+	@JsonProperty("lon")
+	private double lon;
+
+	@JsonProperty("lat")
+	private double lat;
+
+	@JsonProperty("col")
+	private int col;
+
+	@JsonProperty("row")
+	private int row;
+
+	@JsonProperty("density")
+	private Float density;
+
+	public RasterPointDto() {
+	}
+
+	public RasterPointDto(double lon, double lat, int col, int row, Float density) {
+		this.lon = lon;
+		this.lat = lat;
+		this.col = col;
+		this.row = row;
+		this.density = density;
+	}
+
+	public double getLon() {
+		return lon;
+	}
+
+	public void setLon(double lon) {
+		this.lon = lon;
+	}
+
+	public double getLat() {
+		return lat;
+	}
+
+	public void setLat(double lat) {
+		this.lat = lat;
+	}
+
+	public int getCol() {
+		return col;
+	}
+
+	public void setCol(int col) {
+		this.col = col;
+	}
+
+	public int getRow() {
+		return row;
+	}
+
+	public void setRow(int row) {
+		this.row = row;
+	}
+
+	public Float getDensity() {
+		return density;
+	}
+
+	public void setDensity(Float density) {
+		this.density = density;
+	}
+
+	@Override
+	public String toString() {
+		return "RasterPointDto{" +
+				"lon=" + lon +
+				", lat=" + lat +
+				", col=" + col +
+				", row=" + row +
+				", density=" + density +
+				'}';
+	}
+}
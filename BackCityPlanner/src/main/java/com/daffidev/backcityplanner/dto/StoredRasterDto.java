@@ -0,0 +1,87 @@
+package com.daffidev.backcityplanner.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * DTO describing a raster held in the local tiled store.
+ * Levels counts the full-resolution image plus its overviews.
+ */
+public class StoredRasterDto {
+
+	@JsonProperty("iso3")
+	private String iso3;
+
+	@JsonProperty("year")
+	private int year;
+
+	@JsonProperty("path")
+	private String path;
+
+	@JsonProperty("size_bytes")
+	private long sizeBytes;
+
+	@JsonProperty("levels")
+	private int levels;
+
+	public StoredRasterDto() {
+	}
+
+	public StoredRasterDto(String iso3, int year, String path, long sizeBytes, int levels) {
+		this.iso3 = iso3;
+		this.year = year;
+		this.path = path;
+		this.sizeBytes = sizeBytes;
+		this.levels = levels;
+	}
+
+	public String getIso3() {
+		return iso3;
+	}
+
+	public void setIso3(String iso3) {
+		this.iso3 = iso3;
+	}
+
+	public int getYear() {
+		return year;
+	}
+
+	public void setYear(int year) {
+		this.year = year;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	public void setPath(String path) {
+		this.path = path;
+	}
+
+	public long getSizeBytes() {
+		return sizeBytes;
+	}
+
+	public void setSizeBytes(long sizeBytes) {
+		this.sizeBytes = sizeBytes;
+	}
+
+	public int getLevels() {
+		return levels;
+	}
+
+	public void setLevels(int levels) {
+		this.levels = levels;
+	}
+
+	@Override
+	public String toString() {
+		return "StoredRasterDto{" +
+				"iso3='" + iso3 + '\'' +
+				", year=" + year +
+				", path='" + path + '\'' +
+				", sizeBytes=" + sizeBytes +
+				", levels=" + levels +
+				'}';
+	}
+}
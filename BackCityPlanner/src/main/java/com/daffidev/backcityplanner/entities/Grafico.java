@@ -6,9 +6,12 @@ import java.time.LocalDateTime;
 /**
  * Entity representing the 'grafico' table in Supabase.
  * Stores population graphics data with year and URL.
+ * A (name, year) pair is unique; bulk loads upsert on it.
  */
 @Entity
-@Table(name = "grafico")
+@Table(name = "grafico", uniqueConstraints = {
+		@UniqueConstraint(name = "uk_grafico_name_year", columnNames = {"name", "year"})
+})
 public class Grafico {
 
 	@Id
@@ -0,0 +1,152 @@
+package com.daffidev.backcityplanner.entities;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Entity representing the 'population_stat' table.
+ * One row per country (ISO3) and year with figures derived from the WorldPop
+ * density raster, linked to the Grafico stored for the same country and year.
+ */
+@Entity
+@Table(name = "population_stat", uniqueConstraints = {
+		@UniqueConstraint(name = "uk_population_stat_iso3_year", columnNames = {"iso3", "year"})
+})
+public class PopulationStat {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	@Column(name = "iso3", length = 3, nullable = false)
+	private String iso3;
+
+	@Column(name = "year", nullable = false)
+	private Integer year;
+
+	@Column(name = "total_population")
+	private Double totalPopulation;
+
+	@Column(name = "mean_density")
+	private Double meanDensity;
+
+	@Column(name = "max_density")
+	private Double maxDensity;
+
+	@Column(name = "populated_cells")
+	private Long populatedCells;
+
+	@Column(name = "area_km2")
+	private Double areaKm2;
+
+	@Column(name = "growth_from_previous")
+	private Double growthFromPrevious;
+
+	@Column(name = "grafico_id")
+	private Long graficoId;
+
+	@Column(name = "updated_at")
+	private LocalDateTime updatedAt;
+
+	public PopulationStat() {
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	public String getIso3() {
+		return iso3;
+	}
+
+	public void setIso3(String iso3) {
+		this.iso3 = iso3;
+	}
+
+	public Integer getYear() {
+		return year;
+	}
+
+	public void setYear(Integer year) {
+		this.year = year;
+	}
+
+	public Double getTotalPopulation() {
+		return totalPopulation;
+	}
+
+	public void setTotalPopulation(Double totalPopulation) {
+		this.totalPopulation = totalPopulation;
+	}
+
+	public Double getMeanDensity() {
+		return meanDensity;
+	}
+
+	public void setMeanDensity(Double meanDensity) {
+		this.meanDensity = meanDensity;
+	}
+
+	public Double getMaxDensity() {
+		return maxDensity;
+	}
+
+	public void setMaxDensity(Double maxDensity) {
+		this.maxDensity = maxDensity;
+	}
+
+	public Long getPopulatedCells() {
+		return populatedCells;
+	}
+
+	public void setPopulatedCells(Long populatedCells) {
+		this.populatedCells = populatedCells;
+	}
+
+	public Double getAreaKm2() {
+		return areaKm2;
+	}
+
+	public void setAreaKm2(Double areaKm2) {
+		this.areaKm2 = areaKm2;
+	}
+
+	public Double getGrowthFromPrevious() {
+		return growthFromPrevious;
+	}
+
+	public void setGrowthFromPrevious(Double growthFromPrevious) {
+		this.growthFromPrevious = growthFromPrevious;
+	}
+
+	public Long getGraficoId() {
+		return graficoId;
+	}
+
+	public void setGraficoId(Long graficoId) {
+		this.graficoId = graficoId;
+	}
+
+	public LocalDateTime getUpdatedAt() {
+		return updatedAt;
+	}
+
+	public void setUpdatedAt(LocalDateTime updatedAt) {
+		this.updatedAt = updatedAt;
+	}
+
+	@Override
+	public String toString() {
+		return "PopulationStat{" +
+				"iso3='" + iso3 + '\'' +
+				", year=" + year +
+				", totalPopulation=" + totalPopulation +
+				", meanDensity=" + meanDensity +
+				", growthFromPrevious=" + growthFromPrevious +
+				'}';
+	}
+}
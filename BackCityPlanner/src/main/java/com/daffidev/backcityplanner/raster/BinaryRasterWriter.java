@@ -0,0 +1,243 @@
+package com.daffidev.backcityplanner.raster;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.Locale;
+
+/**
+ * Writes a grid of raster samples as a bare little-endian array, for clients that
+ * colour and query densities themselves (e.g. a WebGL layer reading the body into a
+ * Float32Array or Uint16Array).
+ *
+ * The grid is a window of a {@link DecodedRaster} sampled every step-th cell; cells
+ * beyond the raster edge are written as nodata. Three encodings are supported:
+ * <ul>
+ *   <li>{@link Encoding#FLOAT32}: the samples as stored, nodata as NaN. Only for FLOAT32
+ *       rasters: a quantized raster would be sent dequantized, with neither its scale
+ *       nor the exact source values.</li>
+ *   <li>{@link Encoding#UINT16}: codes with {@code value = offset + code * scale},
+ *       nodata 65535. A quantized raster read at full resolution is copied code for
+ *       code with its own scale and offset; otherwise the grid's range is spread
+ *       over the codes.</li>
+ *   <li>{@link Encoding#UINT8}: the grid's range spread over codes 0-254, nodata 255.</li>
+ * </ul>
+ * Scale, offset, nodata and the grid's transform are not part of the body; callers
+ * send them alongside it (the raster endpoints use X-Raster-* headers).
+ *
+ * Rows are converted through one row-sized buffer straight from the raster's
+ * off-heap samples to the output stream.
+ */
+public final class BinaryRasterWriter {
+
+	public enum Encoding {
+		FLOAT32(4, Float.NaN),
+		UINT16(2, 0xFFFF),
+		UINT8(1, 0xFF);
+
+		private final int bytesPerCell;
+		private final double noData;
+
+		Encoding(int bytesPerCell, double noData) {
+			this.bytesPerCell = bytesPerCell;
+			this.noData = noData;
+		}
+
+		public int getBytesPerCell() {
+			return bytesPerCell;
+		}
+
+		/**
+		 * Encoding that carries a raster's samples without loss: UINT16 codes for a
+		 * quantized raster, FLOAT32 otherwise.
+		 */
+		public static Encoding lossless(DecodedRaster.Storage storage) {
+			return storage == DecodedRaster.Storage.QUANTIZED16 ? UINT16 : FLOAT32;
+		}
+
+		/**
+		 * @throws IllegalArgumentException if the name is not float32, uint16 or uint8
+		 */
+		public static Encoding parse(String name) {
+			try {
+				return valueOf(name.toUpperCase(Locale.ROOT));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("encoding must be float32, uint16 or uint8");
+			}
+		}
+	}
+
+	private final DecodedRaster source;
+	private final int originX;
+	private final int originY;
+	private final int width;
+	private final int height;
+	private final int step;
+	private final Encoding encoding;
+	private final boolean copyCodes;
+	private final double scale;
+	private final double offset;
+
+	/**
+	 * @param originX first source column of the grid
+	 * @param originY first source row of the grid
+	 * @param width grid columns
+	 * @param height grid rows
+	 * @param step source cells per grid cell; 1 = full resolution
+	 * @throws IllegalArgumentException if the grid is empty or FLOAT32 is asked of a quantized raster
+	 */
+	public BinaryRasterWriter(DecodedRaster source, int originX, int originY, int width, int height, int step,
+							  Encoding encoding) {
+		if (originX < 0 || originY < 0 || width < 1 || height < 1 || step < 1) {
+			throw new IllegalArgumentException("Invalid grid " + width + "x" + height + " at (" + originX + ", "
+					+ originY + ") step " + step);
+		}
+		if (encoding == Encoding.FLOAT32 && source.getStorage() == DecodedRaster.Storage.QUANTIZED16) {
+			throw new IllegalArgumentException("float32 is not available for a quantized raster; use uint16");
+		}
+		this.source = source;
+		this.originX = originX;
+		this.originY = originY;
+		this.width = width;
+		this.height = height;
+		this.step = step;
+		this.encoding = encoding;
+		this.copyCodes = encoding == Encoding.UINT16 && step == 1
+				&& source.getStorage() == DecodedRaster.Storage.QUANTIZED16;
+
+		if (encoding == Encoding.FLOAT32) {
+			this.scale = 1;
+			this.offset = 0;
+		} else if (copyCodes) {
+			this.scale = source.getScale();
+			this.offset = source.getOffset();
+		} else {
+			double[] range = range();
+			int maxCode = (int) encoding.noData - 1;
+			this.offset = range[0] <= range[1] ? range[0] : 0;
+			this.scale = range[1] > range[0] ? (range[1] - range[0]) / maxCode : 1;
+		}
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public Encoding getEncoding() {
+		return encoding;
+	}
+
+	/** Quantization step; 1 for FLOAT32. */
+	public double getScale() {
+		return scale;
+	}
+
+	/** Value of code 0; 0 for FLOAT32. */
+	public double getOffset() {
+		return offset;
+	}
+
+	/** Nodata marker in the body: NaN, 65535 or 255. */
+	public double getNoData() {
+		return encoding.noData;
+	}
+
+	/** Transform of the grid, or {@link GeoTransform#UNKNOWN}. */
+	public GeoTransform getTransform() {
+		return source.getTransform().window(originX, originY, step);
+	}
+
+	/** Uncompressed body size in bytes. */
+	public long getLength() {
+		return (long) width * height * encoding.bytesPerCell;
+	}
+
+	/**
+	 * Writes the grid row by row. The stream is not closed.
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		ByteBuffer raw = source.rawData();
+		FloatBuffer floats = source.getStorage() == DecodedRaster.Storage.FLOAT32 ? raw.asFloatBuffer() : null;
+		ShortBuffer codes = source.getStorage() == DecodedRaster.Storage.QUANTIZED16 ? raw.asShortBuffer() : null;
+
+		byte[] row = new byte[width * encoding.bytesPerCell];
+		ByteBuffer rowBuffer = ByteBuffer.wrap(row).order(ByteOrder.LITTLE_ENDIAN);
+		FloatBuffer rowFloats = rowBuffer.asFloatBuffer();
+		ShortBuffer rowShorts = rowBuffer.asShortBuffer();
+		// Grid columns that fall inside the raster; the rest of each row is nodata
+		int columns = (int) Math.max(0, Math.min(width, ((long) source.getWidth() - originX + step - 1) / step));
+
+		for (int y = 0; y < height; y++) {
+			long sourceY = originY + (long) y * step;
+			int filled = sourceY < source.getHeight() ? columns : 0;
+			int index = filled > 0 ? (int) sourceY * source.getWidth() + originX : 0;
+			if (copyCodes) {
+				rowShorts.put(0, codes, index, filled);
+			} else if (encoding == Encoding.FLOAT32 && floats != null && step == 1) {
+				rowFloats.put(0, floats, index, filled);
+			} else {
+				for (int x = 0; x < filled; x++) {
+					put(rowBuffer, rowFloats, rowShorts, x, sample(floats, codes, index + x * step));
+				}
+			}
+			for (int x = filled; x < width; x++) {
+				put(rowBuffer, rowFloats, rowShorts, x, Float.NaN);
+			}
+			out.write(row);
+		}
+	}
+
+	private void put(ByteBuffer row, FloatBuffer rowFloats, ShortBuffer rowShorts, int x, float value) {
+		switch (encoding) {
+			case FLOAT32 -> rowFloats.put(x, value);
+			case UINT16 -> rowShorts.put(x, (short) code(value));
+			case UINT8 -> row.put(x, (byte) code(value));
+		}
+	}
+
+	private int code(float value) {
+		int noData = (int) encoding.noData;
+		if (Float.isNaN(value)) {
+			return noData;
+		}
+		return (int) Math.min(noData - 1, Math.max(0, Math.round((value - offset) / scale)));
+	}
+
+	private float sample(FloatBuffer floats, ShortBuffer codes, int index) {
+		if (floats != null) {
+			return floats.get(index);
+		}
+		int code = Short.toUnsignedInt(codes.get(index));
+		return code == DecodedRaster.NO_DATA_CODE ? Float.NaN
+				: (float) (source.getOffset() + code * source.getScale());
+	}
+
+	/**
+	 * Smallest and largest sample of the grid; min > max when it is all nodata.
+	 */
+	private double[] range() {
+		ByteBuffer raw = source.rawData();
+		FloatBuffer floats = source.getStorage() == DecodedRaster.Storage.FLOAT32 ? raw.asFloatBuffer() : null;
+		ShortBuffer codes = source.getStorage() == DecodedRaster.Storage.QUANTIZED16 ? raw.asShortBuffer() : null;
+		float min = Float.POSITIVE_INFINITY;
+		float max = Float.NEGATIVE_INFINITY;
+		for (long sourceY = originY; sourceY < Math.min(source.getHeight(), originY + (long) height * step); sourceY += step) {
+			int rowStart = (int) sourceY * source.getWidth();
+			for (long sourceX = originX; sourceX < Math.min(source.getWidth(), originX + (long) width * step); sourceX += step) {
+				float value = sample(floats, codes, rowStart + (int) sourceX);
+				if (!Float.isNaN(value)) {
+					min = Math.min(min, value);
+					max = Math.max(max, value);
+				}
+			}
+		}
+		return new double[]{min, max};
+	}
+}
@@ -0,0 +1,205 @@
+package com.daffidev.backcityplanner.raster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Population within a radius of many facilities at once, per facility and for the
+ * union of their catchments.
+ *
+ * A catchment is the set of cells whose centre lies within the facility's radius
+ * (in km, with cell widths shrinking towards the poles), which on each row is one
+ * run of columns. The raster is processed in bands of rows ({@link #computeBand},
+ * safe to run in parallel): each band builds prefix sums of population along its
+ * rows, so a facility's population on a row is one subtraction whatever its
+ * radius, and the union is swept row by row over the merged runs of all facilities
+ * touching that row. No cell is visited once per facility, and heap use is one
+ * band of prefix sums per running band.
+ */
+public final class CatchmentCalculator {
+
+	/** Upper bound on the prefix sums of one band, in cells. */
+	private static final int BAND_CELLS = 1 << 21;
+	private static final int MAX_BAND_ROWS = 256;
+
+	private final DecodedRaster raster;
+	private final GeoTransform transform;
+	private final double[] col;
+	private final double[] row;
+	private final double[] radiusKm;
+	private final int[] firstRow;
+	private final int[] lastRow;
+	private final int bandRows;
+	private final int bands;
+
+	/**
+	 * @param lon facility longitudes
+	 * @param lat facility latitudes
+	 * @param radiusKm facility radii in km
+	 * @throws IllegalArgumentException if the raster is not georeferenced or the arrays differ in length
+	 */
+	public CatchmentCalculator(DecodedRaster raster, double[] lon, double[] lat, double[] radiusKm) {
+		if (!raster.getTransform().isKnown()) {
+			throw new IllegalArgumentException("Raster is not georeferenced");
+		}
+		if (lon.length != lat.length || lon.length != radiusKm.length) {
+			throw new IllegalArgumentException("Expected one lon, lat and radius per facility");
+		}
+		this.raster = raster;
+		this.transform = raster.getTransform();
+		this.radiusKm = radiusKm;
+		int count = lon.length;
+		this.col = new double[count];
+		this.row = new double[count];
+		this.firstRow = new int[count];
+		this.lastRow = new int[count];
+		for (int i = 0; i < count; i++) {
+			// Continuous grid position; cell (x, y) has its centre at (x + 0.5, y + 0.5)
+			col[i] = (lon[i] - transform.originX()) / transform.pixelWidth();
+			row[i] = (transform.originY() - lat[i]) / transform.pixelHeight();
+			double rows = radiusKm[i] / transform.cellHeightKm();
+			firstRow[i] = (int) Math.max(0, Math.ceil(row[i] - rows - 0.5));
+			lastRow[i] = (int) Math.min(raster.getHeight() - 1L, Math.floor(row[i] + rows - 0.5));
+		}
+		this.bandRows = Math.max(1, Math.min(MAX_BAND_ROWS, BAND_CELLS / (raster.getWidth() + 1)));
+		this.bands = (raster.getHeight() + bandRows - 1) / bandRows;
+	}
+
+	public int getBandCount() {
+		return bands;
+	}
+
+	/**
+	 * Computes every band in turn and merges them.
+	 */
+	public Result compute() {
+		List<Result> results = new ArrayList<>(bands);
+		for (int band = 0; band < bands; band++) {
+			results.add(computeBand(band));
+		}
+		return merge(results);
+	}
+
+	/**
+	 * Sums the results of all bands.
+	 */
+	public Result merge(List<Result> bandResults) {
+		Result result = new Result(col.length);
+		for (Result band : bandResults) {
+			result.add(band);
+		}
+		return result;
+	}
+
+	/**
+	 * Population of each facility's catchment, of the union and of the whole raster
+	 * within one band of rows.
+	 */
+	public Result computeBand(int band) {
+		int y0 = band * bandRows;
+		int height = Math.min(bandRows, raster.getHeight() - y0);
+		int width = raster.getWidth();
+		Result result = new Result(col.length);
+
+		// prefix[r * (width + 1) + x] = population of columns [0, x) of row y0 + r
+		double[] prefix = new double[height * (width + 1)];
+		float[] densities = new float[width];
+		for (int r = 0; r < height; r++) {
+			raster.readRow(y0 + r, 0, width, densities, 0);
+			double cellArea = transform.cellAreaKm2(y0 + r);
+			int base = r * (width + 1);
+			double sum = 0;
+			for (int x = 0; x < width; x++) {
+				float density = densities[x];
+				if (density > 0) {
+					sum += density * cellArea;
+				}
+				prefix[base + x + 1] = sum;
+			}
+			result.total += sum;
+		}
+
+		// Runs of every facility on every row of the band, packed as row | start | end for sorting
+		long[] runs = new long[64];
+		int runCount = 0;
+		for (int i = 0; i < col.length; i++) {
+			int from = Math.max(firstRow[i], y0);
+			int to = Math.min(lastRow[i], y0 + height - 1);
+			for (int y = from; y <= to; y++) {
+				double dyKm = (y + 0.5 - row[i]) * transform.cellHeightKm();
+				double halfWidth = Math.sqrt(Math.max(0, radiusKm[i] * radiusKm[i] - dyKm * dyKm))
+						/ transform.cellWidthKm(y);
+				int start = (int) Math.max(0, Math.ceil(col[i] - halfWidth - 0.5));
+				int end = (int) Math.min(width, Math.floor(col[i] + halfWidth - 0.5) + 1);
+				if (start >= end) {
+					continue;
+				}
+				int base = (y - y0) * (width + 1);
+				result.facilities[i] += prefix[base + end] - prefix[base + start];
+				if (runCount == runs.length) {
+					runs = Arrays.copyOf(runs, runs.length * 2);
+				}
+				runs[runCount++] = (long) (y - y0) << 48 | (long) start << 24 | end;
+			}
+		}
+
+		Arrays.sort(runs, 0, runCount);
+		int currentRow = -1;
+		int currentStart = 0;
+		int currentEnd = 0;
+		for (int i = 0; i <= runCount; i++) {
+			int r = i < runCount ? (int) (runs[i] >>> 48) : -1;
+			int start = i < runCount ? (int) (runs[i] >>> 24 & 0xFFFFFF) : 0;
+			int end = i < runCount ? (int) (runs[i] & 0xFFFFFF) : 0;
+			if (r == currentRow && start <= currentEnd) {
+				currentEnd = Math.max(currentEnd, end);
+				continue;
+			}
+			if (currentRow >= 0) {
+				int base = currentRow * (width + 1);
+				result.union += prefix[base + currentEnd] - prefix[base + currentStart];
+			}
+			currentRow = r;
+			currentStart = start;
+			currentEnd = end;
+		}
+		return result;
+	}
+
+	/**
+	 * Populations summed over one band or, once merged, over the raster.
+	 */
+	public static final class Result {
+		private final double[] facilities;
+		private double union;
+		private double total;
+
+		Result(int facilityCount) {
+			this.facilities = new double[facilityCount];
+		}
+
+		private void add(Result band) {
+			for (int i = 0; i < facilities.length; i++) {
+				facilities[i] += band.facilities[i];
+			}
+			union += band.union;
+			total += band.total;
+		}
+
+		/** Population within each facility's radius, in input order. */
+		public double[] getFacilities() {
+			return facilities;
+		}
+
+		/** Population within the radius of at least one facility. */
+		public double getUnion() {
+			return union;
+		}
+
+		/** Population of the whole raster. */
+		public double getTotal() {
+			return total;
+		}
+	}
+}
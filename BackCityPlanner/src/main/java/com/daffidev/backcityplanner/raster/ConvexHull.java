@@ -0,0 +1,67 @@
+package com.daffidev.backcityplanner.raster;
+
+import java.util.Arrays;
+
+/**
+ * Convex hull of integer points, by Andrew's monotone chain.
+ */
+final class ConvexHull {
+
+	private ConvexHull() {
+	}
+
+	/**
+	 * @param points x, y pairs
+	 * @param count number of points in the array
+	 * @return the hull's vertices as x, y pairs, counter-clockwise in a y-up frame
+	 *         (clockwise on the raster grid, where y grows downwards), without
+	 *         repeating the first vertex and without collinear points
+	 */
+	static int[] of(int[] points, int count) {
+		long[] sorted = new long[count];
+		for (int i = 0; i < count; i++) {
+			sorted[i] = (long) points[2 * i] << 32 | (points[2 * i + 1] & 0xFFFFFFFFL);
+		}
+		Arrays.sort(sorted);
+		int unique = 0;
+		for (int i = 0; i < count; i++) {
+			if (unique == 0 || sorted[i] != sorted[unique - 1]) {
+				sorted[unique++] = sorted[i];
+			}
+		}
+		if (unique < 3) {
+			return unpack(sorted, unique);
+		}
+
+		long[] hull = new long[2 * unique];
+		int size = 0;
+		for (int i = 0; i < unique; i++) {
+			while (size >= 2 && cross(hull[size - 2], hull[size - 1], sorted[i]) <= 0) {
+				size--;
+			}
+			hull[size++] = sorted[i];
+		}
+		for (int i = unique - 2, lower = size + 1; i >= 0; i--) {
+			while (size >= lower && cross(hull[size - 2], hull[size - 1], sorted[i]) <= 0) {
+				size--;
+			}
+			hull[size++] = sorted[i];
+		}
+		return unpack(hull, size - 1);
+	}
+
+	private static long cross(long o, long a, long b) {
+		long ox = o >> 32;
+		long oy = (int) o;
+		return (long) ((a >> 32) - ox) * ((int) b - oy) - (long) ((int) a - oy) * ((b >> 32) - ox);
+	}
+
+	private static int[] unpack(long[] packed, int count) {
+		int[] points = new int[2 * count];
+		for (int i = 0; i < count; i++) {
+			points[2 * i] = (int) (packed[i] >> 32);
+			points[2 * i + 1] = (int) packed[i];
+		}
+		return points;
+	}
+}
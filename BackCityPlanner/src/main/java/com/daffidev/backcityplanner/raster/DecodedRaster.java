@@ -0,0 +1,221 @@
+package com.daffidev.backcityplanner.raster;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * A decoded single-band raster held off-heap in a direct buffer, so cached rasters
+ * add nothing to the heap the GC has to trace.
+ *
+ * Two storage layouts are supported:
+ * <ul>
+ *   <li>{@link Storage#FLOAT32}: the stored samples, lossless, 4 bytes per cell.</li>
+ *   <li>{@link Storage#QUANTIZED16}: unsigned 16-bit codes with a per-raster scale and
+ *       offset ({@code value = offset + code * scale}), 2 bytes per cell. Code 65535
+ *       marks nodata; the quantization error is at most scale / 2.</li>
+ * </ul>
+ *
+ * Nodata cells are read back as NaN whatever the source nodata value was.
+ * Instances are immutable and safe to share between threads.
+ */
+public final class DecodedRaster {
+
+	public enum Storage {
+		FLOAT32(4),
+		QUANTIZED16(2);
+
+		private final int bytesPerCell;
+
+		Storage(int bytesPerCell) {
+			this.bytesPerCell = bytesPerCell;
+		}
+
+		public int getBytesPerCell() {
+			return bytesPerCell;
+		}
+	}
+
+	/** Code reserved for nodata in the quantized layout. */
+	public static final int NO_DATA_CODE = 0xFFFF;
+
+	private static final int MAX_CODE = NO_DATA_CODE - 1;
+
+	private final int width;
+	private final int height;
+	private final GeoTransform transform;
+	private final Storage storage;
+	private final double scale;
+	private final double offset;
+	private final ByteBuffer data;
+	private final FloatBuffer floats;
+	private final ShortBuffer codes;
+
+	private DecodedRaster(int width, int height, GeoTransform transform, Storage storage,
+						  double scale, double offset, ByteBuffer data) {
+		this.width = width;
+		this.height = height;
+		this.transform = transform;
+		this.storage = storage;
+		this.scale = scale;
+		this.offset = offset;
+		this.data = data;
+		this.floats = storage == Storage.FLOAT32 ? data.asFloatBuffer() : null;
+		this.codes = storage == Storage.QUANTIZED16 ? data.asShortBuffer() : null;
+	}
+
+	/**
+	 * Allocates a direct buffer for width × height float32 samples, to be filled with
+	 * {@link FloatBuffer#put} (nodata as NaN) and passed to {@link #of}.
+	 */
+	public static ByteBuffer allocateFloat32(int width, int height) {
+		return ByteBuffer.allocateDirect(Math.multiplyExact(Math.multiplyExact(width, height), 4))
+				.order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Wraps float32 samples, converting them to the requested storage.
+	 *
+	 * @param samples row-major float32 samples in native order, nodata as NaN; used
+	 *                as is for FLOAT32 and only read for QUANTIZED16
+	 */
+	public static DecodedRaster of(int width, int height, GeoTransform transform, ByteBuffer samples, Storage storage) {
+		if (samples.capacity() != (long) width * height * 4) {
+			throw new IllegalArgumentException("Expected " + (long) width * height + " float32 samples");
+		}
+		if (storage == Storage.FLOAT32) {
+			return new DecodedRaster(width, height, transform, storage, 1, 0, samples);
+		}
+		return quantize(width, height, transform, samples.asFloatBuffer());
+	}
+
+	private static DecodedRaster quantize(int width, int height, GeoTransform transform, FloatBuffer samples) {
+		int cells = width * height;
+		float min = Float.POSITIVE_INFINITY;
+		float max = Float.NEGATIVE_INFINITY;
+		for (int i = 0; i < cells; i++) {
+			float value = samples.get(i);
+			if (!Float.isNaN(value)) {
+				min = Math.min(min, value);
+				max = Math.max(max, value);
+			}
+		}
+		double offset = min <= max ? min : 0;
+		double scale = max > min ? ((double) max - min) / MAX_CODE : 1;
+
+		ByteBuffer data = ByteBuffer.allocateDirect(cells * 2).order(ByteOrder.nativeOrder());
+		ShortBuffer codes = data.asShortBuffer();
+		for (int i = 0; i < cells; i++) {
+			float value = samples.get(i);
+			int code = Float.isNaN(value) ? NO_DATA_CODE
+					: (int) Math.min(MAX_CODE, Math.max(0, Math.round((value - offset) / scale)));
+			codes.put(i, (short) code);
+		}
+		return new DecodedRaster(width, height, transform, Storage.QUANTIZED16, scale, offset, data);
+	}
+
+	/**
+	 * This raster in the given storage; quantizes a FLOAT32 raster into a new buffer.
+	 *
+	 * @throws IllegalArgumentException when asked to turn a quantized raster back into float32
+	 */
+	public DecodedRaster withStorage(Storage target) {
+		if (target == storage) {
+			return this;
+		}
+		if (target == Storage.FLOAT32) {
+			throw new IllegalArgumentException("Quantized samples cannot be restored losslessly");
+		}
+		return quantize(width, height, transform, floats);
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public GeoTransform getTransform() {
+		return transform;
+	}
+
+	public Storage getStorage() {
+		return storage;
+	}
+
+	/** Quantization step; 1 for FLOAT32. */
+	public double getScale() {
+		return scale;
+	}
+
+	/** Value of code 0; 0 for FLOAT32. */
+	public double getOffset() {
+		return offset;
+	}
+
+	/** Off-heap bytes held by the samples. */
+	public long sizeBytes() {
+		return data.capacity();
+	}
+
+	/**
+	 * Sample at a cell, or NaN for nodata.
+	 */
+	public float get(int x, int y) {
+		checkBounds(x, y, 1);
+		return sample(y * width + x);
+	}
+
+	/**
+	 * Copies a run of samples of one row into dst; nodata is written as NaN.
+	 */
+	public void readRow(int y, int x, int length, float[] dst, int dstOffset) {
+		checkBounds(x, y, length);
+		int index = y * width + x;
+		if (floats != null) {
+			floats.get(index, dst, dstOffset, length);
+			return;
+		}
+		for (int i = 0; i < length; i++) {
+			dst[dstOffset + i] = decode(codes.get(index + i));
+		}
+	}
+
+	/**
+	 * Quantized code at a cell (QUANTIZED16 only), in [0, 65535].
+	 */
+	public int getCode(int x, int y) {
+		if (codes == null) {
+			throw new IllegalStateException("Raster is not quantized");
+		}
+		checkBounds(x, y, 1);
+		return Short.toUnsignedInt(codes.get(y * width + x));
+	}
+
+	/**
+	 * Read-only view of the raw samples (float32 or unsigned 16-bit codes, native order),
+	 * for streaming them out without copying to the heap.
+	 */
+	public ByteBuffer rawData() {
+		return data.asReadOnlyBuffer().order(data.order());
+	}
+
+	private float sample(int index) {
+		return floats != null ? floats.get(index) : decode(codes.get(index));
+	}
+
+	private float decode(short stored) {
+		int code = Short.toUnsignedInt(stored);
+		return code == NO_DATA_CODE ? Float.NaN : (float) (offset + code * scale);
+	}
+
+	private void checkBounds(int x, int y, int length) {
+		if (x < 0 || y < 0 || y >= height || length < 0 || x + length > width) {
+			throw new IndexOutOfBoundsException("Cell (" + x + ", " + y + ") + " + length
+					+ " outside " + width + "x" + height + " raster");
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package com.daffidev.backcityplanner.raster;
+
+import org.w3c.dom.Node;
+
+import javax.imageio.metadata.IIOMetadata;
+
+/**
+ * Reads the GeoTIFF tags this application needs from TIFF image metadata
+ * in the standard "com_sun_media_imageio_plugins_tiff_image_1.0" tree.
+ */
+public final class GeoTiffTags {
+
+	public static final String TIFF_METADATA_FORMAT = "com_sun_media_imageio_plugins_tiff_image_1.0";
+
+	public static final int MODEL_PIXEL_SCALE = 33550;
+	public static final int MODEL_TIEPOINT = 33922;
+	public static final int GDAL_NODATA = 42113;
+
+	private GeoTiffTags() {
+	}
+
+	/**
+	 * Returns the pixel-to-map transform, or {@link GeoTransform#UNKNOWN} if the
+	 * raster carries no (or only partial) georeferencing.
+	 */
+	public static GeoTransform readGeoTransform(IIOMetadata metadata) {
+		Node ifd = ifd(metadata);
+		if (ifd == null) {
+			return GeoTransform.UNKNOWN;
+		}
+		double[] scale = readDoubles(ifd, MODEL_PIXEL_SCALE);
+		double[] tiepoint = readDoubles(ifd, MODEL_TIEPOINT);
+		if (scale == null || scale.length < 2 || tiepoint == null || tiepoint.length < 6) {
+			return GeoTransform.UNKNOWN;
+		}
+		// Tiepoint maps raster (I, J) to model (X, Y): origin = X - I * sx, Y + J * sy
+		double originX = tiepoint[3] - tiepoint[0] * scale[0];
+		double originY = tiepoint[4] + tiepoint[1] * scale[1];
+		return new GeoTransform(originX, originY, scale[0], scale[1]);
+	}
+
+	/**
+	 * Returns the GDAL nodata value, or NaN if the tag is absent or unparsable.
+	 */
+	public static double readNoData(IIOMetadata metadata) {
+		Node ifd = ifd(metadata);
+		Node field = ifd != null ? field(ifd, GDAL_NODATA) : null;
+		if (field == null) {
+			return Double.NaN;
+		}
+		Node value = firstValue(field);
+		if (value == null) {
+			return Double.NaN;
+		}
+		try {
+			return Double.parseDouble(value.getAttributes().getNamedItem("value").getNodeValue().trim());
+		} catch (RuntimeException e) {
+			return Double.NaN;
+		}
+	}
+
+	private static Node ifd(IIOMetadata metadata) {
+		if (metadata == null) {
+			return null;
+		}
+		for (String format : metadata.getMetadataFormatNames()) {
+			if (TIFF_METADATA_FORMAT.equals(format)) {
+				Node root = metadata.getAsTree(TIFF_METADATA_FORMAT);
+				return root.getFirstChild();
+			}
+		}
+		return null;
+	}
+
+	private static Node field(Node ifd, int tag) {
+		for (Node child = ifd.getFirstChild(); child != null; child = child.getNextSibling()) {
+			Node number = child.getAttributes() != null ? child.getAttributes().getNamedItem("number") : null;
+			if (number != null && Integer.toString(tag).equals(number.getNodeValue())) {
+				return child;
+			}
+		}
+		return null;
+	}
+
+	private static Node firstValue(Node field) {
+		Node container = field.getFirstChild();
+		return container != null ? container.getFirstChild() : null;
+	}
+
+	private static double[] readDoubles(Node ifd, int tag) {
+		Node field = field(ifd, tag);
+		if (field == null || field.getFirstChild() == null) {
+			return null;
+		}
+		Node container = field.getFirstChild();
+		int count = container.getChildNodes().getLength();
+		double[] values = new double[count];
+		int i = 0;
+		for (Node value = container.getFirstChild(); value != null; value = value.getNextSibling()) {
+			values[i++] = Double.parseDouble(value.getAttributes().getNamedItem("value").getNodeValue());
+		}
+		return values;
+	}
+}
@@ -0,0 +1,107 @@
+package com.daffidev.backcityplanner.raster;
+
+/**
+ * Affine pixel-to-map transform of a north-up raster, read from the GeoTIFF
+ * ModelTiepoint and ModelPixelScale tags.
+ *
+ * WorldPop rasters are in geographic coordinates (degrees, EPSG:4326), so cell
+ * areas are derived from the latitude of each row.
+ *
+ * @param originX     map X (longitude) of the upper-left corner of pixel (0, 0)
+ * @param originY     map Y (latitude) of the upper-left corner of pixel (0, 0)
+ * @param pixelWidth  pixel size along X, in map units
+ * @param pixelHeight pixel size along Y, in map units (positive, rows go south)
+ */
+public record GeoTransform(double originX, double originY, double pixelWidth, double pixelHeight) {
+
+	private static final double KM_PER_DEGREE_LAT = 110.574;
+	private static final double KM_PER_DEGREE_LON_AT_EQUATOR = 111.320;
+
+	/**
+	 * Placeholder for rasters without georeferencing. It is all zeros, so
+	 * {@link #isKnown()} is false and map coordinates cannot be turned into pixels;
+	 * only the cell sizes fall back to nominal 1 km squares, the resolution of
+	 * WorldPop's pd_ic_1km product.
+	 */
+	public static final GeoTransform UNKNOWN = new GeoTransform(0, 0, 0, 0);
+
+	public boolean isKnown() {
+		return pixelWidth > 0 && pixelHeight > 0;
+	}
+
+	/** Longitude of the center of the given column. */
+	public double lon(double col) {
+		return originX + (col + 0.5) * pixelWidth;
+	}
+
+	/** Latitude of the center of the given row. */
+	public double lat(double row) {
+		return originY - (row + 0.5) * pixelHeight;
+	}
+
+	/** Longitude of the left edge of the given column. */
+	public double lonEdge(double col) {
+		return originX + col * pixelWidth;
+	}
+
+	/** Latitude of the top edge of the given row. */
+	public double latEdge(double row) {
+		return originY - row * pixelHeight;
+	}
+
+	/**
+	 * Column containing the given longitude (may be outside the raster).
+	 *
+	 * @throws IllegalArgumentException if the transform is not known
+	 */
+	public int col(double lon) {
+		requireKnown();
+		return (int) Math.floor((lon - originX) / pixelWidth);
+	}
+
+	/**
+	 * Row containing the given latitude (may be outside the raster).
+	 *
+	 * @throws IllegalArgumentException if the transform is not known
+	 */
+	public int row(double lat) {
+		requireKnown();
+		return (int) Math.floor((originY - lat) / pixelHeight);
+	}
+
+	/** Width in km of a cell in the given row. */
+	public double cellWidthKm(int row) {
+		if (!isKnown()) {
+			return 1.0;
+		}
+		return pixelWidth * KM_PER_DEGREE_LON_AT_EQUATOR * Math.cos(Math.toRadians(lat(row)));
+	}
+
+	/** Height in km of a cell (constant for all rows). */
+	public double cellHeightKm() {
+		if (!isKnown()) {
+			return 1.0;
+		}
+		return pixelHeight * KM_PER_DEGREE_LAT;
+	}
+
+	/** Area in km² of a cell in the given row. */
+	public double cellAreaKm2(int row) {
+		return cellWidthKm(row) * cellHeightKm();
+	}
+
+	/** Transform of a window starting at the given pixel offset, optionally subsampled. */
+	public GeoTransform window(int offsetX, int offsetY, int subsampling) {
+		if (!isKnown()) {
+			return this;
+		}
+		return new GeoTransform(originX + offsetX * pixelWidth, originY - offsetY * pixelHeight,
+				pixelWidth * subsampling, pixelHeight * subsampling);
+	}
+
+	private void requireKnown() {
+		if (!isKnown()) {
+			throw new IllegalArgumentException("Raster is not georeferenced");
+		}
+	}
+}
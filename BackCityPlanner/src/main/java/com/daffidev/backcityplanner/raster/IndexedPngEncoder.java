@@ -0,0 +1,223 @@
+package com.daffidev.backcityplanner.raster;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes palette-indexed PNGs (colour type 3) from one palette index per pixel.
+ *
+ * The bit depth is the smallest that holds the palette (1, 2, 4 or 8 bits for up to
+ * 2, 4, 16 or 256 entries), so a 15-class choropleth plus a transparent entry packs
+ * two pixels per byte. Alpha below 255 is written to a tRNS chunk, trimmed after the
+ * last translucent entry. Rows are filtered with the configured {@link Filter} and
+ * compressed at the configured deflate level.
+ *
+ * Instances are immutable and safe to share between threads.
+ */
+public final class IndexedPngEncoder {
+
+	private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+	private static final int COLOR_TYPE_INDEXED = 3;
+
+	public enum Filter {
+		/** No filtering, the PNG specification's advice for palette images. */
+		NONE,
+		SUB,
+		UP,
+		/** Per row, whichever of none, sub, up and Paeth has the smallest sum of absolute bytes. */
+		ADAPTIVE;
+
+		/**
+		 * @throws IllegalArgumentException if the name is not none, sub, up or adaptive
+		 */
+		public static Filter parse(String name) {
+			try {
+				return valueOf(name.toUpperCase(Locale.ROOT));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("filter must be none, sub, up or adaptive");
+			}
+		}
+	}
+
+	private final int[] palette;
+	private final int bitDepth;
+	private final Filter filter;
+	private final int deflateLevel;
+
+	/**
+	 * @param palette ARGB colour of each index, 1 to 256 entries
+	 * @param deflateLevel 0-9, or -1 for the zlib default
+	 */
+	public IndexedPngEncoder(int[] palette, Filter filter, int deflateLevel) {
+		if (palette.length < 1 || palette.length > 256) {
+			throw new IllegalArgumentException("Palette must have 1 to 256 entries");
+		}
+		if (deflateLevel < -1 || deflateLevel > 9) {
+			throw new IllegalArgumentException("Deflate level must be between -1 and 9");
+		}
+		this.palette = palette.clone();
+		this.bitDepth = palette.length <= 2 ? 1 : palette.length <= 4 ? 2 : palette.length <= 16 ? 4 : 8;
+		this.filter = filter;
+		this.deflateLevel = deflateLevel;
+	}
+
+	public int getBitDepth() {
+		return bitDepth;
+	}
+
+	/**
+	 * @param indices palette index of each pixel, row-major
+	 * @return the PNG file
+	 * @throws IllegalArgumentException if an index is outside the palette
+	 */
+	public byte[] encode(byte[] indices, int width, int height) throws IOException {
+		if (width < 1 || height < 1 || indices.length != (long) width * height) {
+			throw new IllegalArgumentException("Expected " + (long) width * height + " indices");
+		}
+		ByteArrayOutputStream png = new ByteArrayOutputStream(width * height * bitDepth / 32 + 1024);
+		png.write(SIGNATURE);
+
+		ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+		DataOutputStream ihdr = new DataOutputStream(header);
+		ihdr.writeInt(width);
+		ihdr.writeInt(height);
+		ihdr.writeByte(bitDepth);
+		ihdr.writeByte(COLOR_TYPE_INDEXED);
+		ihdr.writeByte(0);
+		ihdr.writeByte(0);
+		ihdr.writeByte(0);
+		writeChunk(png, "IHDR", header.toByteArray());
+
+		byte[] colors = new byte[palette.length * 3];
+		int lastTranslucent = -1;
+		for (int i = 0; i < palette.length; i++) {
+			colors[3 * i] = (byte) (palette[i] >>> 16);
+			colors[3 * i + 1] = (byte) (palette[i] >>> 8);
+			colors[3 * i + 2] = (byte) palette[i];
+			if (palette[i] >>> 24 != 0xFF) {
+				lastTranslucent = i;
+			}
+		}
+		writeChunk(png, "PLTE", colors);
+		if (lastTranslucent >= 0) {
+			byte[] alpha = new byte[lastTranslucent + 1];
+			for (int i = 0; i < alpha.length; i++) {
+				alpha[i] = (byte) (palette[i] >>> 24);
+			}
+			writeChunk(png, "tRNS", alpha);
+		}
+
+		writeChunk(png, "IDAT", compress(indices, width, height));
+		writeChunk(png, "IEND", new byte[0]);
+		return png.toByteArray();
+	}
+
+	private byte[] compress(byte[] indices, int width, int height) throws IOException {
+		int stride = (width * bitDepth + 7) / 8;
+		int pixelsPerByte = 8 / bitDepth;
+		byte[] previous = new byte[stride];
+		byte[] current = new byte[stride];
+		byte[] filtered = new byte[stride + 1];
+		byte[] candidate = new byte[stride + 1];
+
+		ByteArrayOutputStream idat = new ByteArrayOutputStream(height * stride / 4 + 64);
+		Deflater deflater = new Deflater(deflateLevel);
+		try (OutputStream out = new DeflaterOutputStream(idat, deflater, 16 * 1024)) {
+			for (int y = 0; y < height; y++) {
+				Arrays.fill(current, (byte) 0);
+				int offset = y * width;
+				for (int x = 0; x < width; x++) {
+					int index = indices[offset + x] & 0xFF;
+					if (index >= palette.length) {
+						throw new IllegalArgumentException("Index " + index + " is outside the " + palette.length + "-entry palette");
+					}
+					int shift = 8 - bitDepth * (x % pixelsPerByte + 1);
+					current[x / pixelsPerByte] |= (byte) (index << shift);
+				}
+
+				if (filter == Filter.ADAPTIVE) {
+					long best = Long.MAX_VALUE;
+					for (int type = 0; type <= 4; type++) {
+						if (type == 3) {
+							// Average rarely wins on palette rows; skipping it saves a pass
+							continue;
+						}
+						long score = apply(type, current, previous, candidate);
+						if (score < best) {
+							best = score;
+							System.arraycopy(candidate, 0, filtered, 0, filtered.length);
+						}
+					}
+				} else {
+					apply(filter == Filter.NONE ? 0 : filter == Filter.SUB ? 1 : 2, current, previous, filtered);
+				}
+				out.write(filtered);
+
+				byte[] swap = previous;
+				previous = current;
+				current = swap;
+			}
+		} finally {
+			deflater.end();
+		}
+		return idat.toByteArray();
+	}
+
+	/**
+	 * Filters a row (one byte per filter unit, as for any bit depth up to 8) into
+	 * out[0] = type and out[1..] = filtered bytes.
+	 *
+	 * @return sum of the filtered bytes read as signed, the usual heuristic for the best filter
+	 */
+	private static long apply(int type, byte[] row, byte[] above, byte[] out) {
+		out[0] = (byte) type;
+		long score = 0;
+		for (int i = 0; i < row.length; i++) {
+			int raw = row[i] & 0xFF;
+			int left = i > 0 ? row[i - 1] & 0xFF : 0;
+			int up = above[i] & 0xFF;
+			int upLeft = i > 0 ? above[i - 1] & 0xFF : 0;
+			int predicted = switch (type) {
+				case 1 -> left;
+				case 2 -> up;
+				case 4 -> paeth(left, up, upLeft);
+				default -> 0;
+			};
+			byte value = (byte) (raw - predicted);
+			out[i + 1] = value;
+			score += Math.abs(value);
+		}
+		return score;
+	}
+
+	private static int paeth(int left, int up, int upLeft) {
+		int estimate = left + up - upLeft;
+		int distanceLeft = Math.abs(estimate - left);
+		int distanceUp = Math.abs(estimate - up);
+		int distanceUpLeft = Math.abs(estimate - upLeft);
+		if (distanceLeft <= distanceUp && distanceLeft <= distanceUpLeft) {
+			return left;
+		}
+		return distanceUp <= distanceUpLeft ? up : upLeft;
+	}
+
+	private static void writeChunk(OutputStream out, String type, byte[] data) throws IOException {
+		DataOutputStream chunk = new DataOutputStream(out);
+		byte[] name = type.getBytes(StandardCharsets.US_ASCII);
+		CRC32 crc = new CRC32();
+		crc.update(name);
+		crc.update(data);
+		chunk.writeInt(data.length);
+		chunk.write(name);
+		chunk.write(data);
+		chunk.writeInt((int) crc.getValue());
+	}
+}
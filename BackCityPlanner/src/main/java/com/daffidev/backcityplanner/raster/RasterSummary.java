@@ -0,0 +1,16 @@
+package com.daffidev.backcityplanner.raster;
+
+/**
+ * Aggregate figures of a population density raster.
+ *
+ * @param width           raster width in pixels
+ * @param height          raster height in pixels
+ * @param totalPopulation sum over valid cells of density × cell area
+ * @param meanDensity     total population divided by the valid area (people/km²)
+ * @param maxDensity      highest cell density (people/km²)
+ * @param populatedCells  number of cells with a density above zero
+ * @param areaKm2         area covered by valid (non-nodata) cells
+ */
+public record RasterSummary(int width, int height, double totalPopulation, double meanDensity,
+							double maxDensity, long populatedCells, double areaKm2) {
+}
@@ -0,0 +1,348 @@
+package com.daffidev.backcityplanner.raster;
+
+import com.daffidev.backcityplanner.scheduling.WorkScheduler;
+
+import java.awt.Rectangle;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Windowed reader for the tiled float32 GeoTIFFs written by {@link TiledTiffWriter}
+ * (little-endian classic TIFF, one band, uncompressed or deflate, no predictor).
+ *
+ * Only the IFDs and the tiles that intersect the requested window are read, with
+ * positional reads on a file channel. ImageIO's TIFF reader cannot be used for this:
+ * TwelveMonkeys 3.12 fails on source regions of tiled float rasters that do not span
+ * whole tile rows.
+ */
+public final class TiledTiffReader implements Closeable {
+
+	private static final int TAG_WIDTH = 256;
+	private static final int TAG_HEIGHT = 257;
+	private static final int TAG_BITS_PER_SAMPLE = 258;
+	private static final int TAG_COMPRESSION = 259;
+	private static final int TAG_PREDICTOR = 317;
+	private static final int TAG_TILE_WIDTH = 322;
+	private static final int TAG_TILE_HEIGHT = 323;
+	private static final int TAG_TILE_OFFSETS = 324;
+	private static final int TAG_TILE_BYTE_COUNTS = 325;
+	private static final int TAG_SAMPLE_FORMAT = 339;
+
+	private static final int MAX_LEVELS = 32;
+
+	private final FileChannel channel;
+	private final List<Level> levels;
+	private final GeoTransform transform;
+	private final float noData;
+	private long bytesRead;
+
+	private TiledTiffReader(FileChannel channel) throws IOException {
+		this.channel = channel;
+		ByteBuffer header = read(0, 8);
+		if (header.get(0) != 'I' || header.get(1) != 'I' || header.getShort(2) != 42) {
+			throw new IOException("Not a little-endian classic TIFF");
+		}
+
+		List<Level> parsed = new ArrayList<>();
+		GeoTransform geo = GeoTransform.UNKNOWN;
+		float nodata = Float.NaN;
+		long ifdOffset = Integer.toUnsignedLong(header.getInt(4));
+		while (ifdOffset != 0) {
+			if (parsed.size() == MAX_LEVELS) {
+				throw new IOException("Too many IFDs");
+			}
+			int entries = Short.toUnsignedInt(read(ifdOffset, 2).getShort(0));
+			ByteBuffer ifd = read(ifdOffset + 2, entries * 12 + 4);
+			Level level = new Level();
+			for (int i = 0; i < entries; i++) {
+				int base = i * 12;
+				int tag = Short.toUnsignedInt(ifd.getShort(base));
+				int type = Short.toUnsignedInt(ifd.getShort(base + 2));
+				int count = ifd.getInt(base + 4);
+				switch (tag) {
+					case TAG_WIDTH -> level.width = (int) longs(ifd, base, type, count)[0];
+					case TAG_HEIGHT -> level.height = (int) longs(ifd, base, type, count)[0];
+					case TAG_BITS_PER_SAMPLE -> require(longs(ifd, base, type, count)[0] == 32, "32-bit samples");
+					case TAG_SAMPLE_FORMAT -> require(longs(ifd, base, type, count)[0] == 3, "float samples");
+					case TAG_PREDICTOR -> require(longs(ifd, base, type, count)[0] == 1, "no predictor");
+					case TAG_COMPRESSION -> level.compression = (int) longs(ifd, base, type, count)[0];
+					case TAG_TILE_WIDTH -> level.tileWidth = (int) longs(ifd, base, type, count)[0];
+					case TAG_TILE_HEIGHT -> level.tileHeight = (int) longs(ifd, base, type, count)[0];
+					case TAG_TILE_OFFSETS -> level.offsets = longs(ifd, base, type, count);
+					case TAG_TILE_BYTE_COUNTS -> level.byteCounts = longs(ifd, base, type, count);
+					default -> {
+						if (parsed.isEmpty() && tag == GeoTiffTags.MODEL_PIXEL_SCALE) {
+							level.pixelScale = doubles(ifd, base, count);
+						} else if (parsed.isEmpty() && tag == GeoTiffTags.MODEL_TIEPOINT) {
+							level.tiepoint = doubles(ifd, base, count);
+						} else if (parsed.isEmpty() && tag == GeoTiffTags.GDAL_NODATA) {
+							nodata = parseNoData(ascii(ifd, base, count));
+						}
+					}
+				}
+			}
+			if (level.tileWidth <= 0 || level.tileHeight <= 0 || level.offsets == null || level.byteCounts == null) {
+				throw new IOException("Not a tiled TIFF");
+			}
+			require(level.compression == 1 || level.compression == 8, "uncompressed or deflate tiles");
+			if (parsed.isEmpty() && level.pixelScale != null && level.tiepoint != null
+					&& level.pixelScale.length >= 2 && level.tiepoint.length >= 6) {
+				geo = new GeoTransform(level.tiepoint[3] - level.tiepoint[0] * level.pixelScale[0],
+						level.tiepoint[4] + level.tiepoint[1] * level.pixelScale[1],
+						level.pixelScale[0], level.pixelScale[1]);
+			}
+			parsed.add(level);
+			ifdOffset = Integer.toUnsignedLong(ifd.getInt(entries * 12));
+		}
+		if (parsed.isEmpty()) {
+			throw new IOException("TIFF has no images");
+		}
+		this.levels = List.copyOf(parsed);
+		this.transform = geo;
+		this.noData = nodata;
+	}
+
+	/**
+	 * Opens a file and reads its IFDs.
+	 *
+	 * @throws IOException if the file is not a tiled float32 TIFF this reader supports
+	 */
+	public static TiledTiffReader open(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			return new TiledTiffReader(channel);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/** Full resolution plus overviews. */
+	public int getLevelCount() {
+		return levels.size();
+	}
+
+	public int getWidth(int level) {
+		return level(level).width;
+	}
+
+	public int getHeight(int level) {
+		return level(level).height;
+	}
+
+	/** Transform of the full-resolution level. */
+	public GeoTransform getTransform() {
+		return transform;
+	}
+
+	/** Transform of a level, derived from the full-resolution one. */
+	public GeoTransform getTransform(int level) {
+		return transform.window(0, 0, 1 << level);
+	}
+
+	/** Nodata value from GDAL_NODATA, or NaN if absent. */
+	public float getNoData() {
+		return noData;
+	}
+
+	/** Bytes read from the file so far, IFDs included. */
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+	/**
+	 * Reads a window of one level into a heap-backed FLOAT32 raster; nodata becomes NaN.
+	 *
+	 * @param level 0 for full resolution, n for the n-th overview
+	 * @param region window in that level's pixel grid, clipped to it
+	 * @throws IllegalArgumentException if the level does not exist or the window misses it
+	 * @throws IOException if a tile cannot be read or inflated
+	 */
+	public DecodedRaster readWindow(int level, Rectangle region) throws IOException {
+		Level image = level(level);
+		Rectangle window = region.intersection(new Rectangle(0, 0, image.width, image.height));
+		if (window.isEmpty()) {
+			throw new IllegalArgumentException("Region is outside level " + level);
+		}
+		ByteBuffer samples = ByteBuffer.allocate(window.width * window.height * 4).order(ByteOrder.nativeOrder());
+		return read(level, image, window, samples);
+	}
+
+	/**
+	 * Reads a whole level into an off-heap FLOAT32 raster, tile by tile, without holding
+	 * the file on the heap; nodata becomes NaN.
+	 *
+	 * @throws IllegalArgumentException if the level does not exist
+	 * @throws IOException if a tile cannot be read or inflated
+	 */
+	public DecodedRaster readLevel(int level) throws IOException {
+		Level image = level(level);
+		return read(level, image, new Rectangle(0, 0, image.width, image.height),
+				DecodedRaster.allocateFloat32(image.width, image.height));
+	}
+
+	private DecodedRaster read(int level, Level image, Rectangle window, ByteBuffer samples) throws IOException {
+		FloatBuffer out = samples.asFloatBuffer();
+		int tilesAcross = (image.width + image.tileWidth - 1) / image.tileWidth;
+		int firstTileX = window.x / image.tileWidth;
+		int lastTileX = (window.x + window.width - 1) / image.tileWidth;
+		int firstTileY = window.y / image.tileHeight;
+		int lastTileY = (window.y + window.height - 1) / image.tileHeight;
+		Inflater inflater = image.compression == 8 ? new Inflater() : null;
+		try {
+			for (int ty = firstTileY; ty <= lastTileY; ty++) {
+				for (int tx = firstTileX; tx <= lastTileX; tx++) {
+					FloatBuffer tile = readTile(image, ty * tilesAcross + tx, inflater);
+					int tileX0 = tx * image.tileWidth;
+					int tileY0 = ty * image.tileHeight;
+					int x0 = Math.max(window.x, tileX0);
+					int x1 = Math.min(window.x + window.width, tileX0 + image.tileWidth);
+					int y0 = Math.max(window.y, tileY0);
+					int y1 = Math.min(window.y + window.height, tileY0 + image.tileHeight);
+					for (int y = y0; y < y1; y++) {
+						int src = (y - tileY0) * image.tileWidth + (x0 - tileX0);
+						int dst = (y - window.y) * window.width + (x0 - window.x);
+						for (int x = 0; x < x1 - x0; x++) {
+							float value = tile.get(src + x);
+							out.put(dst + x, value == noData ? Float.NaN : value);
+						}
+					}
+				}
+				WorkScheduler.checkpoint();
+			}
+		} finally {
+			if (inflater != null) {
+				inflater.end();
+			}
+		}
+		return DecodedRaster.of(window.width, window.height, getTransform(level).window(window.x, window.y, 1),
+				samples, DecodedRaster.Storage.FLOAT32);
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private FloatBuffer readTile(Level image, int index, Inflater inflater) throws IOException {
+		if (index >= image.offsets.length) {
+			throw new IOException("Missing tile " + index);
+		}
+		ByteBuffer stored = read(image.offsets[index], (int) image.byteCounts[index]);
+		int tileBytes = image.tileWidth * image.tileHeight * 4;
+		if (inflater == null) {
+			return stored.asFloatBuffer();
+		}
+		byte[] inflated = new byte[tileBytes];
+		inflater.reset();
+		inflater.setInput(stored.array());
+		try {
+			int length = 0;
+			while (length < tileBytes && !inflater.finished()) {
+				int n = inflater.inflate(inflated, length, tileBytes - length);
+				if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				length += n;
+			}
+			if (length != tileBytes) {
+				throw new IOException("Tile " + index + " inflated to " + length + " bytes, expected " + tileBytes);
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Corrupt tile " + index, e);
+		}
+		return ByteBuffer.wrap(inflated).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+	}
+
+	private ByteBuffer read(long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException("Unexpected end of TIFF at " + (position + buffer.position()));
+			}
+		}
+		bytesRead += length;
+		return buffer.flip().order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private ByteBuffer values(ByteBuffer ifd, int entry, int size) throws IOException {
+		if (size <= 4) {
+			return ifd.slice(entry + 8, 4).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		return read(Integer.toUnsignedLong(ifd.getInt(entry + 8)), size);
+	}
+
+	private long[] longs(ByteBuffer ifd, int entry, int type, int count) throws IOException {
+		int size = type == 3 ? 2 : 4;
+		if (type != 3 && type != 4) {
+			throw new IOException("Unsupported field type " + type);
+		}
+		ByteBuffer data = values(ifd, entry, count * size);
+		long[] result = new long[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = size == 2 ? Short.toUnsignedInt(data.getShort(i * 2)) : Integer.toUnsignedLong(data.getInt(i * 4));
+		}
+		return result;
+	}
+
+	private double[] doubles(ByteBuffer ifd, int entry, int count) throws IOException {
+		ByteBuffer data = values(ifd, entry, count * 8);
+		double[] result = new double[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = data.getDouble(i * 8);
+		}
+		return result;
+	}
+
+	private String ascii(ByteBuffer ifd, int entry, int count) throws IOException {
+		ByteBuffer data = values(ifd, entry, count);
+		byte[] bytes = new byte[count];
+		data.get(0, bytes);
+		return new String(bytes, StandardCharsets.US_ASCII).replace("\0", "").trim();
+	}
+
+	private static float parseNoData(String value) {
+		try {
+			return Float.parseFloat(value);
+		} catch (NumberFormatException e) {
+			return Float.NaN;
+		}
+	}
+
+	private static void require(boolean condition, String what) throws IOException {
+		if (!condition) {
+			throw new IOException("Unsupported TIFF: expected " + what);
+		}
+	}
+
+	private Level level(int level) {
+		if (level < 0 || level >= levels.size()) {
+			throw new IllegalArgumentException("Level must be between 0 and " + (levels.size() - 1));
+		}
+		return levels.get(level);
+	}
+
+	private static final class Level {
+		int width;
+		int height;
+		int compression = 1;
+		int tileWidth;
+		int tileHeight;
+		long[] offsets;
+		long[] byteCounts;
+		double[] pixelScale;
+		double[] tiepoint;
+	}
+}
@@ -0,0 +1,401 @@
+package com.daffidev.backcityplanner.raster;
+
+import com.daffidev.backcityplanner.scheduling.WorkScheduler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+
+/**
+ * Writes float32 GeoTIFFs with 256×256 tiles and, optionally, power-of-two overviews
+ * in cloud-optimized layout: all IFDs at the start of the file (full resolution first,
+ * then each overview), followed by the tile data of the smallest overview first and
+ * the full-resolution tiles last. A reader can then fetch any window at any zoom with
+ * a handful of small reads.
+ *
+ * Overview cells are the mean of the valid cells they cover, so they remain densities.
+ * Nodata (NaN in the source) is written as {@code noData} and declared in the
+ * GDAL_NODATA tag. The georeferencing is EPSG:4326 with the source's transform.
+ */
+public final class TiledTiffWriter {
+
+	public static final int TILE_SIZE = 256;
+
+	public enum Compression {
+		NONE(1),
+		DEFLATE(8);
+
+		final int tiffCode;
+
+		Compression(int tiffCode) {
+			this.tiffCode = tiffCode;
+		}
+	}
+
+	private static final int TYPE_ASCII = 2;
+	private static final int TYPE_SHORT = 3;
+	private static final int TYPE_LONG = 4;
+	private static final int TYPE_DOUBLE = 12;
+
+	private static final int HEADER_SIZE = 8;
+
+	private final Compression compression;
+	private final boolean overviews;
+	private final float noData;
+	private final int deflateLevel;
+
+	/**
+	 * @param compression tile compression
+	 * @param overviews whether to add power-of-two overviews down to a single tile
+	 * @param noData value written for NaN cells
+	 */
+	public TiledTiffWriter(Compression compression, boolean overviews, float noData) {
+		this(compression, overviews, noData, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	public TiledTiffWriter(Compression compression, boolean overviews, float noData, int deflateLevel) {
+		this.compression = compression;
+		this.overviews = overviews;
+		this.noData = noData;
+		this.deflateLevel = deflateLevel;
+	}
+
+	/**
+	 * Number of levels (full resolution plus overviews) written for a raster.
+	 */
+	public int levelCount(int width, int height) {
+		int levels = 1;
+		while (overviews && (width > TILE_SIZE || height > TILE_SIZE)) {
+			width = (width + 1) / 2;
+			height = (height + 1) / 2;
+			levels++;
+		}
+		return levels;
+	}
+
+	/**
+	 * Encodes a raster as a tiled GeoTIFF in memory. Meant for small rasters; large ones
+	 * go through {@link #write(DecodedRaster, SeekableByteChannel)}.
+	 */
+	public byte[] write(DecodedRaster raster) {
+		Layout layout = layout(raster);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.writeBytes(new byte[Math.toIntExact(layout.dataStart)]);
+		try {
+			writeTiles(layout, (index, tile) -> out.writeBytes(tile));
+		} catch (IOException e) {
+			throw new IllegalStateException("ByteArrayOutputStream cannot fail", e);
+		}
+		byte[] file = out.toByteArray();
+		byte[] directory = layout.directory();
+		System.arraycopy(directory, 0, file, 0, directory.length);
+		return file;
+	}
+
+	/**
+	 * Encodes a raster as a tiled GeoTIFF, streaming each compressed tile to the channel
+	 * as soon as it is encoded. The IFDs are written last, at the start of the channel,
+	 * once the tile offsets are known; their size does not depend on those offsets.
+	 *
+	 * @param raster source samples (any storage; quantized rasters are written dequantized)
+	 * @param out empty destination, positioned at its start; not closed
+	 * @throws IOException if writing fails or the file would exceed 4 GiB
+	 */
+	public void write(DecodedRaster raster, SeekableByteChannel out) throws IOException {
+		Layout layout = layout(raster);
+		out.position(layout.dataStart);
+		writeTiles(layout, (index, tile) -> writeFully(out, tile));
+		out.position(0);
+		writeFully(out, layout.directory());
+	}
+
+	private Layout layout(DecodedRaster raster) {
+		List<DecodedRaster> levels = new ArrayList<>();
+		levels.add(raster);
+		for (int i = 1; i < levelCount(raster.getWidth(), raster.getHeight()); i++) {
+			levels.add(downsample(levels.get(i - 1)));
+		}
+		List<TreeMap<Integer, Object[]>> ifds = new ArrayList<>(levels.size());
+		long dataStart = HEADER_SIZE;
+		for (int i = 0; i < levels.size(); i++) {
+			TreeMap<Integer, Object[]> tags = tags(levels.get(i), i == 0, tileCount(levels.get(i)));
+			ifds.add(tags);
+			dataStart += ifdSize(tags);
+		}
+		return new Layout(levels, ifds, dataStart);
+	}
+
+	/**
+	 * Encodes the tiles of every level, smallest overview first, and records their
+	 * offsets and byte counts in the IFDs.
+	 */
+	private void writeTiles(Layout layout, TileSink sink) throws IOException {
+		long[] position = {layout.dataStart};
+		for (int i = layout.levels.size() - 1; i >= 0; i--) {
+			DecodedRaster level = layout.levels.get(i);
+			long[] offsets = new long[tileCount(level)];
+			long[] byteCounts = new long[offsets.length];
+			encodeTiles(level, (index, tile) -> {
+				offsets[index] = position[0];
+				byteCounts[index] = tile.length;
+				position[0] += tile.length;
+				if (position[0] > 0xFFFFFFFFL) {
+					throw new IOException("Raster too large for a classic TIFF: over " + position[0] + " bytes");
+				}
+				sink.accept(index, tile);
+			});
+			layout.ifds.get(i).put(324, new Object[]{TYPE_LONG, offsets});
+			layout.ifds.get(i).put(325, new Object[]{TYPE_LONG, byteCounts});
+		}
+	}
+
+	private static void writeFully(SeekableByteChannel out, byte[] bytes) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+	}
+
+	private static int tileCount(DecodedRaster raster) {
+		int across = (raster.getWidth() + TILE_SIZE - 1) / TILE_SIZE;
+		int down = (raster.getHeight() + TILE_SIZE - 1) / TILE_SIZE;
+		return across * down;
+	}
+
+	private interface TileSink {
+		void accept(int index, byte[] tile) throws IOException;
+	}
+
+	/**
+	 * Levels to write and their IFDs; the tile offsets and byte counts are filled in
+	 * by {@link #writeTiles}.
+	 */
+	private record Layout(List<DecodedRaster> levels, List<TreeMap<Integer, Object[]>> ifds, long dataStart) {
+
+		byte[] directory() {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			header.put((byte) 'I').put((byte) 'I').putShort((short) 42).putInt(HEADER_SIZE);
+			out.writeBytes(header.array());
+
+			long ifdOffset = HEADER_SIZE;
+			for (int i = 0; i < ifds.size(); i++) {
+				long next = i + 1 < ifds.size() ? ifdOffset + ifdSize(ifds.get(i)) : 0;
+				out.writeBytes(serializeIfd(ifds.get(i), ifdOffset, next));
+				ifdOffset += ifdSize(ifds.get(i));
+			}
+			return out.toByteArray();
+		}
+	}
+
+	/**
+	 * Halves a raster's resolution; each output cell is the mean of the valid cells
+	 * in its 2×2 block, or NaN if none is valid.
+	 */
+	static DecodedRaster downsample(DecodedRaster source) {
+		int width = (source.getWidth() + 1) / 2;
+		int height = (source.getHeight() + 1) / 2;
+		ByteBuffer samples = DecodedRaster.allocateFloat32(width, height);
+		FloatBuffer out = samples.asFloatBuffer();
+		float[] upper = new float[source.getWidth()];
+		float[] lower = new float[source.getWidth()];
+		float[] row = new float[width];
+
+		for (int y = 0; y < height; y++) {
+			if (y % TILE_SIZE == 0) {
+				WorkScheduler.checkpoint();
+			}
+			source.readRow(2 * y, 0, source.getWidth(), upper, 0);
+			boolean hasLower = 2 * y + 1 < source.getHeight();
+			if (hasLower) {
+				source.readRow(2 * y + 1, 0, source.getWidth(), lower, 0);
+			}
+			for (int x = 0; x < width; x++) {
+				double sum = 0;
+				int count = 0;
+				for (int dx = 0; dx < 2; dx++) {
+					int sx = 2 * x + dx;
+					if (sx >= source.getWidth()) {
+						break;
+					}
+					if (!Float.isNaN(upper[sx])) {
+						sum += upper[sx];
+						count++;
+					}
+					if (hasLower && !Float.isNaN(lower[sx])) {
+						sum += lower[sx];
+						count++;
+					}
+				}
+				row[x] = count > 0 ? (float) (sum / count) : Float.NaN;
+			}
+			out.put(row);
+		}
+		return DecodedRaster.of(width, height, source.getTransform().window(0, 0, 2), samples, DecodedRaster.Storage.FLOAT32);
+	}
+
+	private void encodeTiles(DecodedRaster raster, TileSink sink) throws IOException {
+		int across = (raster.getWidth() + TILE_SIZE - 1) / TILE_SIZE;
+		int down = (raster.getHeight() + TILE_SIZE - 1) / TILE_SIZE;
+		ByteBuffer tile = ByteBuffer.allocate(TILE_SIZE * TILE_SIZE * 4).order(ByteOrder.LITTLE_ENDIAN);
+		float[] row = new float[TILE_SIZE];
+		Deflater deflater = compression == Compression.DEFLATE ? new Deflater(deflateLevel) : null;
+		try {
+			for (int ty = 0; ty < down; ty++) {
+				for (int tx = 0; tx < across; tx++) {
+					WorkScheduler.checkpoint();
+					tile.clear();
+					int x0 = tx * TILE_SIZE;
+					int columns = Math.min(TILE_SIZE, raster.getWidth() - x0);
+					for (int r = 0; r < TILE_SIZE; r++) {
+						int y = ty * TILE_SIZE + r;
+						// Tiles are always full size; the part beyond the raster edge is nodata
+						int valid = y < raster.getHeight() ? columns : 0;
+						if (valid > 0) {
+							raster.readRow(y, x0, valid, row, 0);
+						}
+						for (int c = 0; c < TILE_SIZE; c++) {
+							float value = c < valid ? row[c] : Float.NaN;
+							tile.putFloat(Float.isNaN(value) ? noData : value);
+						}
+					}
+					sink.accept(ty * across + tx, compress(tile.array(), deflater));
+				}
+			}
+		} finally {
+			if (deflater != null) {
+				deflater.end();
+			}
+		}
+	}
+
+	private static byte[] compress(byte[] data, Deflater deflater) {
+		if (deflater == null) {
+			return data.clone();
+		}
+		deflater.reset();
+		deflater.setInput(data);
+		deflater.finish();
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 4);
+		byte[] buffer = new byte[16384];
+		while (!deflater.finished()) {
+			int n = deflater.deflate(buffer);
+			compressed.write(buffer, 0, n);
+		}
+		return compressed.toByteArray();
+	}
+
+	private TreeMap<Integer, Object[]> tags(DecodedRaster level, boolean fullResolution, int tileCount) {
+		TreeMap<Integer, Object[]> tags = new TreeMap<>();
+		tags.put(254, new Object[]{TYPE_LONG, new long[]{fullResolution ? 0 : 1}});
+		tags.put(256, new Object[]{TYPE_LONG, new long[]{level.getWidth()}});
+		tags.put(257, new Object[]{TYPE_LONG, new long[]{level.getHeight()}});
+		tags.put(258, new Object[]{TYPE_SHORT, new long[]{32}});
+		tags.put(259, new Object[]{TYPE_SHORT, new long[]{compression.tiffCode}});
+		tags.put(262, new Object[]{TYPE_SHORT, new long[]{1}});
+		tags.put(277, new Object[]{TYPE_SHORT, new long[]{1}});
+		tags.put(284, new Object[]{TYPE_SHORT, new long[]{1}});
+		tags.put(322, new Object[]{TYPE_LONG, new long[]{TILE_SIZE}});
+		tags.put(323, new Object[]{TYPE_LONG, new long[]{TILE_SIZE}});
+		// Placeholders of the right length; filled in once the data layout is known
+		tags.put(324, new Object[]{TYPE_LONG, new long[tileCount]});
+		tags.put(325, new Object[]{TYPE_LONG, new long[tileCount]});
+		tags.put(339, new Object[]{TYPE_SHORT, new long[]{3}});
+		GeoTransform transform = level.getTransform();
+		if (fullResolution && transform.isKnown()) {
+			tags.put(GeoTiffTags.MODEL_PIXEL_SCALE, new Object[]{TYPE_DOUBLE,
+					new double[]{transform.pixelWidth(), transform.pixelHeight(), 0}});
+			tags.put(GeoTiffTags.MODEL_TIEPOINT, new Object[]{TYPE_DOUBLE,
+					new double[]{0, 0, 0, transform.originX(), transform.originY(), 0}});
+			// GeoKeyDirectory: geographic model, pixel-is-area, EPSG:4326
+			tags.put(34735, new Object[]{TYPE_SHORT, new long[]{1, 1, 0, 3, 1024, 0, 1, 2, 1025, 0, 1, 1, 2048, 0, 1, 4326}});
+		}
+		tags.put(GeoTiffTags.GDAL_NODATA, new Object[]{TYPE_ASCII, (formatNoData() + '\0').getBytes(StandardCharsets.US_ASCII)});
+		return tags;
+	}
+
+	private String formatNoData() {
+		return noData == Math.rint(noData) ? Long.toString((long) noData) : Float.toString(noData);
+	}
+
+	private static long ifdSize(TreeMap<Integer, Object[]> tags) {
+		long size = 2 + tags.size() * 12L + 4;
+		for (Object[] tag : tags.values()) {
+			int length = payload((Integer) tag[0], tag[1]).length;
+			if (length > 4) {
+				size += length + (length & 1);
+			}
+		}
+		return size;
+	}
+
+	private static byte[] serializeIfd(TreeMap<Integer, Object[]> tags, long ifdOffset, long nextIfdOffset) {
+		int entriesSize = 2 + tags.size() * 12 + 4;
+		ByteBuffer ifd = ByteBuffer.allocate(entriesSize).order(ByteOrder.LITTLE_ENDIAN);
+		ByteArrayOutputStream extra = new ByteArrayOutputStream();
+		long extraOffset = ifdOffset + entriesSize;
+
+		ifd.putShort((short) tags.size());
+		for (var entry : tags.entrySet()) {
+			int type = (Integer) entry.getValue()[0];
+			Object values = entry.getValue()[1];
+			byte[] payload = payload(type, values);
+			int count = type == TYPE_ASCII ? payload.length : type == TYPE_DOUBLE ? payload.length / 8
+					: ((long[]) values).length;
+
+			ifd.putShort(entry.getKey().shortValue());
+			ifd.putShort((short) type);
+			ifd.putInt(count);
+			if (payload.length <= 4) {
+				byte[] inline = new byte[4];
+				System.arraycopy(payload, 0, inline, 0, payload.length);
+				ifd.put(inline);
+			} else {
+				ifd.putInt((int) (extraOffset + extra.size()));
+				extra.writeBytes(payload);
+				if ((extra.size() & 1) == 1) {
+					extra.write(0);
+				}
+			}
+		}
+		ifd.putInt((int) nextIfdOffset);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(entriesSize + extra.size());
+		out.writeBytes(ifd.array());
+		out.writeBytes(extra.toByteArray());
+		return out.toByteArray();
+	}
+
+	private static byte[] payload(int type, Object values) {
+		if (type == TYPE_ASCII) {
+			return (byte[]) values;
+		}
+		if (type == TYPE_DOUBLE) {
+			double[] doubles = (double[]) values;
+			ByteBuffer buffer = ByteBuffer.allocate(doubles.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+			for (double value : doubles) {
+				buffer.putDouble(value);
+			}
+			return buffer.array();
+		}
+		long[] longs = (long[]) values;
+		int size = type == TYPE_SHORT ? 2 : 4;
+		ByteBuffer buffer = ByteBuffer.allocate(longs.length * size).order(ByteOrder.LITTLE_ENDIAN);
+		for (long value : longs) {
+			if (type == TYPE_SHORT) {
+				buffer.putShort((short) value);
+			} else {
+				buffer.putInt((int) value);
+			}
+		}
+		return buffer.array();
+	}
+}
@@ -0,0 +1,18 @@
+package com.daffidev.backcityplanner.raster;
+
+/**
+ * A connected group of urban cells found by {@link UrbanClusterLabeler}.
+ * Coordinates are cell corners of the raster grid: cell (x, y) spans x..x+1, y..y+1.
+ *
+ * @param population sum of density × cell area over the cluster
+ * @param areaKm2    area of the cluster's cells
+ * @param cells      number of cells
+ * @param minX       west edge column
+ * @param minY       north edge row
+ * @param maxX       east edge column (exclusive of the cells)
+ * @param maxY       south edge row (exclusive of the cells)
+ * @param hull       convex hull of the cells as x, y corner pairs
+ */
+public record UrbanCluster(double population, double areaKm2, long cells, int minX, int minY, int maxX, int maxY,
+						   int[] hull) {
+}
@@ -0,0 +1,360 @@
+package com.daffidev.backcityplanner.raster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Labels urban clusters of a density raster: 4-connected groups of cells whose
+ * density is at or above a threshold.
+ *
+ * The raster is split into TILE_SIZE × TILE_SIZE tiles that are labelled
+ * independently ({@link #labelTile}, safe to run in parallel), each keeping only
+ * the statistics and convex hull of its local components plus the component at
+ * every cell of its four edges. {@link #merge} then joins components that touch
+ * across tile edges with a union-find and sums them up. Samples are read row by row
+ * from the raster's own buffer, so heap use depends on the tile size and the number
+ * of clusters, not on the raster size.
+ */
+public final class UrbanClusterLabeler {
+
+	public static final int TILE_SIZE = 256;
+
+	private final DecodedRaster raster;
+	private final float threshold;
+	private final int tilesX;
+	private final int tilesY;
+
+	public UrbanClusterLabeler(DecodedRaster raster, float threshold) {
+		this.raster = raster;
+		this.threshold = threshold;
+		this.tilesX = (raster.getWidth() + TILE_SIZE - 1) / TILE_SIZE;
+		this.tilesY = (raster.getHeight() + TILE_SIZE - 1) / TILE_SIZE;
+	}
+
+	public int getTilesX() {
+		return tilesX;
+	}
+
+	public int getTilesY() {
+		return tilesY;
+	}
+
+	/**
+	 * Labels every tile in turn and merges them.
+	 */
+	public List<UrbanCluster> label() {
+		List<TileLabels> tiles = new ArrayList<>(tilesX * tilesY);
+		for (int tileY = 0; tileY < tilesY; tileY++) {
+			for (int tileX = 0; tileX < tilesX; tileX++) {
+				tiles.add(labelTile(tileX, tileY));
+			}
+		}
+		return merge(tiles);
+	}
+
+	/**
+	 * Labels the components of one tile by union-find over runs of urban cells.
+	 */
+	public TileLabels labelTile(int tileX, int tileY) {
+		int x0 = tileX * TILE_SIZE;
+		int y0 = tileY * TILE_SIZE;
+		int width = Math.min(TILE_SIZE, raster.getWidth() - x0);
+		int height = Math.min(TILE_SIZE, raster.getHeight() - y0);
+
+		Runs runs = new Runs();
+		int[] left = new int[height];
+		int[] right = new int[height];
+		int[] top = new int[width];
+		int[] bottom = new int[width];
+		Arrays.fill(left, -1);
+		Arrays.fill(right, -1);
+		Arrays.fill(top, -1);
+		Arrays.fill(bottom, -1);
+
+		float[] row = new float[width];
+		int previousFirst = 0;
+		int previousEnd = 0;
+		for (int y = 0; y < height; y++) {
+			raster.readRow(y0 + y, x0, width, row, 0);
+			double cellArea = raster.getTransform().cellAreaKm2(y0 + y);
+			int first = runs.size;
+			int candidate = previousFirst;
+			for (int x = 0; x < width; ) {
+				if (!isUrban(row[x])) {
+					x++;
+					continue;
+				}
+				int start = x;
+				double population = 0;
+				while (x < width && isUrban(row[x])) {
+					population += row[x] * cellArea;
+					x++;
+				}
+				int run = runs.add(x0 + start, x0 + x, y0 + y, population, cellArea * (x - start));
+				// Runs of the row above are sorted, so each is passed over once per row
+				while (candidate < previousEnd && runs.end[candidate] <= x0 + start) {
+					candidate++;
+				}
+				for (int other = candidate; other < previousEnd && runs.start[other] < x0 + x; other++) {
+					runs.union(run, other);
+				}
+				if (start == 0) {
+					left[y] = run;
+				}
+				if (x == width) {
+					right[y] = run;
+				}
+				if (y == 0 || y == height - 1) {
+					Arrays.fill(y == 0 ? top : bottom, start, x, run);
+					if (height == 1) {
+						Arrays.fill(bottom, start, x, run);
+					}
+				}
+			}
+			previousFirst = first;
+			previousEnd = runs.size;
+		}
+
+		// One component per union-find root, and every edge cell pointing at its component
+		int[] component = new int[runs.size];
+		List<Component> components = new ArrayList<>();
+		for (int run = 0; run < runs.size; run++) {
+			int root = runs.find(run);
+			if (root == run) {
+				component[run] = components.size();
+				components.add(new Component());
+			}
+		}
+		for (int run = 0; run < runs.size; run++) {
+			components.get(component[runs.find(run)]).add(runs, run);
+		}
+		for (int[] edge : new int[][]{left, right, top, bottom}) {
+			for (int i = 0; i < edge.length; i++) {
+				if (edge[i] >= 0) {
+					edge[i] = component[runs.find(edge[i])];
+				}
+			}
+		}
+		for (Component c : components) {
+			c.points = ConvexHull.of(c.points, c.pointCount);
+			c.pointCount = c.points.length / 2;
+		}
+		return new TileLabels(tileX, tileY, components, left, right, top, bottom);
+	}
+
+	/**
+	 * Joins the components of all tiles that touch across tile edges.
+	 *
+	 * @param tiles every tile of the raster, labelled by {@link #labelTile}
+	 * @return the clusters, most populous first
+	 */
+	public List<UrbanCluster> merge(List<TileLabels> tiles) {
+		TileLabels[] grid = new TileLabels[tilesX * tilesY];
+		int[] base = new int[grid.length];
+		for (TileLabels tile : tiles) {
+			grid[tile.tileY * tilesX + tile.tileX] = tile;
+		}
+		int count = 0;
+		for (int i = 0; i < grid.length; i++) {
+			if (grid[i] == null) {
+				throw new IllegalArgumentException("Tile " + (i % tilesX) + "," + (i / tilesX) + " is missing");
+			}
+			base[i] = count;
+			count += grid[i].components.size();
+		}
+
+		int[] parent = new int[count];
+		for (int i = 0; i < count; i++) {
+			parent[i] = i;
+		}
+		for (int tileY = 0; tileY < tilesY; tileY++) {
+			for (int tileX = 0; tileX < tilesX; tileX++) {
+				int index = tileY * tilesX + tileX;
+				TileLabels tile = grid[index];
+				if (tileX + 1 < tilesX) {
+					joinEdges(parent, tile.right, base[index], grid[index + 1].left, base[index + 1]);
+				}
+				if (tileY + 1 < tilesY) {
+					joinEdges(parent, tile.bottom, base[index], grid[index + tilesX].top, base[index + tilesX]);
+				}
+			}
+		}
+
+		Component[] merged = new Component[count];
+		for (int i = 0; i < grid.length; i++) {
+			List<Component> components = grid[i].components;
+			for (int c = 0; c < components.size(); c++) {
+				int root = find(parent, base[i] + c);
+				if (merged[root] == null) {
+					merged[root] = new Component();
+				}
+				merged[root].add(components.get(c));
+			}
+		}
+
+		List<UrbanCluster> clusters = new ArrayList<>();
+		for (Component component : merged) {
+			if (component != null) {
+				clusters.add(component.toCluster());
+			}
+		}
+		clusters.sort(Comparator.comparingDouble(UrbanCluster::population).reversed());
+		return clusters;
+	}
+
+	private boolean isUrban(float density) {
+		return density >= threshold;
+	}
+
+	private static void joinEdges(int[] parent, int[] edge, int base, int[] neighbour, int neighbourBase) {
+		for (int i = 0; i < edge.length; i++) {
+			if (edge[i] >= 0 && neighbour[i] >= 0) {
+				int a = find(parent, base + edge[i]);
+				int b = find(parent, neighbourBase + neighbour[i]);
+				if (a != b) {
+					parent[Math.max(a, b)] = Math.min(a, b);
+				}
+			}
+		}
+	}
+
+	private static int find(int[] parent, int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	/**
+	 * Components of one tile and the component at each edge cell (-1 where not urban).
+	 * Opaque outside this class.
+	 */
+	public static final class TileLabels {
+		private final int tileX;
+		private final int tileY;
+		private final List<Component> components;
+		private final int[] left;
+		private final int[] right;
+		private final int[] top;
+		private final int[] bottom;
+
+		private TileLabels(int tileX, int tileY, List<Component> components,
+						   int[] left, int[] right, int[] top, int[] bottom) {
+			this.tileX = tileX;
+			this.tileY = tileY;
+			this.components = components;
+			this.left = left;
+			this.right = right;
+			this.top = top;
+			this.bottom = bottom;
+		}
+
+		public int getComponentCount() {
+			return components.size();
+		}
+	}
+
+	/**
+	 * Runs of consecutive urban cells in a row, [start, end) in raster columns, with a
+	 * union-find over them.
+	 */
+	private static final class Runs {
+		int size;
+		int[] start = new int[64];
+		int[] end = new int[64];
+		int[] row = new int[64];
+		int[] parent = new int[64];
+		double[] population = new double[64];
+		double[] area = new double[64];
+
+		int add(int runStart, int runEnd, int y, double runPopulation, double runArea) {
+			if (size == start.length) {
+				int capacity = size * 2;
+				start = Arrays.copyOf(start, capacity);
+				end = Arrays.copyOf(end, capacity);
+				row = Arrays.copyOf(row, capacity);
+				parent = Arrays.copyOf(parent, capacity);
+				population = Arrays.copyOf(population, capacity);
+				area = Arrays.copyOf(area, capacity);
+			}
+			start[size] = runStart;
+			end[size] = runEnd;
+			row[size] = y;
+			parent[size] = size;
+			population[size] = runPopulation;
+			area[size] = runArea;
+			return size++;
+		}
+
+		int find(int run) {
+			return UrbanClusterLabeler.find(parent, run);
+		}
+
+		void union(int a, int b) {
+			int rootA = find(a);
+			int rootB = find(b);
+			if (rootA != rootB) {
+				parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+			}
+		}
+	}
+
+	/**
+	 * Running figures of a component; points holds corner coordinates (x, y pairs) of
+	 * its cells, reduced to their convex hull once the component is complete.
+	 */
+	private static final class Component {
+		double population;
+		double area;
+		long cells;
+		int minX = Integer.MAX_VALUE;
+		int minY = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE;
+		int maxY = Integer.MIN_VALUE;
+		int[] points = new int[16];
+		int pointCount;
+
+		void add(Runs runs, int run) {
+			population += runs.population[run];
+			area += runs.area[run];
+			cells += runs.end[run] - runs.start[run];
+			minX = Math.min(minX, runs.start[run]);
+			maxX = Math.max(maxX, runs.end[run]);
+			minY = Math.min(minY, runs.row[run]);
+			maxY = Math.max(maxY, runs.row[run] + 1);
+			addPoint(runs.start[run], runs.row[run]);
+			addPoint(runs.end[run], runs.row[run]);
+			addPoint(runs.start[run], runs.row[run] + 1);
+			addPoint(runs.end[run], runs.row[run] + 1);
+		}
+
+		void add(Component other) {
+			population += other.population;
+			area += other.area;
+			cells += other.cells;
+			minX = Math.min(minX, other.minX);
+			minY = Math.min(minY, other.minY);
+			maxX = Math.max(maxX, other.maxX);
+			maxY = Math.max(maxY, other.maxY);
+			for (int i = 0; i < other.pointCount; i++) {
+				addPoint(other.points[2 * i], other.points[2 * i + 1]);
+			}
+		}
+
+		private void addPoint(int x, int y) {
+			if (2 * pointCount == points.length) {
+				points = Arrays.copyOf(points, points.length * 2);
+			}
+			points[2 * pointCount] = x;
+			points[2 * pointCount + 1] = y;
+			pointCount++;
+		}
+
+		UrbanCluster toCluster() {
+			return new UrbanCluster(population, area, cells, minX, minY, maxX, maxY, ConvexHull.of(points, pointCount));
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package com.daffidev.backcityplanner.repositories;
+
+import com.daffidev.backcityplanner.entities.Grafico;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bulk write path for the 'grafico' table.
+ *
+ * Grafico ids come from an IDENTITY column, which disables Hibernate JDBC batching,
+ * so large loads go through here instead: rows are sent as multi-row
+ * INSERT ... ON CONFLICT (name, year) DO UPDATE statements, one round trip per chunk.
+ * Re-running a load updates the existing rows instead of duplicating them.
+ */
+@Repository
+public class GraficoBulkRepository {
+
+	private static final String INSERT_PREFIX = "INSERT INTO grafico (created_at, name, year, url) VALUES ";
+	private static final String ROW_PLACEHOLDER = "(?, ?, ?, ?)";
+	private static final String UPSERT_SUFFIX = " ON CONFLICT (name, year) DO UPDATE SET url = EXCLUDED.url"
+			+ " RETURNING id, created_at, name, year, url";
+
+	private static final RowMapper<Grafico> GRAFICO_ROW_MAPPER = (rs, rowNum) -> {
+		Grafico grafico = new Grafico(rs.getString("name"), rs.getInt("year"), rs.getString("url"));
+		grafico.setId(rs.getLong("id"));
+		Timestamp createdAt = rs.getTimestamp("created_at");
+		grafico.setCreatedAt(createdAt != null ? createdAt.toLocalDateTime() : null);
+		return grafico;
+	};
+
+	private final JdbcTemplate jdbcTemplate;
+	private final int chunkSize;
+
+	public GraficoBulkRepository(JdbcTemplate jdbcTemplate,
+								 @Value("${grafico.bulk.chunk-size:1000}") int chunkSize) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("grafico.bulk.chunk-size must be positive");
+		}
+		this.jdbcTemplate = jdbcTemplate;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Inserts or updates graphics keyed by (name, year).
+	 * Must run inside a transaction so all chunks commit together.
+	 *
+	 * @param graficos graphics to upsert; later entries win on duplicate (name, year)
+	 * @return the stored rows, with ids and creation timestamps from the database
+	 */
+	public List<Grafico> upsertAll(Collection<Grafico> graficos) {
+		// One statement cannot touch the same row twice, so collapse duplicate keys first
+		Map<String, Grafico> byKey = new LinkedHashMap<>();
+		for (Grafico grafico : graficos) {
+			byKey.put(grafico.getName() + '\u0000' + grafico.getYear(), grafico);
+		}
+
+		List<Grafico> unique = new ArrayList<>(byKey.values());
+		List<Grafico> stored = new ArrayList<>(unique.size());
+		for (int from = 0; from < unique.size(); from += chunkSize) {
+			List<Grafico> chunk = unique.subList(from, Math.min(from + chunkSize, unique.size()));
+			stored.addAll(upsertChunk(chunk));
+		}
+		return stored;
+	}
+
+	private List<Grafico> upsertChunk(List<Grafico> chunk) {
+		StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + chunk.size() * 14 + UPSERT_SUFFIX.length());
+		sql.append(INSERT_PREFIX);
+		for (int i = 0; i < chunk.size(); i++) {
+			if (i > 0) {
+				sql.append(", ");
+			}
+			sql.append(ROW_PLACEHOLDER);
+		}
+		sql.append(UPSERT_SUFFIX);
+
+		return jdbcTemplate.query(sql.toString(), ps -> {
+			int index = 1;
+			for (Grafico grafico : chunk) {
+				LocalDateTime createdAt = grafico.getCreatedAt() != null ? grafico.getCreatedAt() : LocalDateTime.now();
+				ps.setTimestamp(index++, Timestamp.valueOf(createdAt));
+				ps.setString(index++, grafico.getName());
+				ps.setObject(index++, grafico.getYear(), Types.INTEGER);
+				ps.setString(index++, grafico.getUrl());
+			}
+		}, GRAFICO_ROW_MAPPER);
+	}
+}
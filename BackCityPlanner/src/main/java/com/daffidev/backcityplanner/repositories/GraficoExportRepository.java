@@ -0,0 +1,45 @@
+package com.daffidev.backcityplanner.repositories;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+
+/**
+ * Streaming read path for exporting the 'grafico' table.
+ *
+ * Rows are handed to a callback one at a time over a server-side cursor
+ * (the PostgreSQL driver only uses one when a fetch size is set and the call
+ * runs inside a transaction), so memory stays flat regardless of table size.
+ */
+@Repository
+public class GraficoExportRepository {
+
+	private static final String SELECT_ALL = "SELECT id, name, year, url FROM grafico ORDER BY name, year, id";
+	private static final String SELECT_BY_NAME = "SELECT id, name, year, url FROM grafico WHERE name = ? ORDER BY year, id";
+
+	private final JdbcTemplate jdbcTemplate;
+
+	public GraficoExportRepository(DataSource dataSource,
+								   @Value("${grafico.export.fetch-size:500}") int fetchSize) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.jdbcTemplate.setFetchSize(fetchSize);
+	}
+
+	/**
+	 * Streams id, name, year and url of every row, optionally filtered by name.
+	 * Must be called inside a transaction.
+	 *
+	 * @param name name to filter by, or null for all rows
+	 * @param handler callback invoked once per row
+	 */
+	public void streamRows(String name, RowCallbackHandler handler) {
+		if (name == null) {
+			jdbcTemplate.query(SELECT_ALL, handler);
+		} else {
+			jdbcTemplate.query(SELECT_BY_NAME, handler, name);
+		}
+	}
+}
@@ -1,7 +1,10 @@
 package com.daffidev.backcityplanner.repositories;
 
+import com.daffidev.backcityplanner.dto.GraficoSummary;
 import com.daffidev.backcityplanner.entities.Grafico;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -26,4 +29,29 @@ public interface GraficoRepository extends JpaRepository<Grafico, Long> {
 	 * @param name the name/ISO3 to delete
 	 */
 	void deleteByName(String name);
+
+	/**
+	 * Keyset page over all graphics ordered by (name, year, id), with a NULL name
+	 * sorting as '' and a NULL year as Integer.MIN_VALUE so that no row falls outside
+	 * the keyset. Returns rows strictly after the given position.
+	 */
+	@Query(value = "SELECT id, name, year FROM grafico"
+			+ " WHERE (COALESCE(name, ''), COALESCE(year, -2147483648), id) > (:afterName, :afterYear, :afterId)"
+			+ " ORDER BY COALESCE(name, ''), COALESCE(year, -2147483648), id LIMIT :limit", nativeQuery = true)
+	List<GraficoSummary> findPageAfter(@Param("afterName") String afterName,
+									   @Param("afterYear") int afterYear,
+									   @Param("afterId") long afterId,
+									   @Param("limit") int limit);
+
+	/**
+	 * Keyset page over the graphics of one name ordered by (year, id), a NULL year
+	 * sorting as Integer.MIN_VALUE. Returns rows strictly after the given position.
+	 */
+	@Query(value = "SELECT id, name, year FROM grafico"
+			+ " WHERE name = :name AND (COALESCE(year, -2147483648), id) > (:afterYear, :afterId)"
+			+ " ORDER BY COALESCE(year, -2147483648), id LIMIT :limit", nativeQuery = true)
+	List<GraficoSummary> findPageByNameAfter(@Param("name") String name,
+											 @Param("afterYear") int afterYear,
+											 @Param("afterId") long afterId,
+											 @Param("limit") int limit);
 }
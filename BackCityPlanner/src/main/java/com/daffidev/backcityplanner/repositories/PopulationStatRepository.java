@@ -0,0 +1,75 @@
+package com.daffidev.backcityplanner.repositories;
+
+import com.daffidev.backcityplanner.dto.PopulationGrowth;
+import com.daffidev.backcityplanner.entities.PopulationStat;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository for the 'population_stat' time series.
+ */
+@Repository
+public interface PopulationStatRepository extends JpaRepository<PopulationStat, Long> {
+
+	// Aliases are quoted so PostgreSQL keeps the camelCase names the projection binds to
+	String GROWTH_SELECT = "SELECT a.iso3 AS iso3, a.year AS \"startYear\", b.year AS \"endYear\","
+			+ " a.total_population AS \"startPopulation\", b.total_population AS \"endPopulation\","
+			+ " b.total_population / a.total_population - 1 AS \"growthRate\","
+			+ " power(b.total_population / a.total_population, 1.0 / (b.year - a.year)) - 1 AS cagr"
+			+ " FROM population_stat a JOIN population_stat b ON b.iso3 = a.iso3 AND b.year = :endYear"
+			+ " WHERE a.year = :startYear AND a.total_population > 0";
+
+	/**
+	 * Series of a country ordered by year, optionally limited to a year range.
+	 */
+	@Query("SELECT s FROM PopulationStat s WHERE s.iso3 = :iso3 AND s.year BETWEEN :fromYear AND :toYear ORDER BY s.year")
+	List<PopulationStat> findSeries(@Param("iso3") String iso3,
+									@Param("fromYear") int fromYear,
+									@Param("toYear") int toYear);
+
+	/**
+	 * Growth of one country between two years.
+	 */
+	@Query(value = GROWTH_SELECT + " AND a.iso3 = :iso3", nativeQuery = true)
+	Optional<PopulationGrowth> findGrowth(@Param("iso3") String iso3,
+										  @Param("startYear") int startYear,
+										  @Param("endYear") int endYear);
+
+	/**
+	 * Countries with the highest compound annual growth between two years.
+	 */
+	@Query(value = GROWTH_SELECT + " ORDER BY cagr DESC LIMIT :limit", nativeQuery = true)
+	List<PopulationGrowth> findTopGrowth(@Param("startYear") int startYear,
+										 @Param("endYear") int endYear,
+										 @Param("limit") int limit);
+
+	/**
+	 * Inserts or replaces the figures of one (iso3, year).
+	 */
+	@Modifying
+	@Query(value = "INSERT INTO population_stat (iso3, year, total_population, mean_density, max_density,"
+			+ " populated_cells, area_km2, grafico_id, updated_at)"
+			+ " VALUES (:#{#s.iso3}, :#{#s.year}, :#{#s.totalPopulation}, :#{#s.meanDensity}, :#{#s.maxDensity},"
+			+ " :#{#s.populatedCells}, :#{#s.areaKm2}, :#{#s.graficoId}, :#{#s.updatedAt})"
+			+ " ON CONFLICT (iso3, year) DO UPDATE SET total_population = EXCLUDED.total_population,"
+			+ " mean_density = EXCLUDED.mean_density, max_density = EXCLUDED.max_density,"
+			+ " populated_cells = EXCLUDED.populated_cells, area_km2 = EXCLUDED.area_km2,"
+			+ " grafico_id = EXCLUDED.grafico_id, updated_at = EXCLUDED.updated_at", nativeQuery = true)
+	void upsert(@Param("s") PopulationStat s);
+
+	/**
+	 * Recomputes the pre-aggregated growth versus the previous stored year of a country.
+	 */
+	@Modifying
+	@Query(value = "UPDATE population_stat p SET growth_from_previous = g.growth FROM ("
+			+ " SELECT id, total_population / NULLIF(lag(total_population) OVER (ORDER BY year), 0) - 1 AS growth"
+			+ " FROM population_stat WHERE iso3 = :iso3) g"
+			+ " WHERE p.id = g.id", nativeQuery = true)
+	int refreshGrowthFromPrevious(@Param("iso3") String iso3);
+}
@@ -0,0 +1,13 @@
+package com.daffidev.backcityplanner.scheduling;
+
+/**
+ * Priority classes of {@link WorkScheduler}, highest first.
+ */
+public enum WorkPriority {
+	/** Tiles, previews and point queries a user is waiting on. */
+	INTERACTIVE,
+	/** One-off conversions of a whole raster. */
+	STANDARD,
+	/** Ingest and store jobs; preemptible between tiles. */
+	BULK
+}
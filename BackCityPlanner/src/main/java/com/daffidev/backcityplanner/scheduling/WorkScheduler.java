@@ -0,0 +1,468 @@
+package com.daffidev.backcityplanner.scheduling;
+
+import com.daffidev.backcityplanner.tracing.RequestTrace;
+import com.daffidev.backcityplanner.tracing.RequestTracing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Shared pool for CPU-heavy raster work (decoding, rendering, conversions, ingest),
+ * so bulk jobs cannot crowd out the requests a user is waiting on.
+ *
+ * - Priority classes: queued work is dispatched by {@link WorkPriority}, highest first.
+ * - Per-class limits: each class may only occupy a configured number of workers; by
+ *   default bulk work gets a quarter of them, so interactive work always finds room.
+ * - Aging: every scheduler.aging-ms a queued task waits it is ranked one class higher,
+ *   so a steady stream of interactive work cannot starve standard and bulk work.
+ * - Preemption: bulk work calls {@link #checkpoint()} between tiles (or bands of rows).
+ *   When higher-priority work is queued and no worker is idle, the bulk task's thread
+ *   runs that work first and then resumes the bulk task where it stopped. Lent work
+ *   that would wait on something the paused task holds calls {@link #requeueIfLent()}
+ *   and goes back to its queue instead.
+ *
+ * Callers block until their work is done, so controllers keep their synchronous shape;
+ * the request's trace follows the work onto the worker, with the queue wait recorded
+ * as a "queue" stage. Work submitted from a worker (nested calls) runs inline.
+ *
+ * With scheduler.enabled=false work runs directly on the calling thread.
+ */
+@Component
+public class WorkScheduler {
+
+	private static final Logger logger = LoggerFactory.getLogger(WorkScheduler.class);
+
+	private static final WorkPriority[] PRIORITIES = WorkPriority.values();
+
+	/** Task running on this thread, if it is a worker (or a bulk thread lending itself out). */
+	private static final ThreadLocal<Task<?>> CURRENT = new ThreadLocal<>();
+
+	private final boolean enabled;
+	private final int threads;
+	private final int[] limits = new int[PRIORITIES.length];
+	private final long agingNanos;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition workAvailable = lock.newCondition();
+	private final Map<WorkPriority, ArrayDeque<Task<?>>> queues = new EnumMap<>(WorkPriority.class);
+	private final int[] active = new int[PRIORITIES.length];
+	private int idleWorkers;
+	private boolean running;
+
+	private final Map<WorkPriority, Timer> waitTimers = new EnumMap<>(WorkPriority.class);
+	private final Counter preemptions;
+
+	public WorkScheduler(MeterRegistry meterRegistry,
+						 @Value("${scheduler.enabled:true}") boolean enabled,
+						 @Value("${scheduler.threads:0}") int threads,
+						 @Value("${scheduler.interactive.max-concurrency:0}") int interactiveLimit,
+						 @Value("${scheduler.standard.max-concurrency:0}") int standardLimit,
+						 @Value("${scheduler.bulk.max-concurrency:0}") int bulkLimit,
+						 @Value("${scheduler.aging-ms:2000}") long agingMillis) {
+		this.enabled = enabled;
+		this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		// 0 means "derive from the pool size"
+		this.limits[WorkPriority.INTERACTIVE.ordinal()] = limit(interactiveLimit, this.threads);
+		this.limits[WorkPriority.STANDARD.ordinal()] = limit(standardLimit, Math.max(1, this.threads / 2));
+		this.limits[WorkPriority.BULK.ordinal()] = limit(bulkLimit, Math.max(1, this.threads / 4));
+		this.agingNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, agingMillis));
+
+		for (WorkPriority priority : PRIORITIES) {
+			queues.put(priority, new ArrayDeque<>());
+			String tag = priority.name().toLowerCase(Locale.ROOT);
+			waitTimers.put(priority, Timer.builder("scheduler.wait")
+					.description("Time work spent queued before a worker picked it up")
+					.tag("priority", tag)
+					.register(meterRegistry));
+			Gauge.builder("scheduler.queued", this, s -> s.getQueued(priority))
+					.description("Work waiting for a worker")
+					.tag("priority", tag)
+					.register(meterRegistry);
+			Gauge.builder("scheduler.active", this, s -> s.getActive(priority))
+					.description("Work currently running")
+					.tag("priority", tag)
+					.register(meterRegistry);
+		}
+		this.preemptions = Counter.builder("scheduler.preemptions")
+				.description("Times bulk work paused at a checkpoint to run higher-priority work")
+				.register(meterRegistry);
+	}
+
+	private int limit(int configured, int fallback) {
+		return Math.min(threads, configured > 0 ? configured : fallback);
+	}
+
+	@PostConstruct
+	void start() {
+		if (!enabled) {
+			return;
+		}
+		lock.lock();
+		try {
+			running = true;
+		} finally {
+			lock.unlock();
+		}
+		for (int i = 0; i < threads; i++) {
+			Thread worker = new Thread(this::runWorker, "work-scheduler-" + i);
+			worker.setDaemon(true);
+			worker.start();
+		}
+		logger.info("Work scheduler started: threads={}, limits interactive={}, standard={}, bulk={}, aging={} ms",
+				threads, limits[0], limits[1], limits[2], TimeUnit.NANOSECONDS.toMillis(agingNanos));
+	}
+
+	@PreDestroy
+	void stop() {
+		List<Task<?>> abandoned = new ArrayList<>();
+		lock.lock();
+		try {
+			running = false;
+			for (ArrayDeque<Task<?>> queue : queues.values()) {
+				abandoned.addAll(queue);
+				queue.clear();
+			}
+			workAvailable.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		for (Task<?> task : abandoned) {
+			task.future.completeExceptionally(new IOException("Work scheduler is shutting down"));
+		}
+	}
+
+	/**
+	 * A unit of work. Same shape as the service methods it usually wraps.
+	 */
+	@FunctionalInterface
+	public interface Work<T> {
+		T call() throws IOException;
+	}
+
+	/**
+	 * Runs work in the given priority class and waits for its result.
+	 *
+	 * @return the work's result
+	 * @throws IOException as thrown by the work, or if interrupted while waiting or shutting down
+	 */
+	public <T> T run(WorkPriority priority, Work<T> work) throws IOException {
+		return runAll(priority, List.of(work)).get(0);
+	}
+
+	/**
+	 * Runs independent pieces of work in parallel and waits for all of them. On the first
+	 * failure, pieces that have not started yet are dropped and the failure is rethrown.
+	 * From a worker thread the pieces run one after another on that thread.
+	 *
+	 * @return the results, in the order of the work
+	 * @throws IOException as thrown by the work, or if interrupted while waiting or shutting down
+	 */
+	public <T> List<T> runAll(WorkPriority priority, List<? extends Work<T>> works) throws IOException {
+		List<T> results = new ArrayList<>(works.size());
+		if (!enabled || CURRENT.get() != null) {
+			for (Work<T> work : works) {
+				results.add(work.call());
+			}
+			return results;
+		}
+
+		RequestTrace trace = RequestTracing.current();
+		List<Task<T>> tasks = new ArrayList<>(works.size());
+		for (Work<T> work : works) {
+			tasks.add(new Task<>(priority, work, trace));
+		}
+		lock.lock();
+		try {
+			if (!running) {
+				throw new IOException("Work scheduler is not running");
+			}
+			queues.get(priority).addAll(tasks);
+			workAvailable.signalAll();
+		} finally {
+			lock.unlock();
+		}
+
+		try {
+			for (Task<T> task : tasks) {
+				results.add(task.future.get());
+			}
+			return results;
+		} catch (InterruptedException e) {
+			drop(priority, tasks);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for " + priority + " work");
+		} catch (ExecutionException e) {
+			drop(priority, tasks);
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException io) {
+				throw io;
+			}
+			if (cause instanceof RuntimeException runtime) {
+				throw runtime;
+			}
+			if (cause instanceof Error error) {
+				throw error;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	private void drop(WorkPriority priority, List<? extends Task<?>> tasks) {
+		lock.lock();
+		try {
+			queues.get(priority).removeAll(tasks);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * For work about to wait on something its own thread holds, such as a load claimed
+	 * further up the stack. If the work was lent a paused bulk task's thread at a
+	 * checkpoint, it is put back at the head of its queue, not to be lent that task's
+	 * thread again, and the bulk task resumes; whatever the work does after this call
+	 * is discarded. Returns normally anywhere else, where such a wait is the caller's
+	 * own bug.
+	 */
+	public static void requeueIfLent() {
+		Task<?> task = CURRENT.get();
+		if (task != null && task.lentBy != null) {
+			task.requeued = true;
+			throw new Requeued();
+		}
+	}
+
+	/**
+	 * Preemption point for bulk work, to be called between tiles. If higher-priority work
+	 * is queued and no worker is free to take it, runs it on this thread before returning.
+	 * A no-op anywhere else, so raster code can call it unconditionally.
+	 */
+	public static void checkpoint() {
+		Task<?> task = CURRENT.get();
+		if (task != null && task.priority == WorkPriority.BULK) {
+			task.scheduler().yieldTo(task);
+		}
+	}
+
+	private void yieldTo(Task<?> bulk) {
+		while (true) {
+			Task<?> next;
+			lock.lock();
+			try {
+				if (idleWorkers > 0) {
+					return;
+				}
+				next = pollAbove(bulk);
+				if (next == null) {
+					return;
+				}
+				// The bulk task keeps its slot; it resumes on this thread afterwards
+				active[next.priority.ordinal()]++;
+				next.lentBy = bulk;
+			} finally {
+				lock.unlock();
+			}
+			preemptions.increment();
+			execute(next);
+			if (next.requeued) {
+				lock.lock();
+				try {
+					next.lentBy = null;
+					next.requeued = false;
+					next.skippedBy = bulk;
+					queues.get(next.priority).addFirst(next);
+					workAvailable.signalAll();
+				} finally {
+					lock.unlock();
+				}
+				return;
+			}
+		}
+	}
+
+	private void runWorker() {
+		while (true) {
+			Task<?> task;
+			lock.lock();
+			try {
+				while ((task = pollNext()) == null) {
+					if (!running) {
+						return;
+					}
+					idleWorkers++;
+					try {
+						workAvailable.await();
+					} catch (InterruptedException e) {
+						// Only stop() ends a worker
+					} finally {
+						idleWorkers--;
+					}
+				}
+				active[task.priority.ordinal()]++;
+			} finally {
+				lock.unlock();
+			}
+			execute(task);
+		}
+	}
+
+	/**
+	 * Head of the best-ranked queue whose class is below its limit. A task's rank is its
+	 * class minus one for every aging period it has waited; ties go to the higher class.
+	 */
+	private Task<?> pollNext() {
+		long now = System.nanoTime();
+		WorkPriority best = null;
+		long bestRank = Long.MAX_VALUE;
+		for (WorkPriority priority : PRIORITIES) {
+			Task<?> head = queues.get(priority).peek();
+			if (head == null || active[priority.ordinal()] >= limits[priority.ordinal()]) {
+				continue;
+			}
+			long rank = priority.ordinal() - (now - head.queuedAt) / agingNanos;
+			if (rank < bestRank) {
+				best = priority;
+				bestRank = rank;
+			}
+		}
+		return best == null ? null : queues.get(best).poll();
+	}
+
+	private Task<?> pollAbove(Task<?> bulk) {
+		for (WorkPriority candidate : PRIORITIES) {
+			if (candidate.ordinal() >= bulk.priority.ordinal()) {
+				return null;
+			}
+			if (active[candidate.ordinal()] >= limits[candidate.ordinal()]) {
+				continue;
+			}
+			Iterator<Task<?>> queued = queues.get(candidate).iterator();
+			while (queued.hasNext()) {
+				Task<?> task = queued.next();
+				if (task.skippedBy != bulk) {
+					queued.remove();
+					return task;
+				}
+			}
+		}
+		return null;
+	}
+
+	private void execute(Task<?> task) {
+		long waited = System.nanoTime() - task.queuedAt;
+		waitTimers.get(task.priority).record(waited, TimeUnit.NANOSECONDS);
+		RequestTracing.record(task.trace, "queue", waited);
+
+		Task<?> previousTask = CURRENT.get();
+		RequestTrace previousTrace = RequestTracing.attach(task.trace);
+		CURRENT.set(task);
+		try {
+			task.complete();
+		} finally {
+			if (previousTask == null) {
+				CURRENT.remove();
+			} else {
+				CURRENT.set(previousTask);
+			}
+			RequestTracing.restore(previousTrace);
+			lock.lock();
+			try {
+				active[task.priority.ordinal()]--;
+				workAvailable.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public int getQueued(WorkPriority priority) {
+		lock.lock();
+		try {
+			return queues.get(priority).size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getActive(WorkPriority priority) {
+		lock.lock();
+		try {
+			return active[priority.ordinal()];
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private final class Task<T> {
+		final WorkPriority priority;
+		final Work<T> work;
+		final RequestTrace trace;
+		final long queuedAt = System.nanoTime();
+		final CompletableFuture<T> future = new CompletableFuture<>();
+		/** Paused bulk task whose thread this task is running on, guarded by the lock. */
+		Task<?> lentBy;
+		/** Bulk task this task was requeued from, never to be lent its thread again. */
+		Task<?> skippedBy;
+		/** Set by {@link #requeueIfLent()}, on the running thread. */
+		boolean requeued;
+
+		Task(WorkPriority priority, Work<T> work, RequestTrace trace) {
+			this.priority = priority;
+			this.work = work;
+			this.trace = trace;
+		}
+
+		WorkScheduler scheduler() {
+			return WorkScheduler.this;
+		}
+
+		void complete() {
+			try {
+				T result = work.call();
+				if (!requeued) {
+					future.complete(result);
+				}
+			} catch (Throwable t) {
+				// Work may catch and wrap Requeued; the flag still says it is going back to the queue
+				if (!requeued) {
+					future.completeExceptionally(t);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Unwinds lent work that is going back to its queue.
+	 */
+	private static final class Requeued extends RuntimeException {
+		Requeued() {
+			super("Requeued", null, false, false);
+		}
+	}
+}
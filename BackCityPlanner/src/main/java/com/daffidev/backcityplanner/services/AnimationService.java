@@ -0,0 +1,214 @@
+package com.daffidev.backcityplanner.services;
+
+import com.daffidev.backcityplanner.dto.AnimationDto;
+import com.daffidev.backcityplanner.dto.AnimationFrameDto;
+import com.daffidev.backcityplanner.dto.AnimationTileDto;
+import com.daffidev.backcityplanner.dto.PopulationImageDto;
+import com.daffidev.backcityplanner.raster.DecodedRaster;
+import com.daffidev.backcityplanner.scheduling.WorkPriority;
+import com.daffidev.backcityplanner.scheduling.WorkScheduler;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Animations of a country's population across the years WorldPop lists for it.
+ *
+ * Every year is read from the {@link LocalRasterStore} at the same overview level and
+ * window and coloured on the fixed density scale of {@link RasterTileRenderer}, so
+ * frames line up pixel for pixel and colours compare across years. The first year is
+ * sent as a full PNG keyframe; each later year only as the 64×64 blocks whose pixels
+ * changed since the year before, which on a slowly growing country is a small share
+ * of the image.
+ *
+ * Years missing from the local store are first downloaded and stored as bulk work on
+ * the {@link WorkScheduler}; frames are then rendered, and delta-encoded, in parallel
+ * across years as standard work. Finished animations are kept in a cache bounded by their
+ * PNG bytes (animation.cache.max-bytes) until one of their rasters is rebuilt.
+ */
+@Service
+public class AnimationService {
+
+	private static final Logger logger = LoggerFactory.getLogger(AnimationService.class);
+
+	public static final int DELTA_TILE_SIZE = 64;
+
+	private final MapService mapService;
+	private final DecodedRasterCache rasterCache;
+	private final RasterService rasterService;
+	private final LocalRasterStore rasterStore;
+	private final RasterTileRenderer tileRenderer;
+	private final TiffConverter tiffConverter;
+	private final WorkScheduler scheduler;
+	private final Cache<String, AnimationDto> animations;
+
+	public AnimationService(MapService mapService, DecodedRasterCache rasterCache, RasterService rasterService,
+							LocalRasterStore rasterStore, RasterTileRenderer tileRenderer, TiffConverter tiffConverter,
+							WorkScheduler scheduler,
+							@Value("${animation.cache.max-bytes:67108864}") long maxCacheBytes) {
+		this.mapService = mapService;
+		this.rasterCache = rasterCache;
+		this.rasterService = rasterService;
+		this.rasterStore = rasterStore;
+		this.tileRenderer = tileRenderer;
+		this.tiffConverter = tiffConverter;
+		this.scheduler = scheduler;
+		this.animations = Caffeine.newBuilder()
+				.maximumWeight(maxCacheBytes)
+				.weigher((String key, AnimationDto animation) -> (int) Math.min(Integer.MAX_VALUE, animation.getPngBytes()))
+				.build();
+	}
+
+	/**
+	 * Builds (or returns the cached) animation of a country, or of a bounding box within it.
+	 *
+	 * @param bbox minLon, minLat, maxLon, maxLat; null for the whole country
+	 * @param maxSize largest width or height of the frames, in pixels
+	 * @param from first year to include, or null
+	 * @param to last year to include, or null
+	 * @throws FileNotFoundException if WorldPop lists no raster for the years asked for
+	 * @throws IllegalArgumentException if the bbox is malformed or outside the raster
+	 * @throws IOException if a raster cannot be stored, read or encoded
+	 */
+	public AnimationDto getAnimation(String iso3, double[] bbox, int maxSize, Integer from, Integer to) throws IOException {
+		String code = iso3.toUpperCase(Locale.ROOT);
+		List<Integer> years = mapService.getPopulationImages(code).stream()
+				.filter(dto -> dto.getUrlTiff() != null)
+				.map(PopulationImageDto::getPopYear)
+				.filter(Objects::nonNull)
+				.filter(year -> (from == null || year >= from) && (to == null || year <= to))
+				.distinct()
+				.sorted()
+				.toList();
+		if (years.isEmpty()) {
+			throw new FileNotFoundException("No GeoTIFFs listed for " + code);
+		}
+
+		String key = code + '|' + Arrays.toString(bbox) + '|' + maxSize + '|' + years;
+		AnimationDto cached = animations.getIfPresent(key);
+		if (cached != null) {
+			return cached;
+		}
+
+		List<Path> files = store(code, years);
+
+		// The first year fixes the level and window; later years are read through the same window
+		RasterService.Region region = rasterService.findRegion(files.get(0), bbox, maxSize);
+		int width = region.window().width;
+		int height = region.window().height;
+
+		List<WorkScheduler.Work<int[]>> renders = new ArrayList<>(years.size());
+		for (Path file : files) {
+			renders.add(() -> renderFrame(file, region, width, height));
+		}
+		List<int[]> pixels = scheduler.runAll(WorkPriority.STANDARD, renders);
+
+		List<WorkScheduler.Work<AnimationFrameDto>> encodes = new ArrayList<>(years.size());
+		for (int i = 0; i < years.size(); i++) {
+			int year = years.get(i);
+			int[] current = pixels.get(i);
+			int[] previous = i > 0 ? pixels.get(i - 1) : null;
+			encodes.add(() -> encodeFrame(year, previous, current, width, height));
+		}
+		AnimationDto animation = new AnimationDto(code, width, height, region.level(), DELTA_TILE_SIZE,
+				scheduler.runAll(WorkPriority.STANDARD, encodes));
+
+		animations.put(key, animation);
+		logger.info("Built {}-frame animation of {} ({}x{} at level {}): {} PNG bytes",
+				years.size(), code, width, height, region.level(), animation.getPngBytes());
+		return animation;
+	}
+
+	/**
+	 * Drops the cached animations of a country whose raster for any year was rebuilt.
+	 */
+	@EventListener
+	public void onRasterRebuilt(RasterRebuiltEvent event) {
+		animations.asMap().keySet().removeIf(key -> key.startsWith(event.iso3() + '|'));
+	}
+
+	/**
+	 * Stored files of the years, in order. Years not in the local store yet are downloaded
+	 * and written as bulk work, which yields to interactive requests between tiles.
+	 */
+	private List<Path> store(String iso3, List<Integer> years) throws IOException {
+		Path[] files = new Path[years.size()];
+		List<Integer> missing = new ArrayList<>();
+		List<WorkScheduler.Work<Path>> stores = new ArrayList<>();
+		for (int i = 0; i < years.size(); i++) {
+			int year = years.get(i);
+			Optional<Path> stored = rasterStore.find(iso3, year);
+			if (stored.isPresent()) {
+				files[i] = stored.get();
+			} else {
+				missing.add(i);
+				stores.add(() -> rasterCache.ensureStored(iso3, year, false));
+			}
+		}
+		if (!stores.isEmpty()) {
+			logger.info("Storing {} of {} years of {} before animating", stores.size(), years.size(), iso3);
+			List<Path> stored = scheduler.runAll(WorkPriority.BULK, stores);
+			for (int i = 0; i < missing.size(); i++) {
+				files[missing.get(i)] = stored.get(i);
+			}
+		}
+		return Arrays.asList(files);
+	}
+
+	private int[] renderFrame(Path file, RasterService.Region region, int width, int height) throws IOException {
+		DecodedRaster samples = rasterStore.readRegion(file, region.level(), region.window());
+		BufferedImage image = tileRenderer.render(samples);
+		// A year on a smaller grid leaves the rest of the frame transparent
+		int[] pixels = new int[width * height];
+		image.getRGB(0, 0, Math.min(width, image.getWidth()), Math.min(height, image.getHeight()), pixels, 0, width);
+		return pixels;
+	}
+
+	private AnimationFrameDto encodeFrame(int year, int[] previous, int[] current, int width, int height) throws IOException {
+		if (previous == null) {
+			return new AnimationFrameDto(year, true, List.of(encodeBlock(current, width, 0, 0, width, height)));
+		}
+		List<AnimationTileDto> changed = new ArrayList<>();
+		for (int y = 0; y < height; y += DELTA_TILE_SIZE) {
+			for (int x = 0; x < width; x += DELTA_TILE_SIZE) {
+				int blockWidth = Math.min(DELTA_TILE_SIZE, width - x);
+				int blockHeight = Math.min(DELTA_TILE_SIZE, height - y);
+				if (differs(previous, current, width, x, y, blockWidth, blockHeight)) {
+					changed.add(encodeBlock(current, width, x, y, blockWidth, blockHeight));
+				}
+			}
+		}
+		return new AnimationFrameDto(year, false, changed);
+	}
+
+	private static boolean differs(int[] previous, int[] current, int stride, int x, int y, int width, int height) {
+		for (int row = y; row < y + height; row++) {
+			int start = row * stride + x;
+			if (!Arrays.equals(previous, start, start + width, current, start, start + width)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private AnimationTileDto encodeBlock(int[] pixels, int stride, int x, int y, int width, int height) throws IOException {
+		BufferedImage block = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		block.setRGB(0, 0, width, height, pixels, y * stride + x, stride);
+		return new AnimationTileDto(x, y, width, height, tiffConverter.encodePng(block));
+	}
+}
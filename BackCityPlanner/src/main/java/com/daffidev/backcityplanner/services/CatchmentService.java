@@ -0,0 +1,110 @@
+package com.daffidev.backcityplanner.services;
+
+import com.daffidev.backcityplanner.dto.CatchmentDto;
+import com.daffidev.backcityplanner.dto.CatchmentRequestDto;
+import com.daffidev.backcityplanner.dto.FacilityCatchmentDto;
+import com.daffidev.backcityplanner.dto.FacilityDto;
+import com.daffidev.backcityplanner.raster.CatchmentCalculator;
+import com.daffidev.backcityplanner.raster.DecodedRaster;
+import com.daffidev.backcityplanner.scheduling.WorkPriority;
+import com.daffidev.backcityplanner.scheduling.WorkScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Catchments of a batch of facilities (schools, clinics, stations) over a country's
+ * density raster: the population within a radius of each facility and within reach
+ * of at least one of them.
+ *
+ * The raster comes from the {@link DecodedRasterCache}; a {@link CatchmentCalculator}
+ * splits it into bands of rows computed in parallel on the {@link WorkScheduler}, so
+ * the cost grows with the raster and the facilities' extents, not with facilities ×
+ * raster. Batches are capped at catchment.max-facilities and radii at
+ * catchment.max-radius-km.
+ */
+@Service
+public class CatchmentService {
+
+	private static final Logger logger = LoggerFactory.getLogger(CatchmentService.class);
+
+	private final DecodedRasterCache rasterCache;
+	private final WorkScheduler scheduler;
+	private final int maxFacilities;
+	private final double maxRadiusKm;
+
+	public CatchmentService(DecodedRasterCache rasterCache, WorkScheduler scheduler,
+							@Value("${catchment.max-facilities:20000}") int maxFacilities,
+							@Value("${catchment.max-radius-km:100}") double maxRadiusKm) {
+		this.rasterCache = rasterCache;
+		this.scheduler = scheduler;
+		this.maxFacilities = maxFacilities;
+		this.maxRadiusKm = maxRadiusKm;
+	}
+
+	/**
+	 * Computes the catchments of a batch of facilities.
+	 *
+	 * @throws IllegalArgumentException if the batch is empty or too large, a facility has no
+	 *                                  coordinates or radius, or the raster is not georeferenced
+	 * @throws IOException if the raster cannot be loaded
+	 */
+	public CatchmentDto getCatchments(String iso3, int year, CatchmentRequestDto request) throws IOException {
+		List<FacilityDto> facilities = request != null ? request.getFacilities() : null;
+		if (facilities == null || facilities.isEmpty()) {
+			throw new IllegalArgumentException("At least one facility is required");
+		}
+		if (facilities.size() > maxFacilities) {
+			throw new IllegalArgumentException("At most " + maxFacilities + " facilities per request");
+		}
+
+		int count = facilities.size();
+		double[] lon = new double[count];
+		double[] lat = new double[count];
+		double[] radius = new double[count];
+		for (int i = 0; i < count; i++) {
+			FacilityDto facility = facilities.get(i);
+			if (facility == null) {
+				throw new IllegalArgumentException("Facility " + i + " is null");
+			}
+			Double radiusKm = facility.getRadiusKm() != null ? facility.getRadiusKm() : request.getRadiusKm();
+			if (radiusKm == null || !(radiusKm > 0) || radiusKm > maxRadiusKm) {
+				throw new IllegalArgumentException("Facility " + i + " needs a radius_km in (0, " + maxRadiusKm + "]");
+			}
+			if (facility.getLon() == null || facility.getLat() == null
+					|| !Double.isFinite(facility.getLon()) || !Double.isFinite(facility.getLat())) {
+				throw new IllegalArgumentException("Facility " + i + " needs finite lon and lat");
+			}
+			lon[i] = facility.getLon();
+			lat[i] = facility.getLat();
+			radius[i] = radiusKm;
+		}
+
+		String code = iso3.toUpperCase(Locale.ROOT);
+		long start = System.nanoTime();
+		// Loaded on the scheduler so a cold download queues like any other; bands fan out from here
+		DecodedRaster raster = scheduler.run(WorkPriority.STANDARD, () -> rasterCache.get(code, year));
+		CatchmentCalculator calculator = new CatchmentCalculator(raster, lon, lat, radius);
+		List<WorkScheduler.Work<CatchmentCalculator.Result>> bands = new ArrayList<>(calculator.getBandCount());
+		for (int band = 0; band < calculator.getBandCount(); band++) {
+			int index = band;
+			bands.add(() -> calculator.computeBand(index));
+		}
+		CatchmentCalculator.Result result = calculator.merge(scheduler.runAll(WorkPriority.STANDARD, bands));
+
+		List<FacilityCatchmentDto> catchments = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			catchments.add(new FacilityCatchmentDto(facilities.get(i).getId(), radius[i], result.getFacilities()[i]));
+		}
+		double share = result.getTotal() > 0 ? result.getUnion() / result.getTotal() : 0;
+		logger.info("Computed {} catchments over {} {} in {} bands in {} ms", count, code, year,
+				calculator.getBandCount(), (System.nanoTime() - start) / 1_000_000);
+		return new CatchmentDto(code, year, result.getTotal(), result.getUnion(), share, catchments);
+	}
+}
@@ -0,0 +1,339 @@
+package com.daffidev.backcityplanner.services;
+
+import com.daffidev.backcityplanner.raster.DecodedRaster;
+import com.daffidev.backcityplanner.raster.TiledTiffReader;
+import com.daffidev.backcityplanner.scheduling.WorkScheduler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * In-process cache of decoded population rasters, keyed by country and year.
+ *
+ * Samples live off-heap in {@link DecodedRaster} direct buffers, so the cache adds
+ * almost nothing to the heap and GC pauses do not grow with it. Entries are evicted
+ * in least-recently-used order once their total size exceeds the configured byte
+ * budget. Concurrent misses for the same raster share a single download and decode.
+ * Downloads are also written to the {@link LocalRasterStore}, so a raster evicted here
+ * is decoded again from local disk rather than fetched from WorldPop. Concurrent
+ * stores of the same raster likewise share one download; a rebuild drops the cached
+ * raster, keeps loads already under way from caching the old one, and publishes a
+ * {@link RasterRebuiltEvent}.
+ *
+ * Direct buffers are released when the evicted raster becomes unreachable, so
+ * -XX:MaxDirectMemorySize should leave room above raster.cache.max-bytes for
+ * rasters still being read and for the one being decoded.
+ */
+@Component
+public class DecodedRasterCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(DecodedRasterCache.class);
+
+	private final MapService mapService;
+	private final PopulationRasterAnalyzer rasterAnalyzer;
+	private final LocalRasterStore rasterStore;
+	private final ApplicationEventPublisher eventPublisher;
+	private final long maxBytes;
+	private final DecodedRaster.Storage storage;
+	private final long awaitTimeoutMillis;
+
+	private final LinkedHashMap<String, DecodedRaster> entries = new LinkedHashMap<>(16, 0.75f, true);
+	/** Rebuilds per key, so a load that read the file before a rebuild does not cache it afterwards. */
+	private final Map<String, Long> generations = new HashMap<>();
+	private final Map<String, Claim<DecodedRaster>> loading = new ConcurrentHashMap<>();
+	private final Map<String, Claim<Path>> storing = new ConcurrentHashMap<>();
+	private long usedBytes;
+
+	private final Counter hits;
+	private final Counter misses;
+	private final Counter coalesced;
+	private final Counter evictions;
+
+	public DecodedRasterCache(MapService mapService, PopulationRasterAnalyzer rasterAnalyzer, LocalRasterStore rasterStore,
+							  ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry,
+							  @Value("${raster.cache.max-bytes:536870912}") long maxBytes,
+							  @Value("${raster.cache.storage:FLOAT32}") DecodedRaster.Storage storage,
+							  @Value("${raster.cache.await-timeout-ms:600000}") long awaitTimeoutMillis) {
+		this.mapService = mapService;
+		this.rasterAnalyzer = rasterAnalyzer;
+		this.rasterStore = rasterStore;
+		this.eventPublisher = eventPublisher;
+		this.maxBytes = maxBytes;
+		this.storage = storage;
+		this.awaitTimeoutMillis = awaitTimeoutMillis;
+		this.hits = Counter.builder("raster.cache.requests").tag("result", "hit").register(meterRegistry);
+		this.misses = Counter.builder("raster.cache.requests").tag("result", "miss").register(meterRegistry);
+		this.coalesced = Counter.builder("raster.cache.requests").tag("result", "coalesced").register(meterRegistry);
+		this.evictions = Counter.builder("raster.cache.evictions").register(meterRegistry);
+		Gauge.builder("raster.cache.bytes", this, DecodedRasterCache::getUsedBytes)
+				.description("Off-heap bytes held by cached rasters")
+				.baseUnit("bytes")
+				.register(meterRegistry);
+	}
+
+	/**
+	 * Returns the decoded density raster of a country and year, downloading and
+	 * decoding it on a miss.
+	 *
+	 * @param iso3 ISO3 country code (e.g., "MEX")
+	 * @param year population year
+	 * @return the decoded raster
+	 * @throws FileNotFoundException if WorldPop lists no raster for that year
+	 * @throws IOException if the raster cannot be downloaded or read
+	 */
+	public DecodedRaster get(String iso3, int year) throws IOException {
+		String key = iso3.toUpperCase(Locale.ROOT) + '/' + year;
+		DecodedRaster cached = lookup(key);
+		if (cached != null) {
+			hits.increment();
+			return cached;
+		}
+
+		CompletableFuture<DecodedRaster> load = new CompletableFuture<>();
+		Claim<DecodedRaster> inFlight = loading.putIfAbsent(key, new Claim<>(Thread.currentThread(), load));
+		if (inFlight != null) {
+			coalesced.increment();
+			return await(key, inFlight);
+		}
+
+		try {
+			// Another load may have finished between the lookup and claiming the key
+			DecodedRaster raster = lookup(key);
+			if (raster == null) {
+				misses.increment();
+				long generation = generation(key);
+				raster = load(iso3, year);
+				store(key, raster, generation);
+			}
+			load.complete(raster);
+			return raster;
+		} catch (IOException | RuntimeException e) {
+			load.completeExceptionally(e);
+			throw e;
+		} finally {
+			loading.remove(key);
+		}
+	}
+
+	/**
+	 * Drops every cached raster.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		usedBytes = 0;
+	}
+
+	public synchronized long getUsedBytes() {
+		return usedBytes;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public DecodedRaster.Storage getStorage() {
+		return storage;
+	}
+
+	/**
+	 * Number of times a country and year were rebuilt, for results derived from its raster.
+	 */
+	public long getGeneration(String iso3, int year) {
+		return generation(iso3.toUpperCase(Locale.ROOT) + '/' + year);
+	}
+
+	private synchronized long generation(String key) {
+		return generations.getOrDefault(key, 0L);
+	}
+
+	private synchronized void rebuilt(String key) {
+		generations.merge(key, 1L, Long::sum);
+		DecodedRaster previous = entries.remove(key);
+		if (previous != null) {
+			usedBytes -= previous.sizeBytes();
+		}
+	}
+
+	private synchronized DecodedRaster lookup(String key) {
+		return entries.get(key);
+	}
+
+	private DecodedRaster load(String iso3, int year) throws IOException {
+		Optional<Path> stored = rasterStore.find(iso3, year);
+		if (stored.isPresent()) {
+			DecodedRaster raster;
+			try (TiledTiffReader reader = TiledTiffReader.open(stored.get())) {
+				raster = reader.readLevel(0).withStorage(storage);
+			}
+			logger.info("Decoded {} {} from the local store into {} bytes off-heap ({}x{}, {})", iso3, year,
+					raster.sizeBytes(), raster.getWidth(), raster.getHeight(), storage);
+			return raster;
+		}
+
+		byte[] tiff = download(iso3, year);
+		if (!rasterStore.isEnabled()) {
+			DecodedRaster raster = rasterAnalyzer.decode(tiff, storage);
+			logger.info("Decoded {} {} into {} bytes off-heap ({}x{}, {})", iso3, year, raster.sizeBytes(),
+					raster.getWidth(), raster.getHeight(), storage);
+			return raster;
+		}
+
+		// Decode losslessly once, keep a tiled copy for windowed reads, then quantize if configured
+		DecodedRaster lossless = rasterAnalyzer.decode(tiff, DecodedRaster.Storage.FLOAT32);
+		rasterStore.store(iso3, year, lossless);
+		DecodedRaster raster = lossless.withStorage(storage);
+		logger.info("Decoded {} {} into {} bytes off-heap ({}x{}, {})", iso3, year, raster.sizeBytes(),
+				raster.getWidth(), raster.getHeight(), storage);
+		return raster;
+	}
+
+	/**
+	 * Makes sure the local store holds a country and year. Concurrent calls for the same
+	 * raster share one download. A rebuild also drops the decoded raster from this cache
+	 * and publishes a {@link RasterRebuiltEvent}.
+	 *
+	 * @param rebuild download and rewrite the file even if it is already stored
+	 * @return the stored file
+	 * @throws FileNotFoundException if WorldPop lists no raster for that year
+	 * @throws IOException if the raster cannot be downloaded, decoded or stored
+	 */
+	public Path ensureStored(String iso3, int year, boolean rebuild) throws IOException {
+		if (!rasterStore.isEnabled()) {
+			throw new IllegalStateException("The local raster store is disabled");
+		}
+		Optional<Path> stored = rasterStore.find(iso3, year);
+		if (stored.isPresent() && !rebuild) {
+			return stored.get();
+		}
+
+		String code = iso3.toUpperCase(Locale.ROOT);
+		String key = code + '/' + year;
+		CompletableFuture<Path> store = new CompletableFuture<>();
+		Claim<Path> inFlight = storing.putIfAbsent(key, new Claim<>(Thread.currentThread(), store));
+		if (inFlight != null) {
+			coalesced.increment();
+			return await(key, inFlight);
+		}
+
+		try {
+			// Another store may have finished between the lookup and claiming the key
+			stored = rebuild ? Optional.empty() : rasterStore.find(iso3, year);
+			Path file;
+			if (stored.isPresent()) {
+				file = stored.get();
+			} else {
+				DecodedRaster lossless = rasterAnalyzer.decode(download(iso3, year), DecodedRaster.Storage.FLOAT32);
+				file = rasterStore.store(iso3, year, lossless);
+			}
+			if (rebuild) {
+				rebuilt(key);
+				eventPublisher.publishEvent(new RasterRebuiltEvent(code, year));
+			}
+			store.complete(file);
+			return file;
+		} catch (IOException | RuntimeException e) {
+			store.completeExceptionally(e);
+			throw e;
+		} finally {
+			storing.remove(key);
+		}
+	}
+
+	private byte[] download(String iso3, int year) throws IOException {
+		String url = mapService.findTiffUrl(iso3, year)
+				.orElseThrow(() -> new FileNotFoundException("No GeoTIFF listed for " + iso3 + " " + year));
+		return mapService.downloadTiff(url);
+	}
+
+	private synchronized void store(String key, DecodedRaster raster, long generation) {
+		if (generation(key) != generation) {
+			logger.debug("Raster {} was rebuilt while loading; not cached", key);
+			return;
+		}
+		if (raster.sizeBytes() > maxBytes) {
+			logger.warn("Raster {} ({} bytes) exceeds the cache budget of {} bytes; not cached", key, raster.sizeBytes(), maxBytes);
+			return;
+		}
+		DecodedRaster previous = entries.put(key, raster);
+		if (previous != null) {
+			usedBytes -= previous.sizeBytes();
+		}
+		usedBytes += raster.sizeBytes();
+
+		Iterator<Map.Entry<String, DecodedRaster>> eldest = entries.entrySet().iterator();
+		while (usedBytes > maxBytes && eldest.hasNext()) {
+			Map.Entry<String, DecodedRaster> entry = eldest.next();
+			if (entry.getKey().equals(key)) {
+				continue;
+			}
+			usedBytes -= entry.getValue().sizeBytes();
+			eldest.remove();
+			evictions.increment();
+			logger.debug("Evicted raster {} from the decoded cache", entry.getKey());
+		}
+	}
+
+	/**
+	 * Waits for a load or store claimed by another caller, for at most
+	 * raster.cache.await-timeout-ms.
+	 *
+	 * The claim may be held by this very thread: a bulk store paused at a checkpoint
+	 * lends its thread to queued interactive work, which may ask for the raster being
+	 * stored. Waiting would then never end, so that work goes back to its queue.
+	 */
+	private <T> T await(String key, Claim<T> claim) throws IOException {
+		if (claim.owner() == Thread.currentThread()) {
+			WorkScheduler.requeueIfLent();
+			throw new IllegalStateException("Raster " + key + " is already being loaded on this thread");
+		}
+		try {
+			return claim.future().get(awaitTimeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for raster", e);
+		} catch (TimeoutException e) {
+			throw new IOException("Timed out after " + awaitTimeoutMillis + " ms waiting for raster " + key);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException io) {
+				throw io;
+			}
+			if (cause instanceof RuntimeException runtime) {
+				throw runtime;
+			}
+			throw new UncheckedIOException(new IOException(cause));
+		}
+	}
+
+	/**
+	 * An in-flight load or store and the thread running it.
+	 */
+	private record Claim<T>(Thread owner, CompletableFuture<T> future) {
+	}
+
+}
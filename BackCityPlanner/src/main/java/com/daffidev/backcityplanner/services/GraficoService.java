@@ -1,32 +1,80 @@
 package com.daffidev.backcityplanner.services;
 
+import com.daffidev.backcityplanner.dto.GraficoPageDto;
+import com.daffidev.backcityplanner.dto.GraficoSummary;
 import com.daffidev.backcityplanner.dto.PopulationImageDto;
 import com.daffidev.backcityplanner.entities.Grafico;
+import com.daffidev.backcityplanner.repositories.GraficoBulkRepository;
+import com.daffidev.backcityplanner.repositories.GraficoExportRepository;
 import com.daffidev.backcityplanner.repositories.GraficoRepository;
+import com.daffidev.backcityplanner.tracing.RequestTracing;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
  * Service for managing Grafico entities (population graphics).
+ * Lookups by name are served from the "graficosByName" cache; writes evict
+ * exactly the names they touched once their transaction commits.
  */
 @Service
 public class GraficoService {
 
 	private static final Logger logger = LoggerFactory.getLogger(GraficoService.class);
 
+	public static final String GRAFICOS_BY_NAME_CACHE = "graficosByName";
+
+	public static final int MAX_PAGE_SIZE = 1000;
+
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
 	private final GraficoRepository graficoRepository;
+	private final GraficoBulkRepository graficoBulkRepository;
+	private final GraficoExportRepository graficoExportRepository;
+	private final CacheManager cacheManager;
+	private final Timer saveTimer;
 
-	public GraficoService(GraficoRepository graficoRepository) {
+	public GraficoService(GraficoRepository graficoRepository, GraficoBulkRepository graficoBulkRepository,
+						  GraficoExportRepository graficoExportRepository, CacheManager cacheManager,
+						  MeterRegistry meterRegistry) {
 		this.graficoRepository = graficoRepository;
+		this.graficoBulkRepository = graficoBulkRepository;
+		this.graficoExportRepository = graficoExportRepository;
+		this.cacheManager = cacheManager;
+		this.saveTimer = Timer.builder("grafico.save")
+				.description("Upserts of graphics into the database")
+				.register(meterRegistry);
 	}
 
 	/**
 	 * Saves population graphics from DTOs to the database.
+	 * Existing rows with the same name and year are updated, so re-running is safe.
 	 *
 	 * @param name Custom name to use for all entries
 	 * @param dtos List of PopulationImageDto to save
@@ -40,25 +88,156 @@ public class GraficoService {
 		}
 
 		// Convert DTOs to Grafico entities
-		List<Grafico> graficos = dtos.stream()
-				.map(dto -> new Grafico(name, dto.getPopYear(), dto.getUrlImage()))
-				.collect(Collectors.toList());
+		List<Grafico> graficos = toGraficos(name, dtos);
 
-		// Save all to database
-		List<Grafico> saved = graficoRepository.saveAll(graficos);
+		// Upsert all in as few round trips as possible
+		List<Grafico> saved = upsert(graficos);
+		evictAfterCommit(List.of(name));
 		logger.info("Saved {} graphics with name: {}", saved.size(), name);
 
 		return saved;
 	}
 
+	/**
+	 * Saves graphics for several names (e.g. countries) in a single transaction.
+	 * Rows are upserted on (name, year) in chunks, so thousands of rows take
+	 * a handful of round trips and repeated loads do not create duplicates.
+	 *
+	 * @param dtosByName DTOs to save, keyed by the name to store them under
+	 * @return List of saved Grafico entities
+	 */
+	@Transactional
+	public List<Grafico> bulkSavePopulationGraphics(Map<String, List<PopulationImageDto>> dtosByName) {
+		if (dtosByName == null || dtosByName.isEmpty()) {
+			logger.warn("No DTOs provided for bulk save");
+			return List.of();
+		}
+
+		List<Grafico> graficos = new ArrayList<>();
+		dtosByName.forEach((name, dtos) -> {
+			if (dtos != null) {
+				graficos.addAll(toGraficos(name, dtos));
+			}
+		});
+
+		List<Grafico> saved = upsert(graficos);
+		evictAfterCommit(dtosByName.keySet());
+		logger.info("Bulk saved {} graphics for {} names", saved.size(), dtosByName.size());
+
+		return saved;
+	}
+
 	/**
 	 * Retrieves all graphics by name (ISO3).
+	 * Results are cached per name; the returned list is read-only.
 	 *
 	 * @param name the name/ISO3 to search for
 	 * @return list of graphics
 	 */
+	@Cacheable(cacheNames = GRAFICOS_BY_NAME_CACHE, key = "#name")
 	public List<Grafico> getGraphicsByName(String name) {
-		return graficoRepository.findByName(name);
+		return findByName(name);
+	}
+
+	/**
+	 * Retrieves the graphic stored for a name and year.
+	 * Served from the same per-name cache entry as {@link #getGraphicsByName(String)},
+	 * so a country's years are fetched with a single query.
+	 *
+	 * @param name the name/ISO3 to search for
+	 * @param year the population year
+	 * @return the graphic, if stored
+	 */
+	public Optional<Grafico> getGraphicByNameAndYear(String name, Integer year) {
+		Cache cache = cacheManager.getCache(GRAFICOS_BY_NAME_CACHE);
+		List<Grafico> graficos = cache != null
+				? cache.get(name, () -> findByName(name))
+				: findByName(name);
+		if (graficos == null) {
+			return Optional.empty();
+		}
+		return graficos.stream()
+				.filter(grafico -> year.equals(grafico.getYear()))
+				.findFirst();
+	}
+
+	/**
+	 * Lists stored graphics with keyset pagination on (name, year, id).
+	 * Only id, name and year are selected.
+	 *
+	 * @param name name to filter by, or null for all graphics
+	 * @param cursor next_cursor of the previous page, or null for the first page
+	 * @param limit page size, capped at {@link #MAX_PAGE_SIZE}
+	 * @return the page and the cursor of the following one
+	 * @throws IllegalArgumentException if the cursor is malformed
+	 */
+	@Transactional(readOnly = true)
+	public GraficoPageDto getGraphicsPage(String name, String cursor, int limit) {
+		int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+		String afterName = "";
+		int afterYear = Integer.MIN_VALUE;
+		long afterId = 0L;
+		if (cursor != null && !cursor.isBlank()) {
+			String[] parts = decodeCursor(cursor);
+			afterName = parts[0];
+			afterYear = Integer.parseInt(parts[1]);
+			afterId = Long.parseLong(parts[2]);
+		}
+
+		// Fetch one extra row to know whether another page follows
+		List<GraficoSummary> rows;
+		try (RequestTracing.Span span = RequestTracing.span("db")) {
+			rows = name != null
+					? graficoRepository.findPageByNameAfter(name, afterYear, afterId, pageSize + 1)
+					: graficoRepository.findPageAfter(afterName, afterYear, afterId, pageSize + 1);
+		}
+
+		if (rows.size() <= pageSize) {
+			return new GraficoPageDto(rows, null);
+		}
+		List<GraficoSummary> page = rows.subList(0, pageSize);
+		GraficoSummary last = page.get(pageSize - 1);
+		return new GraficoPageDto(page, encodeCursor(last));
+	}
+
+	/**
+	 * Writes stored graphics as newline-delimited JSON, one object per row.
+	 * Rows are streamed from a database cursor straight to the output.
+	 *
+	 * @param name name to filter by, or null for all graphics
+	 * @param out destination stream; flushed but not closed
+	 * @throws IOException if writing fails
+	 */
+	@Transactional(readOnly = true)
+	public void exportGraphics(String name, OutputStream out) throws IOException {
+		try (RequestTracing.Span span = RequestTracing.span("db");
+			 JsonGenerator generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+			generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+			graficoExportRepository.streamRows(name, rs -> {
+				try {
+					generator.writeStartObject();
+					generator.writeNumberField("id", rs.getLong("id"));
+					generator.writeStringField("name", rs.getString("name"));
+					int year = rs.getInt("year");
+					if (rs.wasNull()) {
+						generator.writeNullField("year");
+					} else {
+						generator.writeNumberField("year", year);
+					}
+					generator.writeStringField("url", rs.getString("url"));
+					generator.writeEndObject();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			generator.writeRaw('\n');
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		logger.info("Exported graphics as NDJSON for name: {}", name != null ? name : "<all>");
 	}
 
 	/**
@@ -69,6 +248,79 @@ public class GraficoService {
 	@Transactional
 	public void deleteGraphicsByName(String name) {
 		graficoRepository.deleteByName(name);
+		evictAfterCommit(List.of(name));
 		logger.info("Deleted all graphics for name: {}", name);
 	}
+
+	/**
+	 * Evicts cached lookups for the given names. Inside a transaction the eviction is
+	 * deferred until commit, so concurrent readers cannot re-cache rows that are about
+	 * to change.
+	 */
+	private void evictAfterCommit(Collection<String> names) {
+		Set<String> toEvict = new LinkedHashSet<>(names);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					evict(toEvict);
+				}
+			});
+		} else {
+			evict(toEvict);
+		}
+	}
+
+	private void evict(Collection<String> names) {
+		Cache cache = cacheManager.getCache(GRAFICOS_BY_NAME_CACHE);
+		if (cache == null) {
+			return;
+		}
+		for (String name : names) {
+			cache.evict(name);
+		}
+		logger.debug("Evicted cached graphics for names: {}", names);
+	}
+
+	private static String encodeCursor(GraficoSummary last) {
+		// Same NULL substitutes as the keyset queries
+		String name = last.getName() != null ? last.getName() : "";
+		int year = last.getYear() != null ? last.getYear() : Integer.MIN_VALUE;
+		String raw = name + '\n' + year + '\n' + last.getId();
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String[] decodeCursor(String cursor) {
+		try {
+			String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			String[] parts = raw.split("\n", -1);
+			if (parts.length != 3) {
+				throw new IllegalArgumentException("Malformed cursor");
+			}
+			Integer.parseInt(parts[1]);
+			Long.parseLong(parts[2]);
+			return parts;
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Malformed cursor: " + cursor, e);
+		}
+	}
+
+	private List<Grafico> upsert(List<Grafico> graficos) {
+		try (RequestTracing.Span span = RequestTracing.span("db")) {
+			return saveTimer.record(() -> graficoBulkRepository.upsertAll(graficos));
+		}
+	}
+
+	private List<Grafico> findByName(String name) {
+		try (RequestTracing.Span span = RequestTracing.span("db")) {
+			return List.copyOf(graficoRepository.findByName(name));
+		}
+	}
+
+	private List<Grafico> toGraficos(String name, List<PopulationImageDto> dtos) {
+		return dtos.stream()
+				.filter(dto -> dto.getPopYear() != null)
+				.map(dto -> new Grafico(name, dto.getPopYear(), dto.getUrlImage()))
+				.collect(Collectors.toList());
+	}
 }
@@ -0,0 +1,369 @@
+package com.daffidev.backcityplanner.services;
+
+import com.daffidev.backcityplanner.dto.PopulationImageDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind persistence for population graphics.
+ *
+ * Requests hand their rows to a bounded in-process queue and return immediately;
+ * a single background writer drains the queue and upserts rows in batched
+ * transactions through {@link GraficoService#bulkSavePopulationGraphics}.
+ *
+ * - Backpressure: capacity is counted in rows and reserved for a whole request,
+ *   every name included, before any row is queued. A request that cannot fit within
+ *   the offer timeout is rejected as a whole with {@link QueueFullException}.
+ * - Outages: a failing batch is retried with exponential backoff, then appended
+ *   to a local NDJSON spill file, which is replayed once the database is back.
+ *   Upserts are idempotent, so replaying a row twice is harmless, but the spill
+ *   is always replayed before newer batches are written so it cannot overwrite them.
+ * - Shutdown: the queue is drained (or spilled) before the application context closes.
+ *
+ * Disabled unless grafico.write-behind.enabled=true.
+ */
+@Component
+public class GraficoWriteBehindQueue {
+
+	private static final Logger logger = LoggerFactory.getLogger(GraficoWriteBehindQueue.class);
+
+	private final GraficoService graficoService;
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final boolean enabled;
+	private final int capacity;
+	private final int batchSize;
+	private final long lingerMillis;
+	private final long offerTimeoutMillis;
+	private final int maxRetries;
+	private final long retryBackoffMillis;
+	private final long shutdownTimeoutMillis;
+	private final Path spillFile;
+
+	private final BlockingQueue<PendingGraphics> queue = new LinkedBlockingQueue<>();
+	private final Semaphore freeRows;
+	private volatile boolean running;
+	private Thread writer;
+
+	public GraficoWriteBehindQueue(GraficoService graficoService, MeterRegistry meterRegistry,
+								   @Value("${grafico.write-behind.enabled:false}") boolean enabled,
+								   @Value("${grafico.write-behind.capacity:10000}") int capacity,
+								   @Value("${grafico.write-behind.batch-size:500}") int batchSize,
+								   @Value("${grafico.write-behind.linger-ms:200}") long lingerMillis,
+								   @Value("${grafico.write-behind.offer-timeout-ms:100}") long offerTimeoutMillis,
+								   @Value("${grafico.write-behind.max-retries:5}") int maxRetries,
+								   @Value("${grafico.write-behind.retry-backoff-ms:500}") long retryBackoffMillis,
+								   @Value("${grafico.write-behind.shutdown-timeout-ms:30000}") long shutdownTimeoutMillis,
+								   @Value("${grafico.write-behind.spill-file:${java.io.tmpdir}/grafico-write-behind.ndjson}") String spillFile) {
+		this.graficoService = graficoService;
+		this.enabled = enabled;
+		this.capacity = capacity;
+		this.batchSize = batchSize;
+		this.lingerMillis = lingerMillis;
+		this.offerTimeoutMillis = offerTimeoutMillis;
+		this.maxRetries = maxRetries;
+		this.retryBackoffMillis = retryBackoffMillis;
+		this.shutdownTimeoutMillis = shutdownTimeoutMillis;
+		this.spillFile = Path.of(spillFile);
+		this.freeRows = new Semaphore(capacity);
+		Gauge.builder("grafico.writebehind.pending", this, GraficoWriteBehindQueue::getPendingRows)
+				.description("Rows accepted by the write-behind queue but not yet stored or spilled")
+				.register(meterRegistry);
+	}
+
+	@PostConstruct
+	void start() {
+		if (!enabled) {
+			return;
+		}
+		running = true;
+		writer = new Thread(this::runWriter, "grafico-write-behind");
+		writer.setDaemon(true);
+		writer.start();
+		logger.info("Write-behind queue started: capacity={} rows, batchSize={}, spillFile={}",
+				capacity, batchSize, spillFile);
+	}
+
+	@PreDestroy
+	void stop() throws InterruptedException {
+		if (writer == null) {
+			return;
+		}
+		running = false;
+		writer.interrupt();
+		writer.join(shutdownTimeoutMillis);
+		if (writer.isAlive()) {
+			logger.error("Write-behind writer did not finish within {} ms; {} requests still queued",
+					shutdownTimeoutMillis, queue.size());
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/** Rows accepted but not yet written or spilled. */
+	public int getPendingRows() {
+		return capacity - freeRows.availablePermits();
+	}
+
+	/**
+	 * Queues graphics for saving under the given name.
+	 *
+	 * @param name Custom name to use for all entries
+	 * @param dtos List of PopulationImageDto to save
+	 * @return number of rows queued
+	 * @throws QueueFullException if the queue stays full for the offer timeout
+	 */
+	public int enqueue(String name, List<PopulationImageDto> dtos) {
+		return enqueue(Collections.singletonMap(name, dtos));
+	}
+
+	/**
+	 * Queues graphics for saving under several names, all or nothing: room is reserved
+	 * for every row of the request before any of them is queued.
+	 *
+	 * @param dtosByName DTOs to save, keyed by the name to store them under
+	 * @return number of rows queued
+	 * @throws QueueFullException if the queue stays full for the offer timeout; nothing is queued
+	 */
+	public int enqueue(Map<String, List<PopulationImageDto>> dtosByName) {
+		if (!running) {
+			throw new IllegalStateException("Write-behind queue is not running");
+		}
+		Map<String, List<PopulationImageDto>> copy = new LinkedHashMap<>();
+		int total = 0;
+		for (Map.Entry<String, List<PopulationImageDto>> entry : dtosByName.entrySet()) {
+			if (entry.getValue() != null && !entry.getValue().isEmpty()) {
+				copy.put(entry.getKey(), List.copyOf(entry.getValue()));
+				total += entry.getValue().size();
+			}
+		}
+		if (total == 0) {
+			return 0;
+		}
+		// A request larger than the whole queue waits for it to empty instead of never fitting
+		int rows = Math.min(total, capacity);
+		try {
+			if (!freeRows.tryAcquire(rows, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				throw new QueueFullException("Write-behind queue is full (" + capacity + " rows)");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new QueueFullException("Interrupted while waiting for queue space");
+		}
+		queue.add(new PendingGraphics(copy, rows));
+		return total;
+	}
+
+	private void runWriter() {
+		replaySpill();
+		while (running || !queue.isEmpty()) {
+			List<PendingGraphics> batch = new ArrayList<>();
+			try {
+				PendingGraphics first = running ? queue.poll(1, TimeUnit.SECONDS) : queue.poll();
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				collectBatch(batch, first.rows());
+			} catch (InterruptedException e) {
+				// Woken up for shutdown: keep draining whatever is queued
+				if (batch.isEmpty()) {
+					continue;
+				}
+			}
+			write(batch);
+		}
+		logger.info("Write-behind writer stopped");
+	}
+
+	private void collectBatch(List<PendingGraphics> batch, int rows) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+		while (rows < batchSize) {
+			long remaining = deadline - System.nanoTime();
+			PendingGraphics next = running && remaining > 0
+					? queue.poll(remaining, TimeUnit.NANOSECONDS)
+					: queue.poll();
+			if (next == null) {
+				return;
+			}
+			batch.add(next);
+			rows += next.rows();
+		}
+	}
+
+	private void write(List<PendingGraphics> batch) {
+		int rows = batch.stream().mapToInt(PendingGraphics::rows).sum();
+		try {
+			// Spilled rows are older than the batch and (name, year) is an upsert key, so they
+			// must land first; while they cannot, the batch queues up behind them in the file
+			if (!replaySpill() || !saveWithRetries(toDtosByName(batch))) {
+				spill(batch);
+			}
+		} finally {
+			freeRows.release(rows);
+		}
+	}
+
+	private boolean saveWithRetries(Map<String, List<PopulationImageDto>> dtosByName) {
+		long backoff = retryBackoffMillis;
+		for (int attempt = 0; ; attempt++) {
+			try {
+				graficoService.bulkSavePopulationGraphics(dtosByName);
+				return true;
+			} catch (RuntimeException e) {
+				if (attempt >= maxRetries || !running) {
+					logger.error("Write-behind batch failed after {} attempts: {}", attempt + 1, e.getMessage());
+					return false;
+				}
+				logger.warn("Write-behind batch failed (attempt {}), retrying in {} ms: {}",
+						attempt + 1, backoff, e.getMessage());
+				if (!sleep(backoff)) {
+					return false;
+				}
+				backoff = Math.min(backoff * 2, 60_000);
+			}
+		}
+	}
+
+	private void spill(List<PendingGraphics> batch) {
+		try (BufferedWriter out = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+				StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+			for (PendingGraphics pending : batch) {
+				for (Map.Entry<String, List<PopulationImageDto>> entry : pending.dtosByName().entrySet()) {
+					for (PopulationImageDto dto : entry.getValue()) {
+						out.write(objectMapper.writeValueAsString(new SpilledGraphic(entry.getKey(), dto)));
+						out.newLine();
+					}
+				}
+			}
+			logger.warn("Spilled {} pending graphics to {}", batch.size(), spillFile);
+		} catch (IOException e) {
+			logger.error("Failed to spill write-behind batch to {}; {} requests lost", spillFile, batch.size(), e);
+		}
+	}
+
+	/**
+	 * Re-sends spilled rows in batches and deletes the spill file once all of them are stored.
+	 * Only runs on the writer thread, which is also the only one appending to the file.
+	 *
+	 * @return true if no spilled rows are left
+	 */
+	private boolean replaySpill() {
+		if (!Files.exists(spillFile)) {
+			return true;
+		}
+		int replayed = 0;
+		try (BufferedReader in = Files.newBufferedReader(spillFile, StandardCharsets.UTF_8)) {
+			Map<String, List<PopulationImageDto>> chunk = new LinkedHashMap<>();
+			int chunkRows = 0;
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.isBlank()) {
+					continue;
+				}
+				SpilledGraphic spilled = objectMapper.readValue(line, SpilledGraphic.class);
+				chunk.computeIfAbsent(spilled.name, k -> new ArrayList<>()).add(spilled.toDto());
+				if (++chunkRows >= batchSize) {
+					graficoService.bulkSavePopulationGraphics(chunk);
+					replayed += chunkRows;
+					chunk = new LinkedHashMap<>();
+					chunkRows = 0;
+				}
+			}
+			if (chunkRows > 0) {
+				graficoService.bulkSavePopulationGraphics(chunk);
+				replayed += chunkRows;
+			}
+		} catch (IOException | RuntimeException e) {
+			logger.warn("Spill replay stopped after {} rows, will retry later: {}", replayed, e.getMessage());
+			return false;
+		}
+		try {
+			Files.deleteIfExists(spillFile);
+			logger.info("Replayed {} spilled graphics from {}", replayed, spillFile);
+			return true;
+		} catch (IOException e) {
+			// Left in place, the file would be replayed over newer rows: keep appending behind it
+			logger.error("Failed to delete replayed spill file {}", spillFile, e);
+			return false;
+		}
+	}
+
+	private static Map<String, List<PopulationImageDto>> toDtosByName(List<PendingGraphics> batch) {
+		Map<String, List<PopulationImageDto>> dtosByName = new LinkedHashMap<>();
+		for (PendingGraphics pending : batch) {
+			pending.dtosByName().forEach((name, dtos) ->
+					dtosByName.computeIfAbsent(name, k -> new ArrayList<>()).addAll(dtos));
+		}
+		return dtosByName;
+	}
+
+	private static boolean sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+			return true;
+		} catch (InterruptedException e) {
+			return false;
+		}
+	}
+
+	private record PendingGraphics(Map<String, List<PopulationImageDto>> dtosByName, int rows) {
+	}
+
+	/** One spilled row, as stored in the NDJSON spill file. */
+	static class SpilledGraphic {
+		public String name;
+		public Integer popyear;
+		public String urlImg;
+		public String urlTiff;
+
+		public SpilledGraphic() {
+		}
+
+		SpilledGraphic(String name, PopulationImageDto dto) {
+			this.name = name;
+			this.popyear = dto.getPopYear();
+			this.urlImg = dto.getUrlImage();
+			this.urlTiff = dto.getUrlTiff();
+		}
+
+		PopulationImageDto toDto() {
+			return new PopulationImageDto(popyear, urlImg, urlTiff);
+		}
+	}
+
+	/**
+	 * Thrown when the write-behind queue cannot take a request within the offer timeout.
+	 */
+	public static class QueueFullException extends RuntimeException {
+		public QueueFullException(String message) {
+			super(message);
+		}
+	}
+}
@@ -0,0 +1,196 @@
+package com.daffidev.backcityplanner.services;
+
+import com.daffidev.backcityplanner.raster.DecodedRaster;
+import com.daffidev.backcityplanner.raster.GeoTransform;
+import com.daffidev.backcityplanner.raster.TiledTiffReader;
+import com.daffidev.backcityplanner.raster.TiledTiffWriter;
+import com.daffidev.backcityplanner.scheduling.WorkScheduler;
+import com.daffidev.backcityplanner.tracing.RequestTracing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Local store of population rasters rewritten as cloud-optimized GeoTIFFs:
+ * 256×256 deflate-compressed tiles with power-of-two overviews, IFDs first and
+ * the smallest overview's tiles before the full-resolution ones.
+ *
+ * WorldPop serves strip-organized files without overviews, so even a small window
+ * means decoding whole strips. Once stored here, a window at any zoom only reads
+ * the tiles it intersects from the matching overview level.
+ *
+ * Every file is verified against its source pixel for pixel before it is moved
+ * into place, so readers never see a partial or mismatching raster.
+ */
+@Component
+public class LocalRasterStore {
+
+	private static final Logger logger = LoggerFactory.getLogger(LocalRasterStore.class);
+
+	/** WorldPop's nodata value, kept so stored files read like the originals. */
+	public static final float NO_DATA = -99999f;
+
+	private static final int VERIFY_ROWS_PER_BAND = TiledTiffWriter.TILE_SIZE;
+
+	private final boolean enabled;
+	private final Path directory;
+	private final TiledTiffWriter writer = new TiledTiffWriter(TiledTiffWriter.Compression.DEFLATE, true, NO_DATA);
+
+	public LocalRasterStore(@Value("${raster.store.enabled:true}") boolean enabled,
+							@Value("${raster.store.dir:${java.io.tmpdir}/backcityplanner/rasters}") String directory) {
+		this.enabled = enabled;
+		this.directory = Paths.get(directory);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @return the stored file of a country and year, if present
+	 */
+	public Optional<Path> find(String iso3, int year) {
+		if (!enabled) {
+			return Optional.empty();
+		}
+		Path path = path(iso3, year);
+		return Files.isRegularFile(path) ? Optional.of(path) : Optional.empty();
+	}
+
+	/**
+	 * Writes a raster as a cloud-optimized GeoTIFF, verifies it pixel for pixel against
+	 * the source and atomically replaces any previously stored file.
+	 *
+	 * @param source lossless (FLOAT32) samples to store
+	 * @return the stored file
+	 * @throws IOException if writing fails or the written file does not match the source
+	 */
+	public Path store(String iso3, int year, DecodedRaster source) throws IOException {
+		if (source.getStorage() != DecodedRaster.Storage.FLOAT32) {
+			throw new IllegalArgumentException("Only lossless FLOAT32 rasters can be stored");
+		}
+		Path target = path(iso3, year);
+		Files.createDirectories(target.getParent());
+		Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".part");
+		try (RequestTracing.Span span = RequestTracing.span("store")) {
+			try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				writer.write(source, out);
+			}
+			verify(temp, source);
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			span.bytes(Files.size(target));
+			logger.info("Stored {} {} as tiled GeoTIFF with {} levels ({} bytes)", iso3, year,
+					writer.levelCount(source.getWidth(), source.getHeight()), Files.size(target));
+			return target;
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Compares the full-resolution level of a stored file with its source, bit for bit;
+	 * source NaN must read back as the nodata value.
+	 *
+	 * @throws IOException if the file cannot be read or any cell differs
+	 */
+	public void verify(Path file, DecodedRaster source) throws IOException {
+		try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+			ImageReader reader = PopulationRasterAnalyzer.tiffReader(input);
+			try {
+				reader.setInput(input, false, true);
+				int width = reader.getWidth(0);
+				int height = reader.getHeight(0);
+				if (width != source.getWidth() || height != source.getHeight()) {
+					throw new IOException("Stored raster is " + width + "x" + height + ", expected "
+							+ source.getWidth() + "x" + source.getHeight());
+				}
+
+				float[] expected = new float[width];
+				float[] actual = new float[width];
+				ImageReadParam param = reader.getDefaultReadParam();
+				for (int bandY = 0; bandY < height; bandY += VERIFY_ROWS_PER_BAND) {
+					WorkScheduler.checkpoint();
+					int bandHeight = Math.min(VERIFY_ROWS_PER_BAND, height - bandY);
+					param.setSourceRegion(new Rectangle(0, bandY, width, bandHeight));
+					Raster band = reader.readRaster(0, param);
+					for (int y = 0; y < bandHeight; y++) {
+						source.readRow(bandY + y, 0, width, expected, 0);
+						band.getSamples(band.getMinX(), band.getMinY() + y, width, 1, 0, actual);
+						for (int x = 0; x < width; x++) {
+							float wanted = Float.isNaN(expected[x]) ? NO_DATA : expected[x];
+							if (Float.floatToIntBits(wanted) != Float.floatToIntBits(actual[x])) {
+								throw new IOException("Stored raster differs at (" + x + ", " + (bandY + y) + "): "
+										+ actual[x] + " instead of " + wanted);
+							}
+						}
+					}
+				}
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+
+	/**
+	 * Georeferencing of the full-resolution level of a stored file.
+	 */
+	public GeoTransform readGeoTransform(Path file) throws IOException {
+		try (TiledTiffReader reader = TiledTiffReader.open(file)) {
+			return reader.getTransform();
+		}
+	}
+
+	/**
+	 * Number of levels (full resolution plus overviews) of a stored file.
+	 */
+	public int levels(Path file) throws IOException {
+		try (TiledTiffReader reader = TiledTiffReader.open(file)) {
+			return reader.getLevelCount();
+		}
+	}
+
+	/**
+	 * Reads a window of one level of a stored file. Only the tiles that intersect
+	 * the window are read and decompressed.
+	 *
+	 * @param file stored file
+	 * @param level 0 for full resolution, n for the overview at 1/2^n
+	 * @param region window in that level's pixel grid, clipped to it
+	 * @return the window as a heap-backed FLOAT32 raster, nodata as NaN, georeferenced
+	 * @throws IOException if the file cannot be read
+	 * @throws IllegalArgumentException if the level does not exist or the window is outside it
+	 */
+	public DecodedRaster readRegion(Path file, int level, Rectangle region) throws IOException {
+		try (RequestTracing.Span span = RequestTracing.span("read");
+			 TiledTiffReader reader = TiledTiffReader.open(file)) {
+			DecodedRaster window = reader.readWindow(level, region);
+			span.bytes(reader.getBytesRead());
+			return window;
+		}
+	}
+
+	private Path path(String iso3, int year) {
+		String code = iso3.toUpperCase(Locale.ROOT);
+		if (!code.matches("[A-Z]{3}")) {
+			throw new IllegalArgumentException("Invalid ISO3 code: " + iso3);
+		}
+		return directory.resolve(code).resolve(year + ".tif");
+	}
+}
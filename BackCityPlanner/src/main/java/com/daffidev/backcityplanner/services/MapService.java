@@ -1,7 +1,12 @@
 package com.daffidev.backcityplanner.services;
 
 import com.daffidev.backcityplanner.dto.PopulationImageDto;
+import com.daffidev.backcityplanner.raster.DecodedRaster;
+import com.daffidev.backcityplanner.tracing.RequestTracing;
 import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
@@ -13,19 +18,41 @@ import org.springframework.web.client.RestTemplate;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
 
 @Service
 public class MapService {
     
 	private final WorldPopClient worldPopClient;
 	private final TiffConverter tiffConverter;
+	private final PopulationRasterAnalyzer rasterAnalyzer;
+	private final RasterTileRenderer tileRenderer;
 	private final RestTemplate restTemplate;
     private final Logger logger = LoggerFactory.getLogger(MapService.class);
 	private final ObjectMapper objectMapper = new ObjectMapper();
-	public MapService(WorldPopClient worldPopClient, TiffConverter tiffConverter) {
+	private final MeterRegistry meterRegistry;
+	private final Counter downloadedBytes;
+	private final Counter servedPngBytes;
+
+	public MapService(WorldPopClient worldPopClient, TiffConverter tiffConverter, PopulationRasterAnalyzer rasterAnalyzer,
+					  RasterTileRenderer tileRenderer, MeterRegistry meterRegistry) {
 		this.worldPopClient = worldPopClient;
 		this.tiffConverter = tiffConverter;
+		this.rasterAnalyzer = rasterAnalyzer;
+		this.tileRenderer = tileRenderer;
 		this.restTemplate = new RestTemplate();
+		this.meterRegistry = meterRegistry;
+		this.downloadedBytes = Counter.builder("worldpop.downloaded.bytes")
+				.description("Bytes of TIFF rasters downloaded")
+				.baseUnit("bytes")
+				.tag("kind", "tiff")
+				.register(meterRegistry);
+		this.servedPngBytes = Counter.builder("raster.served.bytes")
+				.description("Bytes of rendered images handed to controllers")
+				.baseUnit("bytes")
+				.tag("format", "png")
+				.register(meterRegistry);
 	}
 
 	/**
@@ -88,29 +115,69 @@ public class MapService {
 	 * @throws IOException if download or conversion fails
 	 */
 	public byte[] downloadAndConvertTiffToPng(String tiffUrl) throws IOException {
+		return downloadAndConvertTiffToPng(tiffUrl, PngMode.RGBA, 0);
+	}
+
+	/**
+	 * Downloads a TIFF file from the given URL and converts it to PNG in the given mode.
+	 *
+	 * @param tiffUrl URL of the TIFF file to download
+	 * @param mode RGBA keeps the TIFF's layout; INDEXED writes density classes
+	 * @param classes number of density classes in INDEXED mode
+	 * @return byte array containing PNG image data
+	 * @throws IOException if download or conversion fails
+	 */
+	public byte[] downloadAndConvertTiffToPng(String tiffUrl, PngMode mode, int classes) throws IOException {
+		byte[] tiffData = downloadTiff(tiffUrl);
+		try {
+			return convertTiffToPng(tiffData, mode, classes);
+		} catch (IOException e) {
+			logger.error("Error converting TIFF from URL: {}", tiffUrl, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Downloads a TIFF file from the given URL.
+	 *
+	 * @param tiffUrl URL of the TIFF file to download
+	 * @return byte array containing the TIFF data
+	 * @throws IOException if the download fails
+	 */
+	public byte[] downloadTiff(String tiffUrl) throws IOException {
 		if (tiffUrl == null || tiffUrl.isBlank()) {
 			throw new IllegalArgumentException("TIFF URL cannot be null or empty");
 		}
 
 		logger.info("Downloading TIFF from URL: {}", tiffUrl);
 
-		try {
+		Timer.Sample sample = Timer.start(meterRegistry);
+		String outcome = "error";
+		try (RequestTracing.Span span = RequestTracing.span("download")) {
 			// Download TIFF file as byte array
 			ResponseEntity<byte[]> response = restTemplate.getForEntity(tiffUrl, byte[].class);
 
 			if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
 				byte[] tiffData = response.getBody();
-				logger.info("Downloaded TIFF file. Size: {} bytes");		
-                logger.debug("Solicitud exitosa, archivos encontrados: {}");
-
-				// Convert to PNG
-				return tiffConverter.convertTiffToPng(tiffData);
+				logger.info("Downloaded TIFF file. Size: {} bytes", tiffData.length);
+				downloadedBytes.increment(tiffData.length);
+				span.bytes(tiffData.length);
+				outcome = "success";
+				return tiffData;
 			} else {
 				throw new IOException("Failed to download TIFF file. HTTP status: " + response.getStatusCode());
 			}
+		} catch (IOException e) {
+			logger.error("Error downloading TIFF from URL: {}", tiffUrl, e);
+			throw e;
 		} catch (Exception e) {
-			logger.error("Error downloading/converting TIFF from URL: {}", tiffUrl, e);
+			logger.error("Error downloading TIFF from URL: {}", tiffUrl, e);
 			throw new IOException("Failed to download or convert TIFF file", e);
+		} finally {
+			sample.stop(Timer.builder("tiff.download")
+					.description("TIFF raster downloads")
+					.tag("outcome", outcome)
+					.register(meterRegistry));
 		}
 	}
 
@@ -122,7 +189,32 @@ public class MapService {
 	 * @throws IOException if conversion fails
 	 */
 	public byte[] convertTiffToPng(byte[] tiffData) throws IOException {
-		return tiffConverter.convertTiffToPng(tiffData);
+		return served(tiffConverter.convertTiffToPng(tiffData));
+	}
+
+	/**
+	 * Converts a TIFF byte array to PNG in the given mode. In INDEXED mode the TIFF is
+	 * read as a density raster and written as density classes on the tile colour scale,
+	 * with nodata transparent.
+	 *
+	 * @param classes number of density classes in INDEXED mode
+	 * @return byte array containing PNG image data
+	 * @throws IllegalArgumentException if classes is out of range in INDEXED mode
+	 * @throws IOException if conversion fails
+	 */
+	public byte[] convertTiffToPng(byte[] tiffData, PngMode mode, int classes) throws IOException {
+		if (mode == PngMode.RGBA) {
+			return convertTiffToPng(tiffData);
+		}
+		int[] palette = RasterTileRenderer.palette(classes);
+		DecodedRaster raster = rasterAnalyzer.decode(tiffData, DecodedRaster.Storage.FLOAT32);
+		byte[] indices = tileRenderer.renderClasses(raster, classes);
+		return served(tiffConverter.encodeIndexedPng(indices, raster.getWidth(), raster.getHeight(), palette));
+	}
+
+	private byte[] served(byte[] pngData) {
+		servedPngBytes.increment(pngData.length);
+		return pngData;
 	}
 
 	/**
@@ -169,8 +261,10 @@ public class MapService {
 			return new ArrayList<>();
 		}
 
-		// Debug: Log complete JSON structure
-		logger.debug("Complete JSON response: {}", root.toPrettyString());
+		// Debug: Log complete JSON structure (pretty-printing is costly, only do it when enabled)
+		if (logger.isDebugEnabled()) {
+			logger.debug("Complete JSON response: {}", root.toPrettyString());
+		}
 
 		JsonNode dataNode = root.path("data");
 		if (dataNode.isMissingNode() || dataNode.isNull()) {
@@ -200,15 +294,32 @@ public class MapService {
 		return result;
 	}
 
+	/**
+	 * Finds the source GeoTIFF of a country and year in the WorldPop density listing.
+	 *
+	 * @param iso3 ISO3 country code (e.g., "MEX")
+	 * @param year population year
+	 * @return URL of the GeoTIFF, if WorldPop lists one
+	 */
+	public Optional<String> findTiffUrl(String iso3, int year) {
+		return getPopulationImages(iso3).stream()
+				.filter(dto -> dto.getPopYear() != null && dto.getPopYear() == year)
+				.map(PopulationImageDto::getUrlTiff)
+				.filter(Objects::nonNull)
+				.findFirst();
+	}
+
 	/**
 	 * Extracts PopulationImageDto from a JsonNode.
 	 *
-	 * @param node JsonNode containing popyear and url_img fields
+	 * @param node JsonNode containing popyear, url_img and (optionally) files fields
 	 * @return PopulationImageDto or null if required fields are missing
 	 */
 	private PopulationImageDto extractPopulationImageDto(JsonNode node) {
 		// Debug: Log all available field names in the node
-		logger.debug("Node structure: {}", node.toPrettyString());
+		if (logger.isDebugEnabled()) {
+			logger.debug("Node structure: {}", node.toPrettyString());
+		}
 
 		JsonNode popYearNode = node.path("popyear");
 		JsonNode urlImageNode = node.path("url_img");
@@ -227,6 +338,10 @@ public class MapService {
 		Integer popYear = popYearNode.asInt();
 		String urlImage = urlImageNode.asText();
 
-		return new PopulationImageDto(popYear, urlImage);
+		// Source GeoTIFF, when listed, is the first entry of 'files'
+		JsonNode filesNode = node.path("files");
+		String urlTiff = filesNode.isArray() && filesNode.size() > 0 ? filesNode.get(0).asText() : null;
+
+		return new PopulationImageDto(popYear, urlImage, urlTiff);
 	}
 }
@@ -0,0 +1,24 @@
+package com.daffidev.backcityplanner.services;
+
+import java.util.Locale;
+
+/**
+ * How density rasters are written as PNG.
+ */
+public enum PngMode {
+	/** 32-bit ARGB on the continuous colour ramp (or the TIFF's own layout when converting). */
+	RGBA,
+	/** Palette-indexed density classes with a transparent nodata entry; several times smaller. */
+	INDEXED;
+
+	/**
+	 * @throws IllegalArgumentException if the name is not rgba or indexed
+	 */
+	public static PngMode parse(String name) {
+		try {
+			return valueOf(name.toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("mode must be rgba or indexed");
+		}
+	}
+}
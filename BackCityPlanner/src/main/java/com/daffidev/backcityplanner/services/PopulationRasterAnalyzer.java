@@ -0,0 +1,229 @@
+package com.daffidev.backcityplanner.services;
+
+import com.daffidev.backcityplanner.raster.DecodedRaster;
+import com.daffidev.backcityplanner.raster.GeoTiffTags;
+import com.daffidev.backcityplanner.raster.GeoTransform;
+import com.daffidev.backcityplanner.raster.RasterSummary;
+import com.daffidev.backcityplanner.scheduling.WorkScheduler;
+import com.daffidev.backcityplanner.tracing.RequestTracing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Iterator;
+
+/**
+ * Computes population figures from WorldPop density GeoTIFFs.
+ *
+ * Samples are read with {@link ImageReader#readRaster}, which returns the stored
+ * float32 values (ImageIO.read normalizes float gray images into [0, 1]), in bands
+ * of rows so heap use does not grow with the raster height. Rasters can also be
+ * decoded once into an off-heap {@link DecodedRaster} and summarized from there.
+ */
+@Component
+public class PopulationRasterAnalyzer {
+
+	private static final Logger logger = LoggerFactory.getLogger(PopulationRasterAnalyzer.class);
+
+	private static final int ROWS_PER_BAND = 256;
+
+	/**
+	 * Summarizes a density raster (people per km²).
+	 *
+	 * @param tiffData byte array containing GeoTIFF data
+	 * @return totals, densities and covered area
+	 * @throws IOException if the raster cannot be read
+	 */
+	public RasterSummary summarize(byte[] tiffData) throws IOException {
+		if (tiffData == null || tiffData.length == 0) {
+			throw new IllegalArgumentException("TIFF data cannot be null or empty");
+		}
+
+		try (RequestTracing.Span span = RequestTracing.span("analyze").bytes(tiffData.length);
+			 ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(tiffData))) {
+			ImageReader reader = tiffReader(input);
+			try {
+				reader.setInput(input, true, false);
+				return summarize(reader);
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+
+	private RasterSummary summarize(ImageReader reader) throws IOException {
+		int width = reader.getWidth(0);
+		int height = reader.getHeight(0);
+		GeoTransform transform = GeoTiffTags.readGeoTransform(reader.getImageMetadata(0));
+		double noData = GeoTiffTags.readNoData(reader.getImageMetadata(0));
+
+		Accumulator accumulator = new Accumulator();
+		float[] row = new float[width];
+		ImageReadParam param = reader.getDefaultReadParam();
+
+		for (int bandY = 0; bandY < height; bandY += ROWS_PER_BAND) {
+			WorkScheduler.checkpoint();
+			int bandHeight = Math.min(ROWS_PER_BAND, height - bandY);
+			param.setSourceRegion(new Rectangle(0, bandY, width, bandHeight));
+			Raster band = reader.readRaster(0, param);
+
+			for (int y = 0; y < bandHeight; y++) {
+				band.getSamples(band.getMinX(), band.getMinY() + y, width, 1, 0, row);
+				accumulator.addRow(row, width, transform.cellAreaKm2(bandY + y), noData);
+			}
+		}
+
+		logger.debug("Summarized {}x{} raster: population={}, area={} km2", width, height, accumulator.total, accumulator.area);
+		return accumulator.toSummary(width, height);
+	}
+
+	/**
+	 * Summarizes a decoded raster (people per km²).
+	 *
+	 * @param raster the decoded raster
+	 * @return totals, densities and covered area
+	 */
+	public RasterSummary summarize(DecodedRaster raster) {
+		return summarize(raster, new Rectangle(0, 0, raster.getWidth(), raster.getHeight()));
+	}
+
+	/**
+	 * Summarizes a window of a decoded raster (people per km²).
+	 *
+	 * @param raster the decoded raster
+	 * @param region pixel window, clipped to the raster
+	 * @return totals, densities and covered area of the window
+	 */
+	public RasterSummary summarize(DecodedRaster raster, Rectangle region) {
+		Rectangle window = region.intersection(new Rectangle(0, 0, raster.getWidth(), raster.getHeight()));
+		if (window.isEmpty()) {
+			return new RasterSummary(0, 0, 0, 0, 0, 0, 0);
+		}
+
+		try (RequestTracing.Span span = RequestTracing.span("analyze")) {
+			Accumulator accumulator = new Accumulator();
+			float[] row = new float[window.width];
+			for (int y = window.y; y < window.y + window.height; y++) {
+				raster.readRow(y, window.x, window.width, row, 0);
+				accumulator.addRow(row, window.width, raster.getTransform().cellAreaKm2(y), Double.NaN);
+			}
+			return accumulator.toSummary(window.width, window.height);
+		}
+	}
+
+	/**
+	 * Decodes a GeoTIFF into an off-heap raster. Nodata cells become NaN.
+	 *
+	 * @param tiffData byte array containing GeoTIFF data
+	 * @param storage layout to keep the samples in
+	 * @return the decoded raster
+	 * @throws IOException if the raster cannot be read
+	 */
+	public DecodedRaster decode(byte[] tiffData, DecodedRaster.Storage storage) throws IOException {
+		if (tiffData == null || tiffData.length == 0) {
+			throw new IllegalArgumentException("TIFF data cannot be null or empty");
+		}
+
+		try (RequestTracing.Span span = RequestTracing.span("decode").bytes(tiffData.length);
+			 ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(tiffData))) {
+			ImageReader reader = tiffReader(input);
+			try {
+				reader.setInput(input, true, false);
+				return decode(reader, storage);
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+
+	private DecodedRaster decode(ImageReader reader, DecodedRaster.Storage storage) throws IOException {
+		int width = reader.getWidth(0);
+		int height = reader.getHeight(0);
+		GeoTransform transform = GeoTiffTags.readGeoTransform(reader.getImageMetadata(0));
+		double noData = GeoTiffTags.readNoData(reader.getImageMetadata(0));
+
+		ByteBuffer samples = DecodedRaster.allocateFloat32(width, height);
+		FloatBuffer out = samples.asFloatBuffer();
+		float[] row = new float[width];
+		ImageReadParam param = reader.getDefaultReadParam();
+
+		for (int bandY = 0; bandY < height; bandY += ROWS_PER_BAND) {
+			WorkScheduler.checkpoint();
+			int bandHeight = Math.min(ROWS_PER_BAND, height - bandY);
+			param.setSourceRegion(new Rectangle(0, bandY, width, bandHeight));
+			Raster band = reader.readRaster(0, param);
+
+			for (int y = 0; y < bandHeight; y++) {
+				band.getSamples(band.getMinX(), band.getMinY() + y, width, 1, 0, row);
+				for (int x = 0; x < width; x++) {
+					if (!isValid(row[x], noData)) {
+						row[x] = Float.NaN;
+					}
+				}
+				out.put(row);
+			}
+		}
+
+		return DecodedRaster.of(width, height, transform, samples, storage);
+	}
+
+	/**
+	 * WorldPop marks nodata with a large negative value; densities are never negative.
+	 */
+	static boolean isValid(float value, double noData) {
+		return !Float.isNaN(value) && value >= 0 && value != noData;
+	}
+
+	/**
+	 * Running totals over rows of density samples.
+	 */
+	private static final class Accumulator {
+		double total;
+		double area;
+		double max;
+		long populated;
+
+		void addRow(float[] row, int length, double cellArea, double noData) {
+			for (int x = 0; x < length; x++) {
+				float density = row[x];
+				if (!isValid(density, noData)) {
+					continue;
+				}
+				area += cellArea;
+				if (density > 0) {
+					total += density * cellArea;
+					populated++;
+					if (density > max) {
+						max = density;
+					}
+				}
+			}
+		}
+
+		RasterSummary toSummary(int width, int height) {
+			double mean = area > 0 ? total / area : 0;
+			return new RasterSummary(width, height, total, mean, max, populated, area);
+		}
+	}
+
+	static ImageReader tiffReader(ImageInputStream input) throws IOException {
+		if (input == null) {
+			throw new IOException("Cannot open TIFF data");
+		}
+		Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+		if (!readers.hasNext()) {
+			throw new IOException("No ImageIO reader available. The file may be corrupted or not a valid TIFF.");
+		}
+		return readers.next();
+	}
+}
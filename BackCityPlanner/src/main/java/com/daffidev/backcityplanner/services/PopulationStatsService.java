@@ -0,0 +1,154 @@
+package com.daffidev.backcityplanner.services;
+
+import com.daffidev.backcityplanner.dto.PopulationGrowth;
+import com.daffidev.backcityplanner.dto.PopulationImageDto;
+import com.daffidev.backcityplanner.entities.Grafico;
+import com.daffidev.backcityplanner.entities.PopulationStat;
+import com.daffidev.backcityplanner.raster.RasterSummary;
+import com.daffidev.backcityplanner.repositories.PopulationStatRepository;
+import com.daffidev.backcityplanner.tracing.RequestTracing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Maintains the population time series ('population_stat') and answers
+ * trend and growth questions from it.
+ *
+ * Ingest downloads each year's WorldPop density raster once, reduces it to a
+ * handful of numbers and stores them next to the Grafico of the same year.
+ */
+@Service
+public class PopulationStatsService {
+
+	private static final Logger logger = LoggerFactory.getLogger(PopulationStatsService.class);
+
+	public static final int MAX_TOP_LIMIT = 100;
+
+	private final MapService mapService;
+	private final GraficoService graficoService;
+	private final PopulationRasterAnalyzer rasterAnalyzer;
+	private final PopulationStatRepository populationStatRepository;
+	private final TransactionTemplate transactionTemplate;
+
+	public PopulationStatsService(MapService mapService, GraficoService graficoService,
+								  PopulationRasterAnalyzer rasterAnalyzer,
+								  PopulationStatRepository populationStatRepository,
+								  PlatformTransactionManager transactionManager) {
+		this.mapService = mapService;
+		this.graficoService = graficoService;
+		this.rasterAnalyzer = rasterAnalyzer;
+		this.populationStatRepository = populationStatRepository;
+		this.transactionTemplate = new TransactionTemplate(transactionManager);
+	}
+
+	/**
+	 * Ingests every available year of a country: stores the graphics under the ISO3
+	 * code and the raster-derived figures in the time series. Safe to repeat.
+	 *
+	 * @param iso3 ISO3 country code (e.g., "MEX")
+	 * @return the stored series, ordered by year
+	 */
+	public List<PopulationStat> ingestCountry(String iso3) {
+		List<PopulationImageDto> dtos = mapService.getPopulationImages(iso3);
+		if (dtos.isEmpty()) {
+			logger.warn("No population images to ingest for iso3={}", iso3);
+			return List.of();
+		}
+
+		Map<Integer, Long> graficoIdsByYear = new HashMap<>();
+		for (Grafico grafico : graficoService.savePopulationGraphics(iso3, dtos)) {
+			graficoIdsByYear.put(grafico.getYear(), grafico.getId());
+		}
+
+		// Rasters are downloaded and reduced outside any transaction
+		List<PopulationStat> stats = new ArrayList<>();
+		for (PopulationImageDto dto : dtos) {
+			if (dto.getUrlTiff() == null || dto.getPopYear() == null) {
+				logger.warn("No GeoTIFF listed for iso3={}, year={}", iso3, dto.getPopYear());
+				continue;
+			}
+			try {
+				RasterSummary summary = rasterAnalyzer.summarize(mapService.downloadTiff(dto.getUrlTiff()));
+				stats.add(toStat(iso3, dto.getPopYear(), summary, graficoIdsByYear.get(dto.getPopYear())));
+			} catch (IOException e) {
+				logger.error("Skipping year {} of {}: {}", dto.getPopYear(), iso3, e.getMessage());
+			}
+		}
+
+		try (RequestTracing.Span span = RequestTracing.span("db")) {
+			transactionTemplate.executeWithoutResult(status -> {
+				stats.forEach(populationStatRepository::upsert);
+				populationStatRepository.refreshGrowthFromPrevious(iso3);
+			});
+		}
+		logger.info("Ingested {} population stats for iso3={}", stats.size(), iso3);
+
+		return getSeries(iso3, null, null);
+	}
+
+	/**
+	 * Retrieves the stored series of a country, optionally limited to a year range.
+	 */
+	@Transactional(readOnly = true)
+	public List<PopulationStat> getSeries(String iso3, Integer fromYear, Integer toYear) {
+		try (RequestTracing.Span span = RequestTracing.span("db")) {
+			return populationStatRepository.findSeries(iso3,
+					fromYear != null ? fromYear : Integer.MIN_VALUE,
+					toYear != null ? toYear : Integer.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * Growth of a country between two stored years.
+	 *
+	 * @throws IllegalArgumentException if startYear is not before endYear
+	 */
+	@Transactional(readOnly = true)
+	public Optional<PopulationGrowth> getGrowth(String iso3, int startYear, int endYear) {
+		requireRange(startYear, endYear);
+		return populationStatRepository.findGrowth(iso3, startYear, endYear);
+	}
+
+	/**
+	 * Fastest-growing countries (by CAGR) between two stored years.
+	 *
+	 * @throws IllegalArgumentException if startYear is not before endYear
+	 */
+	@Transactional(readOnly = true)
+	public List<PopulationGrowth> getTopGrowth(int startYear, int endYear, int limit) {
+		requireRange(startYear, endYear);
+		return populationStatRepository.findTopGrowth(startYear, endYear, Math.max(1, Math.min(limit, MAX_TOP_LIMIT)));
+	}
+
+	private static void requireRange(int startYear, int endYear) {
+		if (startYear >= endYear) {
+			throw new IllegalArgumentException("startYear must be before endYear");
+		}
+	}
+
+	private static PopulationStat toStat(String iso3, Integer year, RasterSummary summary, Long graficoId) {
+		PopulationStat stat = new PopulationStat();
+		stat.setIso3(iso3);
+		stat.setYear(year);
+		stat.setTotalPopulation(summary.totalPopulation());
+		stat.setMeanDensity(summary.meanDensity());
+		stat.setMaxDensity(summary.maxDensity());
+		stat.setPopulatedCells(summary.populatedCells());
+		stat.setAreaKm2(summary.areaKm2());
+		stat.setGraficoId(graficoId);
+		stat.setUpdatedAt(LocalDateTime.now());
+		return stat;
+	}
+}
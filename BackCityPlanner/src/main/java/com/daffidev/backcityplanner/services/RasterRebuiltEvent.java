@@ -0,0 +1,11 @@
+package com.daffidev.backcityplanner.services;
+
+/**
+ * Published by {@link DecodedRasterCache} after a stored raster was downloaded and
+ * written again, so results derived from the old file can be dropped.
+ *
+ * @param iso3 upper-case ISO3 country code
+ * @param year population year
+ */
+public record RasterRebuiltEvent(String iso3, int year) {
+}
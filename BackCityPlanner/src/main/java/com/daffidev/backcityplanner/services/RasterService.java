@@ -0,0 +1,270 @@
+package com.daffidev.backcityplanner.services;
+
+import com.daffidev.backcityplanner.dto.RasterPointDto;
+import com.daffidev.backcityplanner.dto.StoredRasterDto;
+import com.daffidev.backcityplanner.raster.BinaryRasterWriter;
+import com.daffidev.backcityplanner.raster.DecodedRaster;
+import com.daffidev.backcityplanner.raster.GeoTransform;
+import com.daffidev.backcityplanner.raster.RasterSummary;
+import com.daffidev.backcityplanner.raster.TiledTiffReader;
+import org.springframework.stereotype.Service;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Tile, point and statistics queries over decoded population rasters.
+ * Rasters come from the {@link DecodedRasterCache}, so a country-year is
+ * downloaded and decoded once and then served from memory; region renders read
+ * windows of the {@link LocalRasterStore} copy at the matching overview level.
+ */
+@Service
+public class RasterService {
+
+	public static final int MAX_REGION_SIZE = 2048;
+
+	private final DecodedRasterCache rasterCache;
+	private final PopulationRasterAnalyzer rasterAnalyzer;
+	private final RasterTileRenderer tileRenderer;
+	private final TiffConverter tiffConverter;
+	private final LocalRasterStore rasterStore;
+
+	public RasterService(DecodedRasterCache rasterCache, PopulationRasterAnalyzer rasterAnalyzer,
+						 RasterTileRenderer tileRenderer, TiffConverter tiffConverter, LocalRasterStore rasterStore) {
+		this.rasterCache = rasterCache;
+		this.rasterAnalyzer = rasterAnalyzer;
+		this.tileRenderer = tileRenderer;
+		this.tiffConverter = tiffConverter;
+		this.rasterStore = rasterStore;
+	}
+
+	/**
+	 * Renders a tile of a country's density raster as PNG.
+	 *
+	 * @param iso3 ISO3 country code
+	 * @param year population year
+	 * @param level resolution level, 0 = full resolution
+	 * @param tileX tile column
+	 * @param tileY tile row
+	 * @return PNG image data
+	 * @throws IllegalArgumentException if the tile lies outside the raster
+	 * @throws IOException if the raster cannot be loaded or the tile encoded
+	 */
+	public byte[] getTilePng(String iso3, int year, int level, int tileX, int tileY) throws IOException {
+		return getTilePng(iso3, year, level, tileX, tileY, PngMode.RGBA, 0);
+	}
+
+	/**
+	 * Renders a tile of a country's density raster as PNG in the given mode.
+	 *
+	 * @param classes number of density classes in INDEXED mode
+	 * @throws IllegalArgumentException if the tile lies outside the raster or classes is out of range
+	 * @throws IOException if the raster cannot be loaded or the tile encoded
+	 */
+	public byte[] getTilePng(String iso3, int year, int level, int tileX, int tileY, PngMode mode, int classes)
+			throws IOException {
+		DecodedRaster raster = rasterCache.get(iso3, year);
+		if (mode == PngMode.INDEXED) {
+			int[] palette = RasterTileRenderer.palette(classes);
+			byte[] indices = tileRenderer.renderTileClasses(raster, level, tileX, tileY, classes);
+			return tiffConverter.encodeIndexedPng(indices, RasterTileRenderer.TILE_SIZE, RasterTileRenderer.TILE_SIZE, palette);
+		}
+		return tiffConverter.encodePng(tileRenderer.renderTile(raster, level, tileX, tileY));
+	}
+
+	/**
+	 * Prepares a tile of a country's density raster as a binary array: the same
+	 * TILE_SIZE × TILE_SIZE cells as {@link #getTilePng}, uncoloured.
+	 *
+	 * @param encoding null for the cached raster's lossless encoding
+	 * @throws IllegalArgumentException if the tile lies outside the raster, or float32 is
+	 *         asked while rasters are cached quantized
+	 * @throws IOException if the raster cannot be loaded
+	 */
+	public BinaryRasterWriter getTileArray(String iso3, int year, int level, int tileX, int tileY,
+										   BinaryRasterWriter.Encoding encoding) throws IOException {
+		DecodedRaster raster = rasterCache.get(iso3, year);
+		int maxLevel = tileRenderer.maxLevel(raster);
+		if (level < 0 || level > maxLevel) {
+			throw new IllegalArgumentException("Level must be between 0 and " + maxLevel);
+		}
+		int step = 1 << level;
+		long originX = (long) tileX * RasterTileRenderer.TILE_SIZE * step;
+		long originY = (long) tileY * RasterTileRenderer.TILE_SIZE * step;
+		if (tileX < 0 || tileY < 0 || originX >= raster.getWidth() || originY >= raster.getHeight()) {
+			throw new IllegalArgumentException("Tile " + level + "/" + tileX + "/" + tileY + " is outside the raster");
+		}
+		return new BinaryRasterWriter(raster, (int) originX, (int) originY,
+				RasterTileRenderer.TILE_SIZE, RasterTileRenderer.TILE_SIZE, step,
+				encoding != null ? encoding : BinaryRasterWriter.Encoding.lossless(raster.getStorage()));
+	}
+
+	/**
+	 * Density at a geographic point.
+	 *
+	 * @throws IllegalArgumentException if the raster is not georeferenced or the point lies outside it
+	 * @throws IOException if the raster cannot be loaded
+	 */
+	public RasterPointDto getPoint(String iso3, int year, double lon, double lat) throws IOException {
+		DecodedRaster raster = rasterCache.get(iso3, year);
+		GeoTransform transform = requireGeoreferenced(raster);
+		int col = transform.col(lon);
+		int row = transform.row(lat);
+		if (col < 0 || row < 0 || col >= raster.getWidth() || row >= raster.getHeight()) {
+			throw new IllegalArgumentException("Point (" + lon + ", " + lat + ") is outside the raster of " + iso3);
+		}
+		float density = raster.get(col, row);
+		return new RasterPointDto(lon, lat, col, row, Float.isNaN(density) ? null : density);
+	}
+
+	/**
+	 * Population figures of a whole country, or of a bounding box within it.
+	 *
+	 * @param bbox minLon, minLat, maxLon, maxLat; null for the whole raster
+	 * @throws IllegalArgumentException if the bbox is malformed or the raster is not georeferenced
+	 * @throws IOException if the raster cannot be loaded
+	 */
+	public RasterSummary getStats(String iso3, int year, double[] bbox) throws IOException {
+		DecodedRaster raster = rasterCache.get(iso3, year);
+		if (bbox == null) {
+			return rasterAnalyzer.summarize(raster);
+		}
+		if (bbox.length != 4 || bbox[0] >= bbox[2] || bbox[1] >= bbox[3]) {
+			throw new IllegalArgumentException("bbox must be minLon,minLat,maxLon,maxLat");
+		}
+		GeoTransform transform = requireGeoreferenced(raster);
+		int minCol = transform.col(bbox[0]);
+		int minRow = transform.row(bbox[3]);
+		int maxCol = transform.col(bbox[2]);
+		int maxRow = transform.row(bbox[1]);
+		return rasterAnalyzer.summarize(raster, new Rectangle(minCol, minRow, maxCol - minCol + 1, maxRow - minRow + 1));
+	}
+
+	/**
+	 * Renders a bounding box of a country as PNG from the local tiled store, using the
+	 * finest overview level at which the box fits in maxSize pixels. Only the tiles of
+	 * that level which intersect the box are read.
+	 *
+	 * @param bbox minLon, minLat, maxLon, maxLat
+	 * @param maxSize largest width or height of the image, in pixels
+	 * @throws IllegalArgumentException if the bbox is malformed or outside the raster
+	 * @throws IOException if the raster cannot be stored or read
+	 */
+	public byte[] getRegionPng(String iso3, int year, double[] bbox, int maxSize) throws IOException {
+		return getRegionPng(iso3, year, bbox, maxSize, PngMode.RGBA, 0);
+	}
+
+	/**
+	 * Renders a bounding box of a country as PNG in the given mode; see
+	 * {@link #getRegionPng(String, int, double[], int)}.
+	 *
+	 * @param classes number of density classes in INDEXED mode
+	 */
+	public byte[] getRegionPng(String iso3, int year, double[] bbox, int maxSize, PngMode mode, int classes)
+			throws IOException {
+		if (bbox == null) {
+			throw new IllegalArgumentException("bbox must be minLon,minLat,maxLon,maxLat");
+		}
+		Path file = rasterCache.ensureStored(iso3, year, false);
+		Region region = findRegion(file, bbox, maxSize);
+		DecodedRaster samples = rasterStore.readRegion(file, region.level(), region.window());
+		if (mode == PngMode.INDEXED) {
+			int[] palette = RasterTileRenderer.palette(classes);
+			return tiffConverter.encodeIndexedPng(tileRenderer.renderClasses(samples, classes),
+					samples.getWidth(), samples.getHeight(), palette);
+		}
+		return tiffConverter.encodePng(tileRenderer.render(samples));
+	}
+
+	/**
+	 * Prepares a bounding box of a country as a binary array, read from the local tiled
+	 * store at the same level and window as {@link #getRegionPng}.
+	 *
+	 * @throws IllegalArgumentException if the bbox is malformed or outside the raster
+	 * @throws IOException if the raster cannot be stored or read
+	 */
+	public BinaryRasterWriter getRegionArray(String iso3, int year, double[] bbox, int maxSize,
+											 BinaryRasterWriter.Encoding encoding) throws IOException {
+		if (bbox == null) {
+			throw new IllegalArgumentException("bbox must be minLon,minLat,maxLon,maxLat");
+		}
+		Path file = rasterCache.ensureStored(iso3, year, false);
+		Region region = findRegion(file, bbox, maxSize);
+		DecodedRaster samples = rasterStore.readRegion(file, region.level(), region.window());
+		return new BinaryRasterWriter(samples, 0, 0, samples.getWidth(), samples.getHeight(), 1, encoding);
+	}
+
+	/**
+	 * Finest overview level of a stored raster at which a bounding box fits in maxSize
+	 * pixels, and the box's window at that level.
+	 *
+	 * @param bbox minLon, minLat, maxLon, maxLat; null for the whole raster
+	 * @throws IllegalArgumentException if the bbox is malformed or the raster is not georeferenced
+	 * @throws IOException if the stored file cannot be read
+	 */
+	public Region findRegion(Path file, double[] bbox, int maxSize) throws IOException {
+		if (bbox != null && (bbox.length != 4 || bbox[0] >= bbox[2] || bbox[1] >= bbox[3])) {
+			throw new IllegalArgumentException("bbox must be minLon,minLat,maxLon,maxLat");
+		}
+		int minCol;
+		int minRow;
+		int width;
+		int height;
+		int levels;
+		try (TiledTiffReader reader = TiledTiffReader.open(file)) {
+			levels = reader.getLevelCount();
+			if (bbox == null) {
+				minCol = 0;
+				minRow = 0;
+				width = reader.getWidth(0);
+				height = reader.getHeight(0);
+			} else {
+				GeoTransform transform = reader.getTransform();
+				if (!transform.isKnown()) {
+					throw new IllegalArgumentException("Raster is not georeferenced");
+				}
+				minCol = transform.col(bbox[0]);
+				minRow = transform.row(bbox[3]);
+				width = transform.col(bbox[2]) - minCol + 1;
+				height = transform.row(bbox[1]) - minRow + 1;
+			}
+		}
+
+		int level = 0;
+		int size = Math.max(1, Math.min(maxSize, MAX_REGION_SIZE));
+		while (level < levels - 1 && Math.max(width, height) >> level > size) {
+			level++;
+		}
+		Rectangle window = new Rectangle(Math.floorDiv(minCol, 1 << level), Math.floorDiv(minRow, 1 << level),
+				Math.max(1, width >> level), Math.max(1, height >> level));
+		return new Region(level, window);
+	}
+
+	/**
+	 * Writes (or rewrites) a country's raster into the local tiled store and verifies it.
+	 *
+	 * @param rebuild download and rewrite even if already stored
+	 * @throws IOException if the raster cannot be downloaded, stored or verified
+	 */
+	public StoredRasterDto storeRaster(String iso3, int year, boolean rebuild) throws IOException {
+		Path file = rasterCache.ensureStored(iso3, year, rebuild);
+		return new StoredRasterDto(iso3.toUpperCase(Locale.ROOT), year, file.toString(), Files.size(file),
+				rasterStore.levels(file));
+	}
+
+	/**
+	 * A window of one level of a stored raster.
+	 */
+	public record Region(int level, Rectangle window) {
+	}
+
+	private static GeoTransform requireGeoreferenced(DecodedRaster raster) {
+		if (!raster.getTransform().isKnown()) {
+			throw new IllegalArgumentException("Raster is not georeferenced");
+		}
+		return raster.getTransform();
+	}
+}
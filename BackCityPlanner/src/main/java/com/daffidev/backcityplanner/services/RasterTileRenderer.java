@@ -0,0 +1,226 @@
+package com.daffidev.backcityplanner.services;
+
+import com.daffidev.backcityplanner.raster.DecodedRaster;
+import com.daffidev.backcityplanner.tracing.RequestTracing;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Renders fixed-size tiles of a decoded density raster.
+ *
+ * Tiles are addressed in the raster's own pixel grid: at level 0 a tile covers
+ * 256×256 cells, and each level up halves the resolution (level n samples every
+ * 2^n-th cell), down to a single tile for the whole raster. Densities are coloured
+ * on a fixed logarithmic scale so tiles of different countries and years compare
+ * directly; nodata is transparent. Tiles and whole rasters can also be rendered as
+ * density classes (palette indices) for compact indexed PNGs.
+ */
+@Component
+public class RasterTileRenderer {
+
+	public static final int TILE_SIZE = 256;
+
+	/** Most density classes in an indexed image; one palette entry is kept for nodata. */
+	public static final int MAX_CLASSES = 255;
+
+	/** Density (people/km²) mapped to the last colour of the ramp. */
+	private static final double MAX_DENSITY = 10_000;
+
+	private static final int[] RAMP = buildRamp();
+
+	/**
+	 * Highest level of a raster, at which it fits in one tile.
+	 */
+	public int maxLevel(DecodedRaster raster) {
+		int level = 0;
+		while ((long) TILE_SIZE << level < Math.max(raster.getWidth(), raster.getHeight())) {
+			level++;
+		}
+		return level;
+	}
+
+	/**
+	 * Renders one tile.
+	 *
+	 * @param raster the decoded raster
+	 * @param level resolution level, 0 = full resolution
+	 * @param tileX tile column at that level
+	 * @param tileY tile row at that level
+	 * @return a TILE_SIZE × TILE_SIZE ARGB image; cells beyond the raster edge are transparent
+	 * @throws IllegalArgumentException if the tile lies outside the raster
+	 */
+	public BufferedImage renderTile(DecodedRaster raster, int level, int tileX, int tileY) {
+		try (RequestTracing.Span span = RequestTracing.span("render")) {
+			BufferedImage tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+			int[] pixels = new int[TILE_SIZE];
+			sampleTile(raster, level, tileX, tileY, (py, cells, step, columns) -> {
+				for (int px = 0; px < TILE_SIZE; px++) {
+					pixels[px] = px < columns ? color(cells[px * step]) : 0;
+				}
+				tile.setRGB(0, py, TILE_SIZE, 1, pixels, 0, TILE_SIZE);
+			});
+			return tile;
+		}
+	}
+
+	/**
+	 * Renders one tile as density classes for an indexed PNG with {@link #palette}.
+	 *
+	 * @param classes number of density classes, 1 to MAX_CLASSES
+	 * @return TILE_SIZE × TILE_SIZE palette indices; 0 (nodata) beyond the raster edge
+	 * @throws IllegalArgumentException if the tile lies outside the raster
+	 */
+	public byte[] renderTileClasses(DecodedRaster raster, int level, int tileX, int tileY, int classes) {
+		checkClasses(classes);
+		try (RequestTracing.Span span = RequestTracing.span("render")) {
+			byte[] indices = new byte[TILE_SIZE * TILE_SIZE];
+			sampleTile(raster, level, tileX, tileY, (py, cells, step, columns) -> {
+				for (int px = 0; px < columns; px++) {
+					indices[py * TILE_SIZE + px] = (byte) classOf(cells[px * step], classes);
+				}
+			});
+			return indices;
+		}
+	}
+
+	/**
+	 * Reads the cells of a tile row by row, every step-th cell of the covered span.
+	 */
+	private void sampleTile(DecodedRaster raster, int level, int tileX, int tileY, TileRow consumer) {
+		if (level < 0 || level > maxLevel(raster)) {
+			throw new IllegalArgumentException("Level must be between 0 and " + maxLevel(raster));
+		}
+		int step = 1 << level;
+		long originX = (long) tileX * TILE_SIZE * step;
+		long originY = (long) tileY * TILE_SIZE * step;
+		if (tileX < 0 || tileY < 0 || originX >= raster.getWidth() || originY >= raster.getHeight()) {
+			throw new IllegalArgumentException("Tile " + level + "/" + tileX + "/" + tileY + " is outside the raster");
+		}
+
+		// Cells covered by this tile at full resolution, then every step-th of them
+		int rowCells = (int) Math.min((long) TILE_SIZE * step, raster.getWidth() - originX);
+		float[] cells = new float[rowCells];
+		int columns = (rowCells + step - 1) / step;
+		for (int py = 0; py < TILE_SIZE; py++) {
+			long y = originY + (long) py * step;
+			if (y >= raster.getHeight()) {
+				break;
+			}
+			raster.readRow((int) y, (int) originX, rowCells, cells, 0);
+			consumer.row(py, cells, step, columns);
+		}
+	}
+
+	private interface TileRow {
+		void row(int py, float[] cells, int step, int columns);
+	}
+
+	/**
+	 * Renders a whole raster, one pixel per cell.
+	 *
+	 * @param raster typically a window read from the local tiled store
+	 * @return an ARGB image the size of the raster; nodata is transparent
+	 */
+	public BufferedImage render(DecodedRaster raster) {
+		try (RequestTracing.Span span = RequestTracing.span("render")) {
+			int width = raster.getWidth();
+			int height = raster.getHeight();
+			BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+			float[] row = new float[width];
+			int[] pixels = new int[width];
+			for (int y = 0; y < height; y++) {
+				raster.readRow(y, 0, width, row, 0);
+				for (int x = 0; x < width; x++) {
+					pixels[x] = color(row[x]);
+				}
+				image.setRGB(0, y, width, 1, pixels, 0, width);
+			}
+			return image;
+		}
+	}
+
+	/**
+	 * Renders a whole raster as density classes for an indexed PNG with {@link #palette}.
+	 *
+	 * @param classes number of density classes, 1 to MAX_CLASSES
+	 * @return one palette index per cell, row-major; 0 for nodata
+	 */
+	public byte[] renderClasses(DecodedRaster raster, int classes) {
+		checkClasses(classes);
+		try (RequestTracing.Span span = RequestTracing.span("render")) {
+			int width = raster.getWidth();
+			byte[] indices = new byte[Math.multiplyExact(width, raster.getHeight())];
+			float[] row = new float[width];
+			for (int y = 0; y < raster.getHeight(); y++) {
+				raster.readRow(y, 0, width, row, 0);
+				for (int x = 0; x < width; x++) {
+					indices[y * width + x] = (byte) classOf(row[x], classes);
+				}
+			}
+			return indices;
+		}
+	}
+
+	/**
+	 * Palette for density classes: index 0 is transparent nodata, index k the ramp colour
+	 * at the middle of class k, so classed images look like the ARGB ones with fewer steps.
+	 */
+	public static int[] palette(int classes) {
+		checkClasses(classes);
+		int[] palette = new int[classes + 1];
+		for (int k = 1; k <= classes; k++) {
+			palette[k] = RAMP[(int) Math.round((k - 0.5) / classes * (RAMP.length - 1))];
+		}
+		return palette;
+	}
+
+	/**
+	 * Class of a density on the same logarithmic scale as {@link #color}: 1 to classes,
+	 * 0 for nodata.
+	 */
+	public static int classOf(float density, int classes) {
+		if (Float.isNaN(density)) {
+			return 0;
+		}
+		double normalized = Math.log1p(Math.max(0, density)) / Math.log1p(MAX_DENSITY);
+		return 1 + Math.min(classes - 1, (int) (normalized * classes));
+	}
+
+	private static void checkClasses(int classes) {
+		if (classes < 1 || classes > MAX_CLASSES) {
+			throw new IllegalArgumentException("classes must be between 1 and " + MAX_CLASSES);
+		}
+	}
+
+	/**
+	 * ARGB colour of a density; 0 (transparent) for nodata.
+	 */
+	public static int color(float density) {
+		if (Float.isNaN(density)) {
+			return 0;
+		}
+		double normalized = Math.log1p(Math.max(0, density)) / Math.log1p(MAX_DENSITY);
+		return RAMP[(int) Math.round(Math.min(1, normalized) * (RAMP.length - 1))];
+	}
+
+	/**
+	 * 256-step ramp from pale yellow through orange and red to dark purple.
+	 */
+	private static int[] buildRamp() {
+		int[][] stops = {
+				{255, 255, 229}, {254, 227, 145}, {254, 153, 41}, {217, 72, 1}, {165, 15, 21}, {63, 0, 125}
+		};
+		int[] ramp = new int[256];
+		for (int i = 0; i < ramp.length; i++) {
+			double position = i / 255.0 * (stops.length - 1);
+			int stop = Math.min((int) position, stops.length - 2);
+			double t = position - stop;
+			int r = (int) Math.round(stops[stop][0] + t * (stops[stop + 1][0] - stops[stop][0]));
+			int g = (int) Math.round(stops[stop][1] + t * (stops[stop + 1][1] - stops[stop][1]));
+			int b = (int) Math.round(stops[stop][2] + t * (stops[stop + 1][2] - stops[stop][2]));
+			ramp[i] = 0xFF000000 | r << 16 | g << 8 | b;
+		}
+		return ramp;
+	}
+}
@@ -1,21 +1,59 @@
 package com.daffidev.backcityplanner.services;
 
+import com.daffidev.backcityplanner.raster.IndexedPngEncoder;
+import com.daffidev.backcityplanner.tracing.RequestTracing;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Utility class to convert TIFF images to PNG format using TwelveMonkeys ImageIO.
+ * Decode and encode durations, PNG sizes and in-flight conversions are published to Micrometer.
+ *
+ * Besides ImageIO's PNG writer, which keeps whatever layout the TIFF decoded to, it
+ * writes compact palette-indexed PNGs from density classes with an
+ * {@link IndexedPngEncoder}, using png.indexed.filter and png.indexed.deflate-level.
  */
 @Component
 public class TiffConverter {
 
 	private static final Logger logger = LoggerFactory.getLogger(TiffConverter.class);
 
+	private final Timer decodeTimer;
+	private final Timer encodeTimer;
+	private final DistributionSummary pngSize;
+	private final AtomicInteger inFlight;
+	private final IndexedPngEncoder.Filter indexedFilter;
+	private final int indexedDeflateLevel;
+
+	public TiffConverter(MeterRegistry meterRegistry,
+						 @Value("${png.indexed.filter:NONE}") String indexedFilter,
+						 @Value("${png.indexed.deflate-level:9}") int indexedDeflateLevel) {
+		this.decodeTimer = Timer.builder("tiff.decode")
+				.description("TIFF decoding into a BufferedImage")
+				.register(meterRegistry);
+		this.encodeTimer = Timer.builder("tiff.encode")
+				.description("PNG encoding of a decoded TIFF")
+				.register(meterRegistry);
+		this.pngSize = DistributionSummary.builder("tiff.encode.output.size")
+				.description("Size of encoded PNG images")
+				.baseUnit("bytes")
+				.register(meterRegistry);
+		this.inFlight = meterRegistry.gauge("tiff.conversions.inflight", new AtomicInteger());
+		this.indexedFilter = IndexedPngEncoder.Filter.parse(indexedFilter);
+		this.indexedDeflateLevel = indexedDeflateLevel;
+	}
+
 	/**
 	 * Converts a TIFF image from byte array to PNG format.
 	 *
@@ -63,15 +101,48 @@ public class TiffConverter {
 			throw new IllegalArgumentException("TIFF stream cannot be null");
 		}
 
-		// Read TIFF image using TwelveMonkeys ImageIO plugin
-		BufferedImage image = ImageIO.read(tiffStream);
+		inFlight.incrementAndGet();
+		try {
+			return encodePng(decode(tiffStream));
+		} finally {
+			inFlight.decrementAndGet();
+		}
+	}
 
-		if (image == null) {
-			throw new IOException("Failed to read TIFF image. The file may be corrupted or not a valid TIFF.");
+	/**
+	 * Decodes a TIFF image.
+	 *
+	 * @param tiffStream InputStream containing TIFF image data
+	 * @return the decoded image
+	 * @throws IOException if the stream is not a readable TIFF
+	 */
+	public BufferedImage decode(InputStream tiffStream) throws IOException {
+		long start = System.nanoTime();
+		try (RequestTracing.Span span = RequestTracing.span("decode")) {
+			// Read TIFF image using TwelveMonkeys ImageIO plugin
+			BufferedImage image = ImageIO.read(tiffStream);
+
+			if (image == null) {
+				throw new IOException("Failed to read TIFF image. The file may be corrupted or not a valid TIFF.");
+			}
+			return image;
+		} finally {
+			decodeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
 		}
+	}
 
+	/**
+	 * Encodes an image as PNG.
+	 *
+	 * @param image the image to encode
+	 * @return byte array containing PNG image data
+	 * @throws IOException if encoding fails
+	 */
+	public byte[] encodePng(BufferedImage image) throws IOException {
+		long start = System.nanoTime();
 		// Convert to PNG and write to byte array
-		try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
+		try (RequestTracing.Span span = RequestTracing.span("encode");
+			 ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
 			boolean success = ImageIO.write(image, "png", outputStream);
 
 			if (!success) {
@@ -79,8 +150,34 @@ public class TiffConverter {
 			}
 
 			byte[] pngData = outputStream.toByteArray();
+			pngSize.record(pngData.length);
+			span.bytes(pngData.length);
 			logger.info("Successfully converted TIFF to PNG. Output size: {} bytes", pngData.length);
 			return pngData;
+		} finally {
+			encodeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * Encodes palette indices as an indexed PNG, at the smallest bit depth that holds
+	 * the palette.
+	 *
+	 * @param indices palette index of each pixel, row-major
+	 * @param palette ARGB colour of each index, at most 256 entries
+	 * @return byte array containing PNG image data
+	 * @throws IOException if encoding fails
+	 */
+	public byte[] encodeIndexedPng(byte[] indices, int width, int height, int[] palette) throws IOException {
+		long start = System.nanoTime();
+		try (RequestTracing.Span span = RequestTracing.span("encode")) {
+			byte[] pngData = new IndexedPngEncoder(palette, indexedFilter, indexedDeflateLevel).encode(indices, width, height);
+			pngSize.record(pngData.length);
+			span.bytes(pngData.length);
+			logger.debug("Encoded {}x{} indexed PNG with {} colours: {} bytes", width, height, palette.length, pngData.length);
+			return pngData;
+		} finally {
+			encodeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
 		}
 	}
 
@@ -0,0 +1,164 @@
+package com.daffidev.backcityplanner.services;
+
+import com.daffidev.backcityplanner.raster.DecodedRaster;
+import com.daffidev.backcityplanner.raster.GeoTransform;
+import com.daffidev.backcityplanner.raster.UrbanCluster;
+import com.daffidev.backcityplanner.raster.UrbanClusterLabeler;
+import com.daffidev.backcityplanner.scheduling.WorkPriority;
+import com.daffidev.backcityplanner.scheduling.WorkScheduler;
+import com.daffidev.backcityplanner.tracing.RequestTracing;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Urban extents of a country: 4-connected clusters of cells at or above a density
+ * threshold, with their population, area, bounding box and convex-hull outline.
+ *
+ * The default threshold and minimum population follow the usual urban-cluster
+ * definition (300 people/km², 5,000 people). Rasters come from the
+ * {@link DecodedRasterCache}, off-heap; tiles are labelled in parallel on the
+ * {@link WorkScheduler} by an {@link UrbanClusterLabeler} and merged across tile
+ * edges. All clusters of a country, year and threshold are cached
+ * (urban.cache.max-entries), so changing the minimum population does not relabel.
+ */
+@Service
+public class UrbanExtentService {
+
+	private static final Logger logger = LoggerFactory.getLogger(UrbanExtentService.class);
+
+	private final DecodedRasterCache rasterCache;
+	private final WorkScheduler scheduler;
+	private final Cache<String, Labelled> clusters;
+
+	public UrbanExtentService(DecodedRasterCache rasterCache, WorkScheduler scheduler,
+							  @Value("${urban.cache.max-entries:32}") long maxEntries) {
+		this.rasterCache = rasterCache;
+		this.scheduler = scheduler;
+		this.clusters = Caffeine.newBuilder()
+				.maximumSize(maxEntries)
+				.build();
+	}
+
+	/**
+	 * Urban clusters of a country as a GeoJSON FeatureCollection, most populous first.
+	 *
+	 * @param threshold lowest density (people/km²) of an urban cell
+	 * @param minPopulation smallest cluster population to include
+	 * @throws IllegalArgumentException if the threshold is not positive or the raster is not georeferenced
+	 * @throws IOException if the raster cannot be loaded
+	 */
+	public ObjectNode getUrbanExtent(String iso3, int year, double threshold, double minPopulation) throws IOException {
+		if (!(threshold > 0)) {
+			throw new IllegalArgumentException("threshold must be positive");
+		}
+		String code = iso3.toUpperCase(Locale.ROOT);
+		long generation = rasterCache.getGeneration(code, year);
+		// A cold raster is downloaded and decoded as scheduled work, like the tile and region reads;
+		// the fan-out below then queues its own pieces, which it could not do from a worker
+		DecodedRaster raster = scheduler.run(WorkPriority.STANDARD, () -> rasterCache.get(code, year));
+		if (!raster.getTransform().isKnown()) {
+			throw new IllegalArgumentException("Raster is not georeferenced");
+		}
+
+		String key = code + '|' + year + '|' + threshold;
+		Labelled labelled = clusters.getIfPresent(key);
+		// Clusters labelled while a rebuild was under way belong to the old raster
+		if (labelled == null || labelled.generation() != generation) {
+			labelled = new Labelled(generation, label(code, year, raster, (float) threshold));
+			clusters.put(key, labelled);
+		}
+		List<UrbanCluster> all = labelled.clusters();
+
+		JsonNodeFactory json = JsonNodeFactory.instance;
+		ObjectNode collection = json.objectNode();
+		collection.put("type", "FeatureCollection");
+		ArrayNode features = collection.putArray("features");
+		GeoTransform transform = raster.getTransform();
+		int id = 0;
+		for (UrbanCluster cluster : all) {
+			if (cluster.population() < minPopulation) {
+				break;
+			}
+			features.add(feature(json, id++, cluster, transform));
+		}
+		return collection;
+	}
+
+	/**
+	 * Drops the clusters labelled on a raster that was rebuilt, at every threshold.
+	 */
+	@EventListener
+	public void onRasterRebuilt(RasterRebuiltEvent event) {
+		String prefix = event.iso3() + '|' + event.year() + '|';
+		clusters.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+	}
+
+	private List<UrbanCluster> label(String iso3, int year, DecodedRaster raster, float threshold) throws IOException {
+		long start = System.nanoTime();
+		UrbanClusterLabeler labeler = new UrbanClusterLabeler(raster, threshold);
+		List<WorkScheduler.Work<UrbanClusterLabeler.TileLabels>> tiles = new ArrayList<>();
+		for (int tileY = 0; tileY < labeler.getTilesY(); tileY++) {
+			for (int tileX = 0; tileX < labeler.getTilesX(); tileX++) {
+				int x = tileX;
+				int y = tileY;
+				tiles.add(() -> labeler.labelTile(x, y));
+			}
+		}
+		List<UrbanCluster> result;
+		List<UrbanClusterLabeler.TileLabels> labelled = scheduler.runAll(WorkPriority.STANDARD, tiles);
+		try (RequestTracing.Span span = RequestTracing.span("merge")) {
+			result = labeler.merge(labelled);
+		}
+		logger.info("Labelled {} urban clusters of {} {} at {} people/km2 over {} tiles in {} ms", result.size(), iso3,
+				year, threshold, tiles.size(), (System.nanoTime() - start) / 1_000_000);
+		return result;
+	}
+
+	private static ObjectNode feature(JsonNodeFactory json, int id, UrbanCluster cluster, GeoTransform transform) {
+		ObjectNode feature = json.objectNode();
+		feature.put("type", "Feature");
+		feature.put("id", id);
+
+		ObjectNode geometry = feature.putObject("geometry");
+		geometry.put("type", "Polygon");
+		ArrayNode ring = geometry.putArray("coordinates").addArray();
+		int[] hull = cluster.hull();
+		// The hull runs clockwise in lon/lat once rows are flipped to latitudes; GeoJSON wants counter-clockwise
+		for (int i = hull.length / 2 - 1; i >= -1; i--) {
+			int vertex = i < 0 ? hull.length / 2 - 1 : i;
+			ring.addArray().add(transform.lonEdge(hull[2 * vertex])).add(transform.latEdge(hull[2 * vertex + 1]));
+		}
+
+		ObjectNode properties = feature.putObject("properties");
+		properties.put("population", Math.round(cluster.population()));
+		properties.put("area_km2", cluster.areaKm2());
+		properties.put("mean_density", cluster.areaKm2() > 0 ? cluster.population() / cluster.areaKm2() : 0);
+		properties.put("cells", cluster.cells());
+		properties.putArray("bbox")
+				.add(transform.lonEdge(cluster.minX()))
+				.add(transform.latEdge(cluster.maxY()))
+				.add(transform.lonEdge(cluster.maxX()))
+				.add(transform.latEdge(cluster.minY()));
+		return feature;
+	}
+
+	/**
+	 * Clusters and the {@link DecodedRasterCache#getGeneration generation} of the raster
+	 * they were labelled on.
+	 */
+	private record Labelled(long generation, List<UrbanCluster> clusters) {
+	}
+}
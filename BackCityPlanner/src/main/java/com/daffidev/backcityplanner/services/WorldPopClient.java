@@ -1,8 +1,14 @@
 package com.daffidev.backcityplanner.services;
+
+import com.daffidev.backcityplanner.tracing.RequestTracing;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
@@ -15,17 +21,37 @@ public class WorldPopClient {
 
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Counter metadataBytes;
     private final Logger logger = LoggerFactory.getLogger(WorldPopClient.class);
 
-    private static final String BASE_URL = "https://www.worldpop.org/rest/data/pop/WPGP";
-    private static final String POPULATION_DENSITY_URL = "https://www.worldpop.org/rest/data/pop_density/pd_ic_1km";
+    public static final String DEFAULT_POPULATION_URL = "https://www.worldpop.org/rest/data/pop/WPGP";
+    public static final String DEFAULT_POPULATION_DENSITY_URL = "https://www.worldpop.org/rest/data/pop_density/pd_ic_1km";
+
+    private final String populationUrl;
+    private final String populationDensityUrl;
 
-    public WorldPopClient() {
+    /**
+     * @param populationUrl        WorldPop WPGP population endpoint (worldpop.api.population-url)
+     * @param populationDensityUrl WorldPop 1 km density endpoint (worldpop.api.population-density-url);
+     *                             point both at a stub server for offline and load testing
+     */
+    public WorldPopClient(MeterRegistry meterRegistry,
+                          @Value("${worldpop.api.population-url:" + DEFAULT_POPULATION_URL + "}") String populationUrl,
+                          @Value("${worldpop.api.population-density-url:" + DEFAULT_POPULATION_DENSITY_URL + "}") String populationDensityUrl) {
         SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
         requestFactory.setConnectTimeout(5000);
         requestFactory.setReadTimeout(10000);
         this.restTemplate = new RestTemplate(requestFactory);
         this.objectMapper = new ObjectMapper();
+        this.meterRegistry = meterRegistry;
+        this.populationUrl = populationUrl;
+        this.populationDensityUrl = populationDensityUrl;
+        this.metadataBytes = Counter.builder("worldpop.downloaded.bytes")
+                .description("Bytes of WorldPop metadata responses")
+                .baseUnit("bytes")
+                .tag("kind", "metadata")
+                .register(meterRegistry);
     }
 
     /**
@@ -41,17 +67,26 @@ public class WorldPopClient {
             throw new IllegalArgumentException("iso3 must be provided");
         }
 
-        String url = UriComponentsBuilder.fromHttpUrl(BASE_URL)
+        String url = UriComponentsBuilder.fromHttpUrl(populationUrl)
                 .queryParam("iso3", iso3)
                 .toUriString();
 
-        try {
-            ResponseEntity<String> resp = restTemplate.getForEntity(url, String.class);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try (RequestTracing.Span span = RequestTracing.span("worldpop")) {
+            // Read as bytes: the metrics count what came over the wire, and Jackson parses UTF-8 directly
+            ResponseEntity<byte[]> resp = restTemplate.getForEntity(url, byte[].class);
             if (resp.getStatusCode().is2xxSuccessful() && resp.getBody() != null) {
+                span.bytes(resp.getBody().length);
                 logger.debug("Solicitud exitosa");
-                return objectMapper.readTree(resp.getBody());
+                // Only a body that parses counts as a success and as metadata received
+                JsonNode body = objectMapper.readTree(resp.getBody());
+                outcome = "success";
+                metadataBytes.increment(resp.getBody().length);
+                return body;
             } else {
                 logger.warn("WorldPop returned non-2xx status: {}", resp.getStatusCode());
+                outcome = "empty";
                 return null;
             }
         } catch (HttpClientErrorException e) {
@@ -61,6 +96,8 @@ public class WorldPopClient {
         } catch (Exception e) {
             logger.error("Error fetching WorldPop data: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to fetch WorldPop data", e);
+        } finally {
+            sample.stop(fetchTimer("population", outcome));
         }
     }
 
@@ -83,17 +120,24 @@ public class WorldPopClient {
             throw new IllegalArgumentException("iso3 must be provided");
         }
 
-        String url = UriComponentsBuilder.fromHttpUrl(POPULATION_DENSITY_URL)
+        String url = UriComponentsBuilder.fromHttpUrl(populationDensityUrl)
                 .queryParam("iso3", iso3)
                 .toUriString();
 
-        try {
-            ResponseEntity<String> resp = restTemplate.getForEntity(url, String.class);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try (RequestTracing.Span span = RequestTracing.span("worldpop")) {
+            ResponseEntity<byte[]> resp = restTemplate.getForEntity(url, byte[].class);
             if (resp.getStatusCode().is2xxSuccessful() && resp.getBody() != null) {
+                span.bytes(resp.getBody().length);
                 logger.debug("Population density request successful for iso3: {}", iso3);
-                return objectMapper.readTree(resp.getBody());
+                JsonNode body = objectMapper.readTree(resp.getBody());
+                outcome = "success";
+                metadataBytes.increment(resp.getBody().length);
+                return body;
             } else {
                 logger.warn("WorldPop population density returned non-2xx status: {}", resp.getStatusCode());
+                outcome = "empty";
                 return null;
             }
         } catch (HttpClientErrorException e) {
@@ -102,6 +146,16 @@ public class WorldPopClient {
         } catch (Exception e) {
             logger.error("Error fetching WorldPop population density data: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to fetch WorldPop population density data", e);
+        } finally {
+            sample.stop(fetchTimer("population_density", outcome));
         }
     }
+
+    private Timer fetchTimer(String endpoint, String outcome) {
+        return Timer.builder("worldpop.fetch")
+                .description("WorldPop metadata API calls")
+                .tag("endpoint", endpoint)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,120 @@
+package com.daffidev.backcityplanner.startup;
+
+import com.daffidev.backcityplanner.raster.DecodedRaster;
+import com.daffidev.backcityplanner.raster.GeoTransform;
+import com.daffidev.backcityplanner.raster.TiledTiffWriter;
+import com.daffidev.backcityplanner.services.PopulationRasterAnalyzer;
+import com.daffidev.backcityplanner.services.RasterTileRenderer;
+import com.daffidev.backcityplanner.services.TiffConverter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Warms the raster paths in the background once the context is up, so the first
+ * user request does not pay for ImageIO plugin scanning, TwelveMonkeys and codec
+ * class loading and interpreted decode loops.
+ *
+ * Two tiny TIFFs are generated in memory, an 8-bit image for the generic conversion to
+ * PNG and a float32 GeoTIFF for decoding into a raster and tile rendering, and pushed
+ * through the same calls a request makes a few times so the hot loops get compiled.
+ * Nothing is cached or stored.
+ *
+ * Enabled with startup.warmup.enabled=true (on in the faststart profile).
+ */
+@Component
+public class ImageIoWarmup {
+
+	private static final Logger logger = LoggerFactory.getLogger(ImageIoWarmup.class);
+
+	private static final int SIZE = 64;
+
+	private final TiffConverter tiffConverter;
+	private final PopulationRasterAnalyzer rasterAnalyzer;
+	private final RasterTileRenderer tileRenderer;
+	private final boolean enabled;
+	private final int iterations;
+
+	public ImageIoWarmup(TiffConverter tiffConverter, PopulationRasterAnalyzer rasterAnalyzer,
+						 RasterTileRenderer tileRenderer,
+						 @Value("${startup.warmup.enabled:false}") boolean enabled,
+						 @Value("${startup.warmup.iterations:20}") int iterations) {
+		this.tiffConverter = tiffConverter;
+		this.rasterAnalyzer = rasterAnalyzer;
+		this.tileRenderer = tileRenderer;
+		this.enabled = enabled;
+		this.iterations = Math.max(1, iterations);
+	}
+
+	@EventListener(ApplicationStartedEvent.class)
+	void start() {
+		if (!enabled) {
+			return;
+		}
+		Thread warmup = new Thread(this::warmUp, "imageio-warmup");
+		warmup.setDaemon(true);
+		warmup.setPriority(Thread.MIN_PRIORITY);
+		warmup.start();
+	}
+
+	private void warmUp() {
+		long start = System.nanoTime();
+		try {
+			ImageIO.scanForPlugins();
+			if (!ImageIO.getImageReadersByFormatName("tiff").hasNext()) {
+				logger.warn("No TIFF reader registered; skipping warm-up");
+				return;
+			}
+			long plugins = System.nanoTime();
+
+			byte[] image = grayTiff();
+			byte[] geoTiff = new TiledTiffWriter(TiledTiffWriter.Compression.DEFLATE, false, -99999f).write(sample());
+			for (int i = 0; i < iterations; i++) {
+				tiffConverter.convertTiffToPng(image);
+				DecodedRaster raster = rasterAnalyzer.decode(geoTiff, DecodedRaster.Storage.QUANTIZED16);
+				rasterAnalyzer.summarize(raster);
+				tiffConverter.encodePng(tileRenderer.renderTile(raster, 0, 0, 0));
+			}
+			logger.info("Warm-up done in {} ms (plugins {} ms, {} conversions)",
+					(System.nanoTime() - start) / 1_000_000, (plugins - start) / 1_000_000, iterations);
+		} catch (IOException | RuntimeException e) {
+			logger.warn("Warm-up failed after {} ms: {}", (System.nanoTime() - start) / 1_000_000, e.toString());
+		}
+	}
+
+	private static byte[] grayTiff() throws IOException {
+		BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_BYTE_GRAY);
+		for (int y = 0; y < SIZE; y++) {
+			for (int x = 0; x < SIZE; x++) {
+				image.getRaster().setSample(x, y, 0, (x * y) & 0xff);
+			}
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		if (!ImageIO.write(image, "tiff", out)) {
+			throw new IOException("No TIFF writer registered");
+		}
+		return out.toByteArray();
+	}
+
+	private static DecodedRaster sample() {
+		ByteBuffer samples = DecodedRaster.allocateFloat32(SIZE, SIZE);
+		FloatBuffer out = samples.asFloatBuffer();
+		for (int y = 0; y < SIZE; y++) {
+			for (int x = 0; x < SIZE; x++) {
+				out.put(x < 4 ? Float.NaN : (x * y) % 500);
+			}
+		}
+		return DecodedRaster.of(SIZE, SIZE, new GeoTransform(-99.5, 19.7, 0.0083333333, 0.0083333333), samples,
+				DecodedRaster.Storage.FLOAT32);
+	}
+}
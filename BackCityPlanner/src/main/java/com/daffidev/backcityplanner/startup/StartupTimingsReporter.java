@@ -0,0 +1,86 @@
+package com.daffidev.backcityplanner.startup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Logs where startup time went once the application is ready: JVM start to main,
+ * the Spring Boot phases, the context refresh, and the slowest bean instantiations
+ * (which include the beans they depend on).
+ *
+ * Reads the steps recorded by the {@link BufferingApplicationStartup} installed in
+ * main; the same timeline is served at /actuator/startup when that endpoint is
+ * exposed. Enabled with startup.timings.enabled=true (on in the faststart profile).
+ */
+@Component
+public class StartupTimingsReporter {
+
+	private static final Logger logger = LoggerFactory.getLogger(StartupTimingsReporter.class);
+
+	private static final String PHASE_PREFIX = "spring.boot.application.";
+	private static final int SLOWEST_BEANS = 5;
+
+	private final ApplicationStartup applicationStartup;
+	private final boolean enabled;
+
+	public StartupTimingsReporter(ApplicationStartup applicationStartup,
+								  @Value("${startup.timings.enabled:false}") boolean enabled) {
+		this.applicationStartup = applicationStartup;
+		this.enabled = enabled;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	void report(ApplicationReadyEvent event) {
+		if (!enabled) {
+			return;
+		}
+		long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+		if (!(applicationStartup instanceof BufferingApplicationStartup buffering)) {
+			logger.info("Startup: ready {} ms after JVM start (no buffered timeline)", uptime);
+			return;
+		}
+
+		StartupTimeline timeline = buffering.getBufferedTimeline();
+		long jvmToMain = timeline.getStartTime().toEpochMilli() - ManagementFactory.getRuntimeMXBean().getStartTime();
+		StringBuilder phases = new StringBuilder();
+		for (StartupTimeline.TimelineEvent step : timeline.getEvents()) {
+			String name = step.getStartupStep().getName();
+			if (name.startsWith(PHASE_PREFIX) || name.equals("spring.context.refresh")) {
+				phases.append(", ").append(name.startsWith(PHASE_PREFIX) ? name.substring(PHASE_PREFIX.length()) : "context-refresh")
+						.append('=').append(step.getDuration().toMillis()).append(" ms");
+			}
+		}
+		logger.info("Startup: ready {} ms after JVM start (JVM to main {} ms{})", uptime, jvmToMain, phases);
+
+		List<StartupTimeline.TimelineEvent> slowest = timeline.getEvents().stream()
+				.filter(step -> step.getStartupStep().getName().equals("spring.beans.instantiate"))
+				.sorted(Comparator.comparing(StartupTimeline.TimelineEvent::getDuration).reversed())
+				.limit(SLOWEST_BEANS)
+				.toList();
+		for (StartupTimeline.TimelineEvent step : slowest) {
+			logger.info("Startup: bean {} took {} ms", beanName(step.getStartupStep()), step.getDuration().toMillis());
+		}
+	}
+
+	private static String beanName(StartupStep step) {
+		for (StartupStep.Tag tag : step.getTags()) {
+			if (tag.getKey().equals("beanName")) {
+				return tag.getValue();
+			}
+		}
+		return "?";
+	}
+}
@@ -0,0 +1,94 @@
+package com.daffidev.backcityplanner.tracing;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stage timings collected while one HTTP request is handled.
+ * Stages with the same name (e.g. two WorldPop calls) are merged: durations and
+ * byte counts are summed and the number of calls is kept.
+ *
+ * Stages are usually added from the request thread, but a trace can be attached to
+ * pool threads working on the request's behalf, so access is synchronized.
+ */
+public final class RequestTrace {
+
+	private final String method;
+	private final String path;
+	private final Instant startedAt;
+	private final long startNanos;
+	private final Map<String, long[]> stages = new LinkedHashMap<>();
+
+	RequestTrace(String method, String path) {
+		this.method = method;
+		this.path = path;
+		this.startedAt = Instant.now();
+		this.startNanos = System.nanoTime();
+	}
+
+	/**
+	 * Adds a finished stage.
+	 *
+	 * @param name stage name; must be a valid Server-Timing token (letters, digits, '-', '_', '.')
+	 * @param nanos time spent in the stage
+	 * @param bytes bytes read or produced by the stage, or -1 if not applicable
+	 */
+	synchronized void addStage(String name, long nanos, long bytes) {
+		long[] stage = stages.computeIfAbsent(name, key -> new long[]{0, 0, -1});
+		stage[0] += nanos;
+		stage[1]++;
+		if (bytes >= 0) {
+			stage[2] = Math.max(stage[2], 0) + bytes;
+		}
+	}
+
+	long elapsedNanos() {
+		return System.nanoTime() - startNanos;
+	}
+
+	/**
+	 * Formats the stages and the elapsed total as a Server-Timing header value, e.g.
+	 * {@code download;dur=812.4;desc="1271654 B", decode;dur=95.1, total;dur=1020.7}.
+	 */
+	synchronized String serverTiming() {
+		StringBuilder header = new StringBuilder(32 * (stages.size() + 1));
+		for (Map.Entry<String, long[]> entry : stages.entrySet()) {
+			long[] stage = entry.getValue();
+			header.append(entry.getKey()).append(";dur=").append(millis(stage[0]));
+			if (stage[2] >= 0) {
+				header.append(";desc=\"").append(stage[2]).append(" B\"");
+			}
+			header.append(", ");
+		}
+		return header.append("total;dur=").append(millis(elapsedNanos())).toString();
+	}
+
+	/**
+	 * Immutable copy of this trace for the slow-request log.
+	 */
+	synchronized Snapshot snapshot(int status, long totalNanos) {
+		List<Stage> copy = new ArrayList<>(stages.size());
+		stages.forEach((name, stage) -> copy.add(new Stage(name, millis(stage[0]), (int) stage[1], stage[2])));
+		return new Snapshot(method, path, status, startedAt, millis(totalNanos), List.copyOf(copy));
+	}
+
+	private static double millis(long nanos) {
+		return Math.round(nanos / 10_000.0) / 100.0;
+	}
+
+	/**
+	 * A finished request as reported by /api/diagnostics/slow-requests.
+	 */
+	public record Snapshot(String method, String path, int status, Instant startedAt, double totalMs,
+						   List<Stage> stages) {
+	}
+
+	/**
+	 * Time and bytes attributed to one stage; bytes is -1 when the stage does not move data.
+	 */
+	public record Stage(String name, double durationMs, int calls, long bytes) {
+	}
+}
@@ -0,0 +1,120 @@
+package com.daffidev.backcityplanner.tracing;
+
+/**
+ * Entry point for stage tracing. Services wrap their expensive steps in a span:
+ *
+ * <pre>
+ * try (RequestTracing.Span span = RequestTracing.span("decode")) {
+ *     image = ImageIO.read(stream);
+ *     span.bytes(length);
+ * }
+ * </pre>
+ *
+ * The trace is bound to the request thread by {@link RequestTracingFilter}. Outside a
+ * traced request (tracing disabled, background threads, benchmarks) {@link #span(String)}
+ * returns a shared no-op span, so the cost is one ThreadLocal lookup.
+ */
+public final class RequestTracing {
+
+	private static final ThreadLocal<RequestTrace> CURRENT = new ThreadLocal<>();
+
+	private RequestTracing() {
+	}
+
+	/**
+	 * Starts a stage of the current request's trace.
+	 *
+	 * @param stage stage name, used as the Server-Timing metric name
+	 * @return a span to close when the stage ends
+	 */
+	public static Span span(String stage) {
+		RequestTrace trace = CURRENT.get();
+		return trace == null ? Span.NOOP : new Span(trace, stage);
+	}
+
+	/**
+	 * Records a stage timed elsewhere, e.g. time spent queued before a pool picked the work up.
+	 *
+	 * @param trace the trace to record into; ignored if null
+	 */
+	public static void record(RequestTrace trace, String stage, long nanos) {
+		if (trace != null) {
+			trace.addStage(stage, nanos, -1);
+		}
+	}
+
+	/**
+	 * @return the trace bound to this thread, or null outside a traced request
+	 */
+	public static RequestTrace current() {
+		return CURRENT.get();
+	}
+
+	static RequestTrace begin(String method, String path) {
+		RequestTrace trace = new RequestTrace(method, path);
+		CURRENT.set(trace);
+		return trace;
+	}
+
+	/**
+	 * Binds a trace to the calling thread, e.g. to attribute work handed off to a pool
+	 * back to the request that caused it. Returns the previously bound trace for
+	 * {@link #restore(RequestTrace)}.
+	 */
+	public static RequestTrace attach(RequestTrace trace) {
+		RequestTrace previous = CURRENT.get();
+		CURRENT.set(trace);
+		return previous;
+	}
+
+	/**
+	 * Restores the binding returned by {@link #attach(RequestTrace)}.
+	 */
+	public static void restore(RequestTrace previous) {
+		if (previous == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(previous);
+		}
+	}
+
+	static void end() {
+		CURRENT.remove();
+	}
+
+	/**
+	 * A running stage. Closing it records the elapsed time into the trace it was started on.
+	 */
+	public static class Span implements AutoCloseable {
+
+		static final Span NOOP = new Span(null, null);
+
+		private final RequestTrace trace;
+		private final String stage;
+		private final long startNanos;
+		private long bytes = -1;
+
+		private Span(RequestTrace trace, String stage) {
+			this.trace = trace;
+			this.stage = stage;
+			this.startNanos = trace == null ? 0 : System.nanoTime();
+		}
+
+		/**
+		 * Attributes a byte count (downloaded, decoded or produced) to the stage.
+		 */
+		public Span bytes(long count) {
+			if (trace != null) {
+				bytes = bytes < 0 ? count : bytes + count;
+			}
+			return this;
+		}
+
+		@Override
+		public void close() {
+			if (trace != null) {
+				trace.addStage(stage, System.nanoTime() - startNanos, bytes);
+			}
+		}
+	}
+}
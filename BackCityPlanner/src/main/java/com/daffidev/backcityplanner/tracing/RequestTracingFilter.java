@@ -0,0 +1,56 @@
+package com.daffidev.backcityplanner.tracing;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Binds a {@link RequestTrace} to every API request, hands finished traces to the
+ * {@link SlowRequestLog} and adds the Server-Timing header when the response has not
+ * been committed yet (bodies written by message converters get it from
+ * {@link ServerTimingAdvice}, which runs before the first byte is sent).
+ *
+ * With {@code tracing.enabled=false} the filter is skipped and no trace is created.
+ * Runs before the application's other filters so their work is traced too.
+ */
+@Component
+@Order(0)
+public class RequestTracingFilter extends OncePerRequestFilter {
+
+	static final String SERVER_TIMING = "Server-Timing";
+
+	private final boolean enabled;
+	private final SlowRequestLog slowRequestLog;
+
+	public RequestTracingFilter(@Value("${tracing.enabled:true}") boolean enabled, SlowRequestLog slowRequestLog) {
+		this.enabled = enabled;
+		this.slowRequestLog = slowRequestLog;
+	}
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		return !enabled || !request.getRequestURI().startsWith("/api/");
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+			throws ServletException, IOException {
+		RequestTrace trace = RequestTracing.begin(request.getMethod(), request.getRequestURI());
+		try {
+			chain.doFilter(request, response);
+		} finally {
+			if (!response.isCommitted() && !response.containsHeader(SERVER_TIMING)) {
+				response.setHeader(SERVER_TIMING, trace.serverTiming());
+			}
+			slowRequestLog.offer(trace, response.getStatus(), trace.elapsedNanos());
+			RequestTracing.end();
+		}
+	}
+}
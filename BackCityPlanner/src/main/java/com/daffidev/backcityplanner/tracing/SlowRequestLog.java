@@ -0,0 +1,84 @@
+package com.daffidev.backcityplanner.tracing;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the slowest traced requests with their stage breakdowns.
+ *
+ * Requests under the threshold are ignored, the rest are sampled and the worst
+ * {@code capacity} are retained in a bounded min-heap. Once the log is full, a request
+ * faster than the current minimum is rejected without taking the lock.
+ */
+@Component
+public class SlowRequestLog {
+
+	private final int capacity;
+	private final long thresholdNanos;
+	private final double sampleRate;
+
+	private final PriorityQueue<Entry> worst;
+	private volatile long floorNanos;
+
+	public SlowRequestLog(@Value("${tracing.slow-requests.capacity:50}") int capacity,
+						  @Value("${tracing.slow-requests.threshold-ms:500}") long thresholdMs,
+						  @Value("${tracing.slow-requests.sample-rate:1.0}") double sampleRate) {
+		this.capacity = Math.max(1, capacity);
+		this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+		this.sampleRate = sampleRate;
+		this.worst = new PriorityQueue<>(this.capacity + 1, Comparator.comparingLong(Entry::totalNanos));
+	}
+
+	/**
+	 * Offers a finished request.
+	 *
+	 * @param trace the request's trace
+	 * @param status HTTP status sent
+	 * @param totalNanos time spent in the request
+	 */
+	void offer(RequestTrace trace, int status, long totalNanos) {
+		if (totalNanos < thresholdNanos || totalNanos <= floorNanos) {
+			return;
+		}
+		if (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+			return;
+		}
+		RequestTrace.Snapshot snapshot = trace.snapshot(status, totalNanos);
+		synchronized (worst) {
+			worst.add(new Entry(totalNanos, snapshot));
+			if (worst.size() > capacity) {
+				worst.poll();
+			}
+			floorNanos = worst.size() == capacity ? worst.peek().totalNanos() : 0;
+		}
+	}
+
+	/**
+	 * @return retained requests, slowest first
+	 */
+	public List<RequestTrace.Snapshot> getSlowest() {
+		List<Entry> entries;
+		synchronized (worst) {
+			entries = new ArrayList<>(worst);
+		}
+		entries.sort(Comparator.comparingLong(Entry::totalNanos).reversed());
+		return entries.stream().map(Entry::snapshot).toList();
+	}
+
+	public void clear() {
+		synchronized (worst) {
+			worst.clear();
+			floorNanos = 0;
+		}
+	}
+
+	private record Entry(long totalNanos, RequestTrace.Snapshot snapshot) {
+	}
+}
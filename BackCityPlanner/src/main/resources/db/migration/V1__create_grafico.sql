@@ -0,0 +1,9 @@
+-- Baseline for the 'grafico' table as originally created by Hibernate (ddl-auto=update).
+-- Existing databases already have it, so this is a no-op there.
+CREATE TABLE IF NOT EXISTS grafico (
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    name       VARCHAR(255),
+    year       INTEGER,
+    url        TEXT
+);
@@ -0,0 +1,15 @@
+-- (name, year) is the natural key of a graphic. Re-running the old save path created
+-- duplicates, so keep only the most recent row of each pair before adding the constraint
+-- that backs INSERT ... ON CONFLICT (name, year) in GraficoBulkRepository.
+DELETE FROM grafico a
+    USING grafico b
+    WHERE a.name = b.name
+      AND a.year = b.year
+      AND a.id < b.id;
+
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'uk_grafico_name_year') THEN
+        ALTER TABLE grafico ADD CONSTRAINT uk_grafico_name_year UNIQUE (name, year);
+    END IF;
+END $$;
@@ -0,0 +1,19 @@
+-- Lookups by name, and by (name, year), must stay index scans as the table grows.
+-- uk_grafico_name_year (V2) is already backed by a btree on (name, year), so only create
+-- a plain composite index when no index on grafico leads with those two columns.
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1
+        FROM pg_index i
+        JOIN pg_attribute a1 ON a1.attrelid = i.indrelid AND a1.attnum = i.indkey[0]
+        JOIN pg_attribute a2 ON a2.attrelid = i.indrelid AND a2.attnum = i.indkey[1]
+        WHERE i.indrelid = 'grafico'::regclass
+          AND a1.attname = 'name'
+          AND a2.attname = 'year'
+    ) THEN
+        CREATE INDEX idx_grafico_name_year ON grafico (name, year);
+    END IF;
+END $$;
+
+ANALYZE grafico;
@@ -0,0 +1,19 @@
+-- Compact time series of raster-derived figures, one row per (iso3, year).
+-- Trend and growth queries read only these rows, never the rasters.
+CREATE TABLE IF NOT EXISTS population_stat (
+    id                   BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    iso3                 VARCHAR(3) NOT NULL,
+    year                 INTEGER NOT NULL,
+    total_population     DOUBLE PRECISION,
+    mean_density         DOUBLE PRECISION,
+    max_density          DOUBLE PRECISION,
+    populated_cells      BIGINT,
+    area_km2             DOUBLE PRECISION,
+    growth_from_previous DOUBLE PRECISION,
+    grafico_id           BIGINT REFERENCES grafico (id) ON DELETE SET NULL,
+    updated_at           TIMESTAMP,
+    CONSTRAINT uk_population_stat_iso3_year UNIQUE (iso3, year)
+);
+
+-- Top-N growth queries scan one year across all countries
+CREATE INDEX IF NOT EXISTS idx_population_stat_year_iso3 ON population_stat (year, iso3) INCLUDE (total_population);
@@ -0,0 +1,4 @@
+-- Keyset pages over all graphics order by the NULL-safe (name, year, id) tuple used in
+-- GraficoRepository.findPageAfter; index the same expressions so each page is a range scan.
+CREATE INDEX IF NOT EXISTS idx_grafico_keyset
+    ON grafico ((COALESCE(name, '')), (COALESCE(year, -2147483648)), id);
@@ -0,0 +1,60 @@
+package com.daffidev.backcityplanner.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashRingTests {
+
+	private static final List<String> NODES = List.of("http://localhost:8080", "http://localhost:8081", "http://localhost:8082");
+
+	@Test
+	void spreadsKeysEvenlyAndMovesFewWhenANodeJoins() {
+		HashRing ring = new HashRing(NODES, 128);
+		HashRing grown = new HashRing(List.of(NODES.get(0), NODES.get(1), NODES.get(2), "http://localhost:8083"), 128);
+
+		Map<String, Integer> counts = new HashMap<>();
+		int moved = 0;
+		int keys = 0;
+		for (int year = 2000; year <= 2020; year++) {
+			for (int country = 0; country < 500; country++) {
+				String key = String.format("C%02d/%d", country, year);
+				String owner = ring.owner(key);
+				counts.merge(owner, 1, Integer::sum);
+				String newOwner = grown.owner(key);
+				if (!newOwner.equals(owner)) {
+					// Keys only ever move to the new node
+					assertEquals("http://localhost:8083", newOwner);
+					moved++;
+				}
+				keys++;
+			}
+		}
+
+		for (String node : NODES) {
+			double share = counts.get(node) / (double) keys;
+			assertTrue(share > 0.25 && share < 0.42, node + " owns " + share);
+		}
+		double movedShare = moved / (double) keys;
+		assertTrue(movedShare > 0.15 && movedShare < 0.35, "moved " + movedShare);
+	}
+
+	@Test
+	void unavailableOwnerFallsToItsSuccessor() {
+		HashRing ring = new HashRing(NODES, 128);
+		for (int i = 0; i < 200; i++) {
+			String key = "MEX/" + (1900 + i);
+			String owner = ring.owner(key);
+			String fallback = ring.owner(key, node -> !node.equals(owner));
+			assertNotEquals(owner, fallback);
+			// The same key always falls to the same successor
+			assertEquals(fallback, ring.owner(key, node -> !node.equals(owner)));
+		}
+	}
+}
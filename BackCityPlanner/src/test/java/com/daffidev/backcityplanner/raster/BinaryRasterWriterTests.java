@@ -0,0 +1,102 @@
+package com.daffidev.backcityplanner.raster;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryRasterWriterTests {
+
+	private static final GeoTransform TRANSFORM = new GeoTransform(-99.5, 19.7, 0.0083333333, 0.0083333333);
+
+	@Test
+	void float32GridSamplesEveryStepAndPadsWithNoData() throws IOException {
+		DecodedRaster source = raster(50, 40, DecodedRaster.Storage.FLOAT32);
+		BinaryRasterWriter writer = new BinaryRasterWriter(source, 10, 8, 24, 20, 2, BinaryRasterWriter.Encoding.FLOAT32);
+
+		ByteBuffer body = write(writer);
+		assertEquals(24 * 20 * 4, body.capacity());
+		assertEquals(TRANSFORM.window(10, 8, 2), writer.getTransform());
+		for (int y = 0; y < 20; y++) {
+			for (int x = 0; x < 24; x++) {
+				float value = body.getFloat((y * 24 + x) * 4);
+				if (10 + x * 2 >= 50 || 8 + y * 2 >= 40) {
+					assertTrue(Float.isNaN(value));
+				} else {
+					assertEquals(source.get(10 + x * 2, 8 + y * 2), value);
+				}
+			}
+		}
+	}
+
+	@Test
+	void uint16OfQuantizedRasterCopiesItsCodes() throws IOException {
+		DecodedRaster source = raster(50, 40, DecodedRaster.Storage.QUANTIZED16);
+		BinaryRasterWriter writer = new BinaryRasterWriter(source, 0, 0, 50, 40, 1, BinaryRasterWriter.Encoding.UINT16);
+
+		ByteBuffer body = write(writer);
+		assertEquals(source.getScale(), writer.getScale());
+		assertEquals(source.getOffset(), writer.getOffset());
+		for (int y = 0; y < 40; y++) {
+			for (int x = 0; x < 50; x++) {
+				assertEquals(source.getCode(x, y), Short.toUnsignedInt(body.getShort((y * 50 + x) * 2)));
+			}
+		}
+	}
+
+	@Test
+	void float32OfQuantizedRasterIsRefused() {
+		DecodedRaster source = raster(50, 40, DecodedRaster.Storage.QUANTIZED16);
+
+		assertThrows(IllegalArgumentException.class,
+				() -> new BinaryRasterWriter(source, 0, 0, 50, 40, 1, BinaryRasterWriter.Encoding.FLOAT32));
+		assertEquals(BinaryRasterWriter.Encoding.UINT16, BinaryRasterWriter.Encoding.lossless(source.getStorage()));
+	}
+
+	@Test
+	void uint8DecodesWithinHalfAStep() throws IOException {
+		DecodedRaster source = raster(50, 40, DecodedRaster.Storage.FLOAT32);
+		BinaryRasterWriter writer = new BinaryRasterWriter(source, 0, 0, 50, 40, 1, BinaryRasterWriter.Encoding.UINT8);
+
+		ByteBuffer body = write(writer);
+		for (int y = 0; y < 40; y++) {
+			for (int x = 0; x < 50; x++) {
+				int code = Byte.toUnsignedInt(body.get(y * 50 + x));
+				float expected = source.get(x, y);
+				if (Float.isNaN(expected)) {
+					assertEquals(255, code);
+				} else {
+					assertEquals(expected, writer.getOffset() + code * writer.getScale(), writer.getScale() / 2 + 1e-3);
+				}
+			}
+		}
+	}
+
+	private static ByteBuffer write(BinaryRasterWriter writer) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writer.writeTo(out);
+		assertEquals(writer.getLength(), out.size());
+		return ByteBuffer.wrap(out.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Densities varying per cell, with nodata in the first columns.
+	 */
+	private static DecodedRaster raster(int width, int height, DecodedRaster.Storage storage) {
+		ByteBuffer samples = DecodedRaster.allocateFloat32(width, height);
+		FloatBuffer out = samples.asFloatBuffer();
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				out.put(x < 3 ? Float.NaN : (x * 37 + y * 11) % 900 + 0.25f);
+			}
+		}
+		return DecodedRaster.of(width, height, TRANSFORM, samples, storage);
+	}
+}
@@ -0,0 +1,85 @@
+package com.daffidev.backcityplanner.raster;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatchmentCalculatorTests {
+
+	private static final GeoTransform TRANSFORM = new GeoTransform(-97.0, 20.5, 0.0083333333, 0.0083333333);
+
+	@Test
+	void catchmentsAcrossBandsMatchACellByCellScan() {
+		int width = 300;
+		int height = 600;
+		float[] densities = new float[width * height];
+		Random random = new Random(7);
+		for (int i = 0; i < densities.length; i++) {
+			densities[i] = random.nextInt(10) == 0 ? Float.NaN : random.nextFloat() * 2000;
+		}
+		int count = 200;
+		double[] lon = new double[count];
+		double[] lat = new double[count];
+		double[] radius = new double[count];
+		for (int i = 0; i < count; i++) {
+			// Some facilities near or beyond the raster edges
+			lon[i] = TRANSFORM.lonEdge(random.nextDouble() * (width + 40) - 20);
+			lat[i] = TRANSFORM.latEdge(random.nextDouble() * (height + 40) - 20);
+			radius[i] = 0.5 + random.nextDouble() * 8;
+		}
+
+		CatchmentCalculator calculator = new CatchmentCalculator(raster(width, height, densities), lon, lat, radius);
+		assertTrue(calculator.getBandCount() > 1);
+		CatchmentCalculator.Result result = calculator.compute();
+
+		double[] expected = new double[count];
+		double union = 0;
+		double total = 0;
+		for (int y = 0; y < height; y++) {
+			double cellArea = TRANSFORM.cellAreaKm2(y);
+			for (int x = 0; x < width; x++) {
+				float density = densities[y * width + x];
+				double population = density > 0 ? density * cellArea : 0;
+				total += population;
+				boolean covered = false;
+				for (int i = 0; i < count; i++) {
+					if (distanceKm(x, y, lon[i], lat[i]) <= radius[i]) {
+						expected[i] += population;
+						covered = true;
+					}
+				}
+				if (covered) {
+					union += population;
+				}
+			}
+		}
+
+		assertEquals(total, result.getTotal(), total * 1e-9);
+		assertEquals(union, result.getUnion(), union * 1e-9);
+		for (int i = 0; i < count; i++) {
+			assertEquals(expected[i], result.getFacilities()[i], 1e-6 + expected[i] * 1e-9);
+		}
+	}
+
+	/**
+	 * Distance from a cell centre to a point, measured as the calculator does: rows at the
+	 * constant cell height, columns at the cell width of the cell's row.
+	 */
+	private static double distanceKm(int x, int y, double lon, double lat) {
+		double dx = (x + 0.5 - (lon - TRANSFORM.originX()) / TRANSFORM.pixelWidth()) * TRANSFORM.cellWidthKm(y);
+		double dy = (y + 0.5 - (TRANSFORM.originY() - lat) / TRANSFORM.pixelHeight()) * TRANSFORM.cellHeightKm();
+		return Math.sqrt(dx * dx + dy * dy);
+	}
+
+	private static DecodedRaster raster(int width, int height, float[] densities) {
+		ByteBuffer samples = DecodedRaster.allocateFloat32(width, height);
+		FloatBuffer out = samples.asFloatBuffer();
+		out.put(densities);
+		return DecodedRaster.of(width, height, TRANSFORM, samples, DecodedRaster.Storage.FLOAT32);
+	}
+}
@@ -0,0 +1,44 @@
+package com.daffidev.backcityplanner.raster;
+
+import com.daffidev.backcityplanner.services.RasterTileRenderer;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IndexedPngEncoderTests {
+
+	@Test
+	void everyBitDepthAndFilterDecodesToThePaletteColours() throws IOException {
+		int width = 37;
+		int height = 23;
+		Random random = new Random(3);
+		for (int classes : new int[]{1, 3, 15, 255}) {
+			int[] palette = RasterTileRenderer.palette(classes);
+			byte[] indices = new byte[width * height];
+			for (int i = 0; i < indices.length; i++) {
+				// Runs of equal indices, as in real density classes
+				indices[i] = i % 5 == 0 ? (byte) random.nextInt(palette.length) : indices[Math.max(0, i - 1)];
+			}
+			for (IndexedPngEncoder.Filter filter : IndexedPngEncoder.Filter.values()) {
+				IndexedPngEncoder encoder = new IndexedPngEncoder(palette, filter, 9);
+				BufferedImage image = ImageIO.read(new ByteArrayInputStream(encoder.encode(indices, width, height)));
+
+				assertEquals(width, image.getWidth());
+				assertEquals(height, image.getHeight());
+				assertEquals(encoder.getBitDepth(), image.getColorModel().getPixelSize());
+				for (int y = 0; y < height; y++) {
+					for (int x = 0; x < width; x++) {
+						assertEquals(palette[indices[y * width + x] & 0xFF], image.getRGB(x, y),
+								classes + " classes, " + filter + " at " + x + "," + y);
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package com.daffidev.backcityplanner.raster;
+
+import com.daffidev.backcityplanner.services.LocalRasterStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TiledTiffWriterTests {
+
+	private static final GeoTransform TRANSFORM = new GeoTransform(-118.0, 32.7, 0.0083333333, 0.0083333333);
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void storedRasterMatchesSourcePixelForPixel() throws IOException {
+		LocalRasterStore store = new LocalRasterStore(true, directory.toString());
+		DecodedRaster source = raster(700, 500, 0f);
+
+		Path file = store.store("MEX", 2020, source);
+
+		assertEquals(3, store.levels(file));
+		assertEquals(TRANSFORM, store.readGeoTransform(file));
+		store.verify(file, source);
+
+		DecodedRaster overview = TiledTiffWriter.downsample(source);
+		// Spans four tiles of the 350x250 overview
+		DecodedRaster window = store.readRegion(file, 1, new Rectangle(230, 200, 50, 40));
+		assertEquals(TRANSFORM.window(0, 0, 2).window(230, 200, 1), window.getTransform());
+		for (int y = 0; y < 40; y++) {
+			for (int x = 0; x < 50; x++) {
+				assertEquals(overview.get(230 + x, 200 + y), window.get(x, y));
+			}
+		}
+	}
+
+	@Test
+	void verifyRejectsADifferentRaster() throws IOException {
+		LocalRasterStore store = new LocalRasterStore(true, directory.toString());
+		Path file = store.store("COL", 2020, raster(300, 260, 0f));
+
+		assertThrows(IOException.class, () -> store.verify(file, raster(300, 260, 0.5f)));
+	}
+
+	@Test
+	void streamedFileMatchesTheInMemoryEncoding() throws IOException {
+		TiledTiffWriter writer = new TiledTiffWriter(TiledTiffWriter.Compression.DEFLATE, true, LocalRasterStore.NO_DATA);
+		DecodedRaster source = raster(600, 300, 0f);
+		Path file = directory.resolve("streamed.tif");
+
+		try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+			writer.write(source, out);
+		}
+
+		assertArrayEquals(writer.write(source), Files.readAllBytes(file));
+	}
+
+	/**
+	 * Densities varying per cell, with a nodata border like a coastline.
+	 */
+	private static DecodedRaster raster(int width, int height, float shift) {
+		ByteBuffer samples = DecodedRaster.allocateFloat32(width, height);
+		FloatBuffer out = samples.asFloatBuffer();
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				boolean border = x < 7 || y < 5 || x >= width - 9;
+				out.put(border ? Float.NaN : (x * 31 + y * 17) % 1000 / 3f + shift);
+			}
+		}
+		return DecodedRaster.of(width, height, TRANSFORM, samples, DecodedRaster.Storage.FLOAT32);
+	}
+}
@@ -0,0 +1,110 @@
+package com.daffidev.backcityplanner.raster;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UrbanClusterLabelerTests {
+
+	private static final GeoTransform TRANSFORM = new GeoTransform(-99.5, 19.7, 0.0083333333, 0.0083333333);
+	private static final float THRESHOLD = 300;
+
+	@Test
+	void clustersAcrossTileEdgesMatchAFloodFill() {
+		int width = 600;
+		int height = 530;
+		float[] densities = new float[width * height];
+		Random random = new Random(42);
+		for (int i = 0; i < densities.length; i++) {
+			densities[i] = random.nextInt(10) < 4 ? Float.NaN : random.nextFloat() * 600;
+		}
+		// A ring straddling the corner shared by four tiles
+		for (int y = 230; y < 290; y++) {
+			for (int x = 230; x < 290; x++) {
+				boolean edge = x < 235 || x >= 285 || y < 235 || y >= 285;
+				densities[y * width + x] = edge ? 1000 : 0;
+			}
+		}
+
+		List<UrbanCluster> clusters = new UrbanClusterLabeler(raster(width, height, densities), THRESHOLD).label();
+		List<double[]> expected = floodFill(width, height, densities);
+
+		assertEquals(expected.size(), clusters.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i)[0], clusters.get(i).population(), 1e-6 * expected.get(i)[0]);
+			assertEquals((long) expected.get(i)[1], clusters.get(i).cells());
+		}
+	}
+
+	@Test
+	void rectangleSpanningTilesHasItsCornersAsHull() {
+		int width = 300;
+		int height = 300;
+		float[] densities = new float[width * height];
+		for (int y = 250; y < 270; y++) {
+			for (int x = 200; x < 280; x++) {
+				densities[y * width + x] = 500;
+			}
+		}
+
+		List<UrbanCluster> clusters = new UrbanClusterLabeler(raster(width, height, densities), THRESHOLD).label();
+
+		assertEquals(1, clusters.size());
+		UrbanCluster cluster = clusters.get(0);
+		assertEquals(80 * 20, cluster.cells());
+		assertArrayEquals(new int[]{200, 250, 280, 270}, new int[]{cluster.minX(), cluster.minY(), cluster.maxX(), cluster.maxY()});
+		assertArrayEquals(new int[]{200, 250, 280, 250, 280, 270, 200, 270}, cluster.hull());
+	}
+
+	/**
+	 * Population and cell count of every 4-connected cluster, most populous first.
+	 */
+	private static List<double[]> floodFill(int width, int height, float[] densities) {
+		boolean[] seen = new boolean[densities.length];
+		List<double[]> clusters = new ArrayList<>();
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+		for (int start = 0; start < densities.length; start++) {
+			if (seen[start] || !(densities[start] >= THRESHOLD)) {
+				continue;
+			}
+			double population = 0;
+			long cells = 0;
+			seen[start] = true;
+			queue.add(start);
+			while (!queue.isEmpty()) {
+				int cell = queue.poll();
+				int x = cell % width;
+				int y = cell / width;
+				population += densities[cell] * TRANSFORM.cellAreaKm2(y);
+				cells++;
+				int[] neighbours = {x > 0 ? cell - 1 : -1, x < width - 1 ? cell + 1 : -1,
+						y > 0 ? cell - width : -1, y < height - 1 ? cell + width : -1};
+				for (int next : neighbours) {
+					if (next >= 0 && !seen[next] && densities[next] >= THRESHOLD) {
+						seen[next] = true;
+						queue.add(next);
+					}
+				}
+			}
+			clusters.add(new double[]{population, cells});
+		}
+		clusters.sort(Comparator.comparingDouble((double[] cluster) -> cluster[0]).reversed());
+		return clusters;
+	}
+
+	private static DecodedRaster raster(int width, int height, float[] densities) {
+		ByteBuffer samples = DecodedRaster.allocateFloat32(width, height);
+		FloatBuffer out = samples.asFloatBuffer();
+		out.put(densities);
+		return DecodedRaster.of(width, height, TRANSFORM, samples, DecodedRaster.Storage.FLOAT32);
+	}
+}
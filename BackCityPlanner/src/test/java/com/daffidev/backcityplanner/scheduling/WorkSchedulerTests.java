@@ -0,0 +1,225 @@
+package com.daffidev.backcityplanner.scheduling;
+
+import com.daffidev.backcityplanner.raster.DecodedRaster;
+import com.daffidev.backcityplanner.raster.GeoTransform;
+import com.daffidev.backcityplanner.services.DecodedRasterCache;
+import com.daffidev.backcityplanner.services.LocalRasterStore;
+import com.daffidev.backcityplanner.services.MapService;
+import com.daffidev.backcityplanner.services.PopulationRasterAnalyzer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WorkSchedulerTests {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private WorkScheduler scheduler;
+
+	@AfterEach
+	void stop() {
+		if (scheduler != null) {
+			scheduler.stop();
+		}
+	}
+
+	@Test
+	void bulkWorkYieldsToQueuedInteractiveWorkAtACheckpoint() throws Exception {
+		scheduler = start(1, 0, 2000);
+		CountDownLatch bulkStarted = new CountDownLatch(1);
+		List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+		CompletableFuture<String> bulk = CompletableFuture.supplyAsync(() -> call(() ->
+				scheduler.run(WorkPriority.BULK, () -> {
+					bulkStarted.countDown();
+					await(() -> scheduler.getQueued(WorkPriority.INTERACTIVE) > 0);
+					events.add("checkpoint");
+					WorkScheduler.checkpoint();
+					events.add("resumed");
+					return Thread.currentThread().getName();
+				})));
+		assertTrue(bulkStarted.await(5, TimeUnit.SECONDS));
+
+		String interactiveThread = scheduler.run(WorkPriority.INTERACTIVE, () -> {
+			events.add("interactive");
+			return Thread.currentThread().getName();
+		});
+
+		// The only worker was busy with the bulk task, which ran the interactive work itself
+		assertEquals(bulk.get(5, TimeUnit.SECONDS), interactiveThread);
+		assertEquals(List.of("checkpoint", "interactive", "resumed"), events);
+		assertEquals(1.0, meterRegistry.get("scheduler.preemptions").counter().count());
+	}
+
+	@Test
+	void bulkLimitHoldsUnderLoad() throws Exception {
+		scheduler = start(4, 2, 2000);
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		List<WorkScheduler.Work<Integer>> bulk = new ArrayList<>();
+		for (int i = 0; i < 12; i++) {
+			bulk.add(() -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				sleep(20);
+				running.decrementAndGet();
+				return 0;
+			});
+		}
+		List<WorkScheduler.Work<Integer>> interactive = new ArrayList<>();
+		for (int i = 0; i < 40; i++) {
+			interactive.add(() -> {
+				sleep(5);
+				return 0;
+			});
+		}
+
+		CompletableFuture<List<Integer>> bulkDone = CompletableFuture.supplyAsync(() -> call(() ->
+				scheduler.runAll(WorkPriority.BULK, bulk)));
+		scheduler.runAll(WorkPriority.INTERACTIVE, interactive);
+		assertEquals(12, bulkDone.get(10, TimeUnit.SECONDS).size());
+
+		assertEquals(2, maxRunning.get());
+	}
+
+	@Test
+	void agedBulkWorkIsDispatchedAheadOfNewInteractiveWork() throws Exception {
+		scheduler = start(1, 0, 100);
+		CountDownLatch release = new CountDownLatch(1);
+		List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+		// Keep the only worker busy while work piles up behind it
+		CompletableFuture<Object> blocker = CompletableFuture.supplyAsync(() -> call(() ->
+				scheduler.run(WorkPriority.INTERACTIVE, () -> {
+					await(() -> release.getCount() == 0);
+					return null;
+				})));
+		await(() -> scheduler.getActive(WorkPriority.INTERACTIVE) == 1);
+
+		CompletableFuture<Object> bulk = CompletableFuture.supplyAsync(() -> call(() ->
+				scheduler.run(WorkPriority.BULK, () -> order.add("bulk"))));
+		await(() -> scheduler.getQueued(WorkPriority.BULK) == 1);
+		// Three aging periods lift bulk work above interactive work that has just arrived
+		Thread.sleep(350);
+
+		List<CompletableFuture<Object>> stream = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			stream.add(CompletableFuture.supplyAsync(() -> call(() ->
+					scheduler.run(WorkPriority.INTERACTIVE, () -> order.add("interactive")))));
+		}
+		await(() -> scheduler.getQueued(WorkPriority.INTERACTIVE) == 10);
+		release.countDown();
+
+		blocker.get(5, TimeUnit.SECONDS);
+		bulk.get(5, TimeUnit.SECONDS);
+		for (CompletableFuture<Object> interactive : stream) {
+			interactive.get(5, TimeUnit.SECONDS);
+		}
+		assertEquals("bulk", order.get(0));
+		assertEquals(11, order.size());
+	}
+
+	@Test
+	void regionRequestLentAStoringThreadWaitsForTheStoreInsteadOfDeadlocking(@TempDir Path directory) throws Exception {
+		scheduler = start(1, 0, 2000);
+		MapService mapService = mock(MapService.class);
+		when(mapService.findTiffUrl("MEX", 2020)).thenReturn(Optional.of("https://example.org/mex_2020.tif"));
+		when(mapService.downloadTiff(any())).thenReturn(new byte[0]);
+		PopulationRasterAnalyzer rasterAnalyzer = mock(PopulationRasterAnalyzer.class);
+		when(rasterAnalyzer.decode(any(), eq(DecodedRaster.Storage.FLOAT32))).thenAnswer(invocation -> {
+			// Decoding pauses between tiles like the real decoder, by now with a region request queued
+			await(() -> scheduler.getQueued(WorkPriority.INTERACTIVE) > 0);
+			WorkScheduler.checkpoint();
+			return raster(64, 48);
+		});
+		LocalRasterStore rasterStore = new LocalRasterStore(true, directory.toString());
+		DecodedRasterCache rasterCache = new DecodedRasterCache(mapService, rasterAnalyzer, rasterStore,
+				mock(ApplicationEventPublisher.class), meterRegistry, 1 << 20, DecodedRaster.Storage.FLOAT32, 5000);
+
+		CompletableFuture<Path> store = CompletableFuture.supplyAsync(() -> call(() ->
+				scheduler.run(WorkPriority.BULK, () -> rasterCache.ensureStored("MEX", 2020, false))));
+		await(() -> scheduler.getActive(WorkPriority.BULK) == 1);
+		// What the region handlers do: make sure the raster is stored, then read a window of it
+		DecodedRaster region = scheduler.run(WorkPriority.INTERACTIVE, () ->
+				rasterStore.readRegion(rasterCache.ensureStored("MEX", 2020, false), 0, new Rectangle(8, 8, 16, 16)));
+
+		assertEquals(store.get(5, TimeUnit.SECONDS), rasterStore.find("MEX", 2020).orElseThrow());
+		assertEquals(16, region.getWidth());
+		assertEquals(1.0, meterRegistry.get("scheduler.preemptions").counter().count());
+		verify(mapService, times(1)).downloadTiff(any());
+	}
+
+	private static DecodedRaster raster(int width, int height) {
+		ByteBuffer samples = DecodedRaster.allocateFloat32(width, height);
+		FloatBuffer out = samples.asFloatBuffer();
+		for (int i = 0; i < width * height; i++) {
+			out.put(i % 97);
+		}
+		return DecodedRaster.of(width, height, new GeoTransform(-99.5, 19.7, 0.0083333333, 0.0083333333),
+				samples, DecodedRaster.Storage.FLOAT32);
+	}
+
+	private WorkScheduler start(int threads, int bulkLimit, long agingMillis) {
+		WorkScheduler started = new WorkScheduler(meterRegistry, true, threads, 0, 0, bulkLimit, agingMillis);
+		started.start();
+		return started;
+	}
+
+	@FunctionalInterface
+	private interface Blocking<T> {
+		T call() throws Exception;
+	}
+
+	private static <T> T call(Blocking<T> blocking) {
+		try {
+			return blocking.call();
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private interface Condition {
+		boolean holds();
+	}
+
+	private static void await(Condition condition) throws IOException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (!condition.holds()) {
+			if (System.nanoTime() > deadline) {
+				throw new IOException("Timed out waiting for the scheduler");
+			}
+			sleep(1);
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package com.daffidev.backcityplanner.services;
+
+import com.daffidev.backcityplanner.dto.PopulationImageDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class GraficoWriteBehindQueueTests {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void spilledRowsNeverOverwriteNewerOnes() throws Exception {
+		// Upserts keyed by (name, year), like the database
+		Map<String, String> stored = new ConcurrentHashMap<>();
+		AtomicBoolean databaseUp = new AtomicBoolean(false);
+		GraficoService graficoService = mock(GraficoService.class);
+		doAnswer(invocation -> {
+			if (!databaseUp.get()) {
+				throw new IllegalStateException("database down");
+			}
+			Map<String, List<PopulationImageDto>> dtosByName = invocation.getArgument(0);
+			dtosByName.forEach((name, dtos) -> dtos.forEach(dto ->
+					stored.put(name + "|" + dto.getPopYear(), dto.getUrlImage())));
+			return List.of();
+		}).when(graficoService).bulkSavePopulationGraphics(anyMap());
+
+		Path spillFile = tempDir.resolve("spill.ndjson");
+		GraficoWriteBehindQueue queue = new GraficoWriteBehindQueue(graficoService, new SimpleMeterRegistry(),
+				true, 100, 10, 0, 1000, 0, 1, 5000, spillFile.toString());
+		queue.start();
+		try {
+			queue.enqueue("mex", List.of(new PopulationImageDto(2020, "old.png")));
+			awaitDrained(queue);
+			assertTrue(Files.exists(spillFile));
+
+			databaseUp.set(true);
+			queue.enqueue("mex", List.of(new PopulationImageDto(2020, "new.png")));
+			awaitDrained(queue);
+		} finally {
+			queue.stop();
+		}
+
+		assertEquals("new.png", stored.get("mex|2020"));
+		assertFalse(Files.exists(spillFile));
+	}
+
+	@Test
+	void requestThatDoesNotFitQueuesNothing() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		GraficoService graficoService = mock(GraficoService.class);
+		doAnswer(invocation -> {
+			release.await();
+			return List.of();
+		}).when(graficoService).bulkSavePopulationGraphics(anyMap());
+
+		GraficoWriteBehindQueue queue = new GraficoWriteBehindQueue(graficoService, new SimpleMeterRegistry(),
+				true, 3, 10, 0, 50, 0, 1, 5000, tempDir.resolve("spill.ndjson").toString());
+		queue.start();
+		try {
+			queue.enqueue("mex", List.of(new PopulationImageDto(2020, "a.png"), new PopulationImageDto(2021, "b.png")));
+
+			// One row is free; the second name must not be queued without the first
+			Map<String, List<PopulationImageDto>> request = new LinkedHashMap<>();
+			request.put("col", List.of(new PopulationImageDto(2020, "c.png")));
+			request.put("per", List.of(new PopulationImageDto(2020, "d.png")));
+			assertThrows(GraficoWriteBehindQueue.QueueFullException.class, () -> queue.enqueue(request));
+			assertEquals(2, queue.getPendingRows());
+		} finally {
+			release.countDown();
+			queue.stop();
+		}
+	}
+
+	private static void awaitDrained(GraficoWriteBehindQueue queue) throws InterruptedException {
+		long deadline = System.nanoTime() + 5_000_000_000L;
+		while (queue.getPendingRows() > 0) {
+			assertTrue(System.nanoTime() < deadline, "queue did not drain");
+			Thread.sleep(10);
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package com.daffidev.backcityplanner.benchmarks;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entry point of benchmarks.jar.
+ *
+ * Runs every selected benchmark in throughput and sample-time mode (the latter
+ * reports p50/p90/p99/p999) with the GC profiler attached for allocation rates.
+ *
+ * Usage: java -jar benchmarks.jar [regex] [-quick]
+ */
+public final class BenchmarkRunner {
+
+	private BenchmarkRunner() {
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		String include = BenchmarkRunner.class.getPackageName() + ".*Benchmark.*";
+		boolean quick = false;
+		for (String arg : args) {
+			if ("-quick".equals(arg)) {
+				quick = true;
+			} else {
+				include = arg;
+			}
+		}
+
+		ChainedOptionsBuilder options = new OptionsBuilder()
+				.include(include)
+				.mode(Mode.Throughput)
+				.mode(Mode.SampleTime)
+				.timeUnit(TimeUnit.MILLISECONDS)
+				.addProfiler(GCProfiler.class)
+				.jvmArgsAppend("-Xmx4g")
+				.resultFormat(ResultFormatType.JSON)
+				.result("jmh-result.json");
+
+		if (quick) {
+			options.forks(1)
+					.warmupIterations(2).warmupTime(TimeValue.seconds(1))
+					.measurementIterations(3).measurementTime(TimeValue.seconds(1));
+		} else {
+			options.forks(2)
+					.warmupIterations(3).warmupTime(TimeValue.seconds(2))
+					.measurementIterations(5).measurementTime(TimeValue.seconds(2));
+		}
+
+		new Runner(options.build()).run();
+	}
+}
@@ -0,0 +1,29 @@
+package com.daffidev.backcityplanner.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Loads the WorldPop API responses under src/main/resources/fixtures/worldpop.
+ */
+public final class Fixtures {
+
+	public static final String POPULATION_DENSITY_MEX = "fixtures/worldpop/pd_ic_1km_MEX.json";
+	public static final String POPULATION_MEX = "fixtures/worldpop/WPGP_MEX.json";
+
+	private Fixtures() {
+	}
+
+	public static String load(String resource) {
+		try (InputStream in = Fixtures.class.getClassLoader().getResourceAsStream(resource)) {
+			if (in == null) {
+				throw new IllegalArgumentException("Missing fixture: " + resource);
+			}
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
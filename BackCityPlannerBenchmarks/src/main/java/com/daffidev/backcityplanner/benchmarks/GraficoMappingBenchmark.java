@@ -0,0 +1,84 @@
+package com.daffidev.backcityplanner.benchmarks;
+
+import com.daffidev.backcityplanner.dto.PopulationImageDto;
+import com.daffidev.backcityplanner.entities.Grafico;
+import com.daffidev.backcityplanner.repositories.GraficoBulkRepository;
+import com.daffidev.backcityplanner.services.GraficoService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * GraficoService save path without a database: DTO to entity mapping,
+ * (name, year) de-duplication, upsert SQL construction and parameter binding.
+ */
+@State(Scope.Benchmark)
+public class GraficoMappingBenchmark {
+
+	@Param({"1", "200"})
+	public int countries;
+
+	private GraficoService graficoService;
+	private Map<String, List<PopulationImageDto>> dtosByName;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		GraficoBulkRepository bulkRepository = new GraficoBulkRepository(new BindOnlyJdbcTemplate(), 1000);
+		graficoService = new GraficoService(null, bulkRepository, null,
+				new ConcurrentMapCacheManager(GraficoService.GRAFICOS_BY_NAME_CACHE), new SimpleMeterRegistry());
+
+		List<PopulationImageDto> years = IntStream.rangeClosed(2000, 2020)
+				.mapToObj(year -> new PopulationImageDto(year,
+						"https://www.worldpop.org/tabs/gdata/img/" + year + "/mex_pd_" + year + "_1km_UNadj_Image.png",
+						"https://data.worldpop.org/GIS/Population_Density/Global_2000_2020_1km_UNadj/" + year
+								+ "/MEX/mex_pd_" + year + "_1km_UNadj.tif"))
+				.collect(Collectors.toList());
+		dtosByName = new LinkedHashMap<>();
+		for (int i = 0; i < countries; i++) {
+			dtosByName.put(String.format("C%02d", i), years);
+		}
+	}
+
+	@Benchmark
+	public List<Grafico> bulkSavePopulationGraphics() {
+		return graficoService.bulkSavePopulationGraphics(dtosByName);
+	}
+
+	/**
+	 * Runs the statement setter against a no-op PreparedStatement and returns no rows.
+	 */
+	static class BindOnlyJdbcTemplate extends JdbcTemplate {
+
+		private static final PreparedStatement NO_OP_STATEMENT = (PreparedStatement) Proxy.newProxyInstance(
+				PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+				(proxy, method, args) -> null);
+
+		@Override
+		public <T> List<T> query(String sql, PreparedStatementSetter pss, RowMapper<T> rowMapper) throws DataAccessException {
+			try {
+				pss.setValues(NO_OP_STATEMENT);
+			} catch (SQLException e) {
+				throw new IllegalStateException(e);
+			}
+			return List.of();
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package com.daffidev.backcityplanner.benchmarks;
+
+import com.daffidev.backcityplanner.raster.DecodedRaster;
+import com.daffidev.backcityplanner.raster.IndexedPngEncoder;
+import com.daffidev.backcityplanner.services.PopulationRasterAnalyzer;
+import com.daffidev.backcityplanner.services.RasterTileRenderer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * PNG encoding of an already decoded raster, the second half of TiffConverter:
+ * ImageIO's writer on the decoded image, and the indexed encoder on density classes
+ * as written with mode=indexed.
+ */
+@State(Scope.Benchmark)
+public class PngEncodeBenchmark {
+
+	private static final int CLASSES = 15;
+
+	private BufferedImage image;
+	private byte[] classes;
+	private int width;
+	private int height;
+	private IndexedPngEncoder indexedEncoder;
+
+	@Setup(Level.Trial)
+	public void decode(RasterFixture fixture) throws IOException {
+		image = ImageIO.read(new ByteArrayInputStream(fixture.tiff));
+		DecodedRaster raster = new PopulationRasterAnalyzer().decode(fixture.tiff, DecodedRaster.Storage.FLOAT32);
+		classes = new RasterTileRenderer().renderClasses(raster, CLASSES);
+		width = raster.getWidth();
+		height = raster.getHeight();
+		indexedEncoder = new IndexedPngEncoder(RasterTileRenderer.palette(CLASSES), IndexedPngEncoder.Filter.NONE, 9);
+	}
+
+	@Benchmark
+	public byte[] imageIoWrite() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", out);
+		return out.toByteArray();
+	}
+
+	@Benchmark
+	public byte[] indexedEncode() throws IOException {
+		return indexedEncoder.encode(classes, width, height);
+	}
+}
@@ -0,0 +1,38 @@
+package com.daffidev.backcityplanner.benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Synthetic GeoTIFF shared by the raster benchmarks.
+ *
+ * 4096x2048 is roughly a country the size of Mexico at 1 km. Compression defaults to
+ * DEFLATE like WorldPop downloads; pass -p compression=NONE to isolate decoding.
+ */
+@State(Scope.Benchmark)
+public class RasterFixture {
+
+	@Param({"512x512", "2048x1024", "4096x2048"})
+	public String size;
+
+	@Param({"STRIP", "TILED"})
+	public SyntheticGeoTiff.Layout layout;
+
+	@Param({"DEFLATE"})
+	public SyntheticGeoTiff.Compression compression;
+
+	public int width;
+	public int height;
+	public byte[] tiff;
+
+	@Setup(Level.Trial)
+	public void generate() {
+		int[] dimensions = SyntheticGeoTiff.parseSize(size);
+		width = dimensions[0];
+		height = dimensions[1];
+		tiff = SyntheticGeoTiff.generate(width, height, layout, compression);
+	}
+}
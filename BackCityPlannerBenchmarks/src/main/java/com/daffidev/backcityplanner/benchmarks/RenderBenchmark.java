@@ -0,0 +1,23 @@
+package com.daffidev.backcityplanner.benchmarks;
+
+import com.daffidev.backcityplanner.services.TiffConverter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+/**
+ * Full TIFF to PNG conversion as served by /api/worldpop/tiff/convert (minus the download).
+ */
+@State(Scope.Benchmark)
+public class RenderBenchmark {
+
+	private final TiffConverter tiffConverter = new TiffConverter(new SimpleMeterRegistry(), "NONE", 9);
+
+	@Benchmark
+	public byte[] convertTiffToPng(RasterFixture fixture) throws IOException {
+		return tiffConverter.convertTiffToPng(fixture.tiff);
+	}
+}
@@ -0,0 +1,64 @@
+package com.daffidev.backcityplanner.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Reading the window of {@link TileExtractionBenchmark} as an ImageIO source region,
+ * so that only the strips which intersect it are decoded. Compare with the STRIP
+ * rows of TileExtractionBenchmark.decodeAndCrop.
+ *
+ * Strips only: TwelveMonkeys cannot read source regions of tiled GeoTIFFs that do
+ * not span whole tile rows, so this benchmark has no layout parameter.
+ */
+@State(Scope.Benchmark)
+public class SourceRegionBenchmark {
+
+	@Param({"512x512", "2048x1024", "4096x2048"})
+	public String size;
+
+	@Param({"DEFLATE"})
+	public SyntheticGeoTiff.Compression compression;
+
+	@Param({"256"})
+	public int tileSize;
+
+	private int width;
+	private int height;
+	private byte[] tiff;
+
+	@Setup(Level.Trial)
+	public void generate() {
+		int[] dimensions = SyntheticGeoTiff.parseSize(size);
+		width = dimensions[0];
+		height = dimensions[1];
+		tiff = SyntheticGeoTiff.generate(width, height, SyntheticGeoTiff.Layout.STRIP, compression);
+	}
+
+	@Benchmark
+	public Raster sourceRegion() throws IOException {
+		try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(tiff))) {
+			ImageReader reader = ImageIO.getImageReaders(input).next();
+			try {
+				reader.setInput(input, true, true);
+				ImageReadParam param = reader.getDefaultReadParam();
+				param.setSourceRegion(TileExtractionBenchmark.centerTile(tileSize, width, height));
+				return reader.readRaster(0, param);
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+}
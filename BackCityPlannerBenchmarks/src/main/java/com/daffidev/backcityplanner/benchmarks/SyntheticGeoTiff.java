@@ -0,0 +1,291 @@
+package com.daffidev.backcityplanner.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+
+/**
+ * Generates float32 GeoTIFFs that look like WorldPop density rasters:
+ * a country-shaped mask filled with nodata (-99999) outside, a low rural
+ * background and a few dense urban peaks inside, georeferenced in EPSG:4326
+ * at 30 arc-seconds (~1 km).
+ *
+ * Output is deterministic for a given size, layout and compression.
+ */
+public final class SyntheticGeoTiff {
+
+	public static final float NO_DATA = -99999f;
+
+	/** Pixel size of WorldPop's 1 km products, in degrees. */
+	public static final double PIXEL_SIZE_DEGREES = 0.0083333333;
+
+	public enum Layout {
+		/** Rows grouped into strips of roughly 8 KB, as GDAL writes by default. */
+		STRIP,
+		/** 256×256 tiles. */
+		TILED
+	}
+
+	public enum Compression {
+		NONE(1),
+		DEFLATE(8);
+
+		final int tiffCode;
+
+		Compression(int tiffCode) {
+			this.tiffCode = tiffCode;
+		}
+	}
+
+	private static final int TILE_SIZE = 256;
+
+	private static final int TYPE_ASCII = 2;
+	private static final int TYPE_SHORT = 3;
+	private static final int TYPE_LONG = 4;
+	private static final int TYPE_DOUBLE = 12;
+
+	private SyntheticGeoTiff() {
+	}
+
+	/**
+	 * Parses sizes written as "WIDTHxHEIGHT", as used in benchmark parameters.
+	 */
+	public static int[] parseSize(String size) {
+		String[] parts = size.toLowerCase().split("x");
+		return new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1])};
+	}
+
+	/**
+	 * Density samples of the synthetic country, row-major.
+	 */
+	public static float[] samples(int width, int height) {
+		return samples(width, height, 1.0);
+	}
+
+	/**
+	 * Density samples with every populated cell multiplied by densityScale,
+	 * e.g. to emulate growth across population years.
+	 */
+	public static float[] samples(int width, int height, double densityScale) {
+		Random random = new Random(42L * width + height);
+		int cities = 3 + width * height / 250_000;
+		double[][] peaks = new double[Math.min(cities, 60)][];
+		for (int i = 0; i < peaks.length; i++) {
+			peaks[i] = new double[]{
+					random.nextDouble() * width,
+					random.nextDouble() * height,
+					2 + random.nextDouble() * Math.max(width, height) / 200.0,
+					500 + random.nextDouble() * 15_000
+			};
+		}
+
+		float[] samples = new float[width * height];
+		double cx = width / 2.0;
+		double cy = height / 2.0;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				double dx = (x - cx) / (width * 0.48);
+				double dy = (y - cy) / (height * 0.45);
+				// Irregular "coastline" so masks are not a perfect ellipse
+				double edge = 1 + 0.08 * Math.sin(x * 0.05) * Math.cos(y * 0.03);
+				if (dx * dx + dy * dy > edge) {
+					samples[y * width + x] = NO_DATA;
+					continue;
+				}
+				double density = 2 + 20 * random.nextDouble();
+				for (double[] peak : peaks) {
+					double px = x - peak[0];
+					double py = y - peak[1];
+					double r2 = peak[2] * peak[2];
+					double d2 = px * px + py * py;
+					if (d2 < 9 * r2) {
+						density += peak[3] * Math.exp(-d2 / (2 * r2));
+					}
+				}
+				samples[y * width + x] = (float) (density * densityScale);
+			}
+		}
+		return samples;
+	}
+
+	/**
+	 * Generates a complete GeoTIFF.
+	 */
+	public static byte[] generate(int width, int height, Layout layout, Compression compression) {
+		return encode(samples(width, height), width, height, layout, compression);
+	}
+
+	/**
+	 * Encodes row-major float32 samples as a little-endian GeoTIFF.
+	 */
+	public static byte[] encode(float[] samples, int width, int height, Layout layout, Compression compression) {
+		int blockWidth;
+		int blockHeight;
+		if (layout == Layout.TILED) {
+			blockWidth = TILE_SIZE;
+			blockHeight = TILE_SIZE;
+		} else {
+			blockWidth = width;
+			blockHeight = Math.max(1, 8192 / (width * 4));
+		}
+		int blocksAcross = (width + blockWidth - 1) / blockWidth;
+		int blocksDown = (height + blockHeight - 1) / blockHeight;
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(width * height * 4 + 4096);
+		// Header; the IFD offset is patched once the data is written
+		out.writeBytes(new byte[]{'I', 'I', 42, 0, 0, 0, 0, 0});
+
+		List<Long> offsets = new ArrayList<>();
+		List<Long> byteCounts = new ArrayList<>();
+		ByteBuffer block = ByteBuffer.allocate(blockWidth * blockHeight * 4).order(ByteOrder.LITTLE_ENDIAN);
+		for (int by = 0; by < blocksDown; by++) {
+			for (int bx = 0; bx < blocksAcross; bx++) {
+				block.clear();
+				// Strips only cover the remaining rows; tiles are always full size and padded
+				int rows = layout == Layout.TILED ? blockHeight : Math.min(blockHeight, height - by * blockHeight);
+				for (int row = 0; row < rows; row++) {
+					int y = by * blockHeight + row;
+					for (int col = 0; col < blockWidth; col++) {
+						int x = bx * blockWidth + col;
+						block.putFloat(x < width && y < height ? samples[y * width + x] : NO_DATA);
+					}
+				}
+				byte[] encoded = compress(block.array(), block.position(), compression);
+				offsets.add((long) out.size());
+				byteCounts.add((long) encoded.length);
+				out.writeBytes(encoded);
+				if ((out.size() & 1) == 1) {
+					out.write(0);
+				}
+			}
+		}
+
+		TreeMap<Integer, Object[]> tags = new TreeMap<>();
+		tags.put(256, new Object[]{TYPE_LONG, new long[]{width}});
+		tags.put(257, new Object[]{TYPE_LONG, new long[]{height}});
+		tags.put(258, new Object[]{TYPE_SHORT, new long[]{32}});
+		tags.put(259, new Object[]{TYPE_SHORT, new long[]{compression.tiffCode}});
+		tags.put(262, new Object[]{TYPE_SHORT, new long[]{1}});
+		tags.put(277, new Object[]{TYPE_SHORT, new long[]{1}});
+		tags.put(284, new Object[]{TYPE_SHORT, new long[]{1}});
+		tags.put(339, new Object[]{TYPE_SHORT, new long[]{3}});
+		if (layout == Layout.TILED) {
+			tags.put(322, new Object[]{TYPE_LONG, new long[]{blockWidth}});
+			tags.put(323, new Object[]{TYPE_LONG, new long[]{blockHeight}});
+			tags.put(324, new Object[]{TYPE_LONG, toArray(offsets)});
+			tags.put(325, new Object[]{TYPE_LONG, toArray(byteCounts)});
+		} else {
+			tags.put(273, new Object[]{TYPE_LONG, toArray(offsets)});
+			tags.put(278, new Object[]{TYPE_LONG, new long[]{blockHeight}});
+			tags.put(279, new Object[]{TYPE_LONG, toArray(byteCounts)});
+		}
+		double originLon = -118.0;
+		double originLat = 32.7;
+		tags.put(33550, new Object[]{TYPE_DOUBLE, new double[]{PIXEL_SIZE_DEGREES, PIXEL_SIZE_DEGREES, 0}});
+		tags.put(33922, new Object[]{TYPE_DOUBLE, new double[]{0, 0, 0, originLon, originLat, 0}});
+		tags.put(42113, new Object[]{TYPE_ASCII, "-99999\0".getBytes(StandardCharsets.US_ASCII)});
+
+		int ifdOffset = writeIfd(out, tags);
+		byte[] tiff = out.toByteArray();
+		ByteBuffer.wrap(tiff).order(ByteOrder.LITTLE_ENDIAN).putInt(4, ifdOffset);
+		return tiff;
+	}
+
+	private static byte[] compress(byte[] data, int length, Compression compression) {
+		if (compression == Compression.NONE) {
+			byte[] copy = new byte[length];
+			System.arraycopy(data, 0, copy, 0, length);
+			return copy;
+		}
+		Deflater deflater = new Deflater(6);
+		deflater.setInput(data, 0, length);
+		deflater.finish();
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 2);
+		byte[] buffer = new byte[8192];
+		while (!deflater.finished()) {
+			int n = deflater.deflate(buffer);
+			compressed.write(buffer, 0, n);
+		}
+		deflater.end();
+		return compressed.toByteArray();
+	}
+
+	/**
+	 * Appends an IFD with the given tags (sorted by tag number) and returns its offset.
+	 */
+	private static int writeIfd(ByteArrayOutputStream out, TreeMap<Integer, Object[]> tags) {
+		int ifdOffset = out.size();
+		int ifdSize = 2 + tags.size() * 12 + 4;
+		ByteBuffer ifd = ByteBuffer.allocate(ifdSize).order(ByteOrder.LITTLE_ENDIAN);
+		ByteArrayOutputStream extra = new ByteArrayOutputStream();
+		int extraOffset = ifdOffset + ifdSize;
+
+		ifd.putShort((short) tags.size());
+		for (var entry : tags.entrySet()) {
+			int type = (Integer) entry.getValue()[0];
+			Object values = entry.getValue()[1];
+			byte[] payload = payload(type, values);
+			int count = type == TYPE_ASCII ? payload.length : type == TYPE_DOUBLE ? payload.length / 8
+					: ((long[]) values).length;
+
+			ifd.putShort(entry.getKey().shortValue());
+			ifd.putShort((short) type);
+			ifd.putInt(count);
+			if (payload.length <= 4) {
+				byte[] inline = new byte[4];
+				System.arraycopy(payload, 0, inline, 0, payload.length);
+				ifd.put(inline);
+			} else {
+				ifd.putInt(extraOffset + extra.size());
+				extra.writeBytes(payload);
+				if ((extra.size() & 1) == 1) {
+					extra.write(0);
+				}
+			}
+		}
+		ifd.putInt(0);
+
+		out.writeBytes(ifd.array());
+		out.writeBytes(extra.toByteArray());
+		return ifdOffset;
+	}
+
+	private static byte[] payload(int type, Object values) {
+		if (type == TYPE_ASCII) {
+			return (byte[]) values;
+		}
+		if (type == TYPE_DOUBLE) {
+			double[] doubles = (double[]) values;
+			ByteBuffer buffer = ByteBuffer.allocate(doubles.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+			for (double value : doubles) {
+				buffer.putDouble(value);
+			}
+			return buffer.array();
+		}
+		long[] longs = (long[]) values;
+		int size = type == TYPE_SHORT ? 2 : 4;
+		ByteBuffer buffer = ByteBuffer.allocate(longs.length * size).order(ByteOrder.LITTLE_ENDIAN);
+		for (long value : longs) {
+			if (type == TYPE_SHORT) {
+				buffer.putShort((short) value);
+			} else {
+				buffer.putInt((int) value);
+			}
+		}
+		return buffer.array();
+	}
+
+	private static long[] toArray(List<Long> values) {
+		long[] array = new long[values.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = values.get(i);
+		}
+		return array;
+	}
+}
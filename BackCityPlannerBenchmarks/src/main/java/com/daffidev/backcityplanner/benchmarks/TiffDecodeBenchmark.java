@@ -0,0 +1,36 @@
+package com.daffidev.backcityplanner.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Decoding a whole GeoTIFF, as done by TiffConverter (ImageIO.read) and by
+ * PopulationRasterAnalyzer (ImageReader.readRaster, raw float samples).
+ */
+public class TiffDecodeBenchmark {
+
+	@Benchmark
+	public BufferedImage imageIoRead(RasterFixture fixture) throws IOException {
+		return ImageIO.read(new ByteArrayInputStream(fixture.tiff));
+	}
+
+	@Benchmark
+	public Raster readRaster(RasterFixture fixture) throws IOException {
+		try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(fixture.tiff))) {
+			ImageReader reader = ImageIO.getImageReaders(input).next();
+			try {
+				reader.setInput(input, true, true);
+				return reader.readRaster(0, null);
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package com.daffidev.backcityplanner.benchmarks;
+
+import com.daffidev.backcityplanner.raster.DecodedRaster;
+import com.daffidev.backcityplanner.raster.GeoTransform;
+import com.daffidev.backcityplanner.raster.TiledTiffReader;
+import com.daffidev.backcityplanner.raster.TiledTiffWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reading one square window from the middle of a raster: decoding everything and
+ * cropping, versus a windowed read of the same raster written to the local tiled
+ * store layout. Reading the window as an ImageIO source region is measured by
+ * {@link SourceRegionBenchmark}, on strips only.
+ */
+@State(Scope.Benchmark)
+public class TileExtractionBenchmark {
+
+	@Param({"256"})
+	public int tileSize;
+
+	private Path stored;
+
+	@Setup(Level.Trial)
+	public void store(RasterFixture fixture) throws IOException {
+		float[] values = SyntheticGeoTiff.samples(fixture.width, fixture.height);
+		ByteBuffer samples = DecodedRaster.allocateFloat32(fixture.width, fixture.height);
+		FloatBuffer out = samples.asFloatBuffer();
+		for (float value : values) {
+			out.put(value == SyntheticGeoTiff.NO_DATA ? Float.NaN : value);
+		}
+		GeoTransform transform = new GeoTransform(-118.0, 32.7,
+				SyntheticGeoTiff.PIXEL_SIZE_DEGREES, SyntheticGeoTiff.PIXEL_SIZE_DEGREES);
+		DecodedRaster raster = DecodedRaster.of(fixture.width, fixture.height, transform, samples,
+				DecodedRaster.Storage.FLOAT32);
+		stored = Files.createTempFile("stored-raster", ".tif");
+		Files.write(stored, new TiledTiffWriter(TiledTiffWriter.Compression.DEFLATE, true, SyntheticGeoTiff.NO_DATA)
+				.write(raster));
+	}
+
+	@TearDown(Level.Trial)
+	public void delete() throws IOException {
+		Files.deleteIfExists(stored);
+	}
+
+	@Benchmark
+	public Raster decodeAndCrop(RasterFixture fixture) throws IOException {
+		try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(fixture.tiff))) {
+			ImageReader reader = ImageIO.getImageReaders(input).next();
+			try {
+				reader.setInput(input, true, true);
+				Rectangle tile = centerTile(tileSize, fixture.width, fixture.height);
+				return reader.readRaster(0, null).createChild(tile.x, tile.y, tile.width, tile.height, 0, 0, null);
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+
+	@Benchmark
+	public DecodedRaster storedWindow(RasterFixture fixture) throws IOException {
+		try (TiledTiffReader reader = TiledTiffReader.open(stored)) {
+			return reader.readWindow(0, centerTile(tileSize, fixture.width, fixture.height));
+		}
+	}
+
+	static Rectangle centerTile(int tileSize, int width, int height) {
+		int size = Math.min(tileSize, Math.min(width, height));
+		return new Rectangle((width - size) / 2, (height - size) / 2, size, size);
+	}
+}
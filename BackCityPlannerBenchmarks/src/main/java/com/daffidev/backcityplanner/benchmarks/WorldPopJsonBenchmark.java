@@ -0,0 +1,78 @@
+package com.daffidev.backcityplanner.benchmarks;
+
+import com.daffidev.backcityplanner.dto.PopulationImageDto;
+import com.daffidev.backcityplanner.services.MapService;
+import com.daffidev.backcityplanner.services.PopulationRasterAnalyzer;
+import com.daffidev.backcityplanner.services.RasterTileRenderer;
+import com.daffidev.backcityplanner.services.TiffConverter;
+import com.daffidev.backcityplanner.services.WorldPopClient;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Parsing WorldPop metadata responses and extracting DTOs, as MapService does
+ * after each API call. The HTTP call is replaced by the recorded fixtures.
+ */
+@State(Scope.Benchmark)
+public class WorldPopJsonBenchmark {
+
+	private MapService mapService;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		mapService = new MapService(new FixtureWorldPopClient(meterRegistry), new TiffConverter(meterRegistry, "NONE", 9),
+				new PopulationRasterAnalyzer(), new RasterTileRenderer(), meterRegistry);
+	}
+
+	@Benchmark
+	public List<PopulationImageDto> getPopulationImages() {
+		return mapService.getPopulationImages("MEX");
+	}
+
+	@Benchmark
+	public JsonNode getWorldpopFiles() {
+		return mapService.getWorldpopFilesByIso3("MEX");
+	}
+
+	/**
+	 * Answers from the fixtures, parsing the body on every call like the real client.
+	 */
+	static class FixtureWorldPopClient extends WorldPopClient {
+
+		private final ObjectMapper objectMapper = new ObjectMapper();
+		private final String populationDensity = Fixtures.load(Fixtures.POPULATION_DENSITY_MEX);
+		private final String population = Fixtures.load(Fixtures.POPULATION_MEX);
+
+		FixtureWorldPopClient(SimpleMeterRegistry meterRegistry) {
+			super(meterRegistry, DEFAULT_POPULATION_URL, DEFAULT_POPULATION_DENSITY_URL);
+		}
+
+		@Override
+		public JsonNode fetchPopulationByIso3(String iso3) {
+			return parse(population);
+		}
+
+		@Override
+		public JsonNode fetchPopulationDensityByIso3(String iso3) {
+			return parse(populationDensity);
+		}
+
+		private JsonNode parse(String body) {
+			try {
+				return objectMapper.readTree(body);
+			} catch (com.fasterxml.jackson.core.JsonProcessingException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,323 @@
+package com.daffidev.backcityplanner.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiFunction;
+
+/**
+ * Closed-loop load driver that replays a dashboard-like request mix against a running
+ * BackCityPlanner and reports throughput and latency percentiles per request type.
+ *
+ * Each virtual user picks a request type by weight, a country with Zipf-like popularity
+ * (a few countries get most of the traffic, as on the real dashboard) and, for rasters,
+ * a year skewed towards the most recent ones; then waits {@code --think-ms} and repeats.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar com.daffidev.backcityplanner.loadtest.LoadDriver \
+ *     --target=http://localhost:8080 --stub=http://localhost:8089 \
+ *     --users=32 --duration=60s --warmup=10s \
+ *     --mix=metadata:40,files:10,graphics:25,series:10,render:15
+ * </pre>
+ *
+ * The {@code render} type asks the app to convert a GeoTIFF served by {@link WorldPopStubServer}.
+ */
+public final class LoadDriver {
+
+	private static final String[] COUNTRIES = {
+			"MEX", "USA", "BRA", "COL", "ARG", "PER", "CHL", "GTM", "ECU", "BOL",
+			"CUB", "HND", "PRY", "NIC", "SLV", "CRI", "PAN", "URY", "DOM", "VEN"
+	};
+	private static final int FIRST_YEAR = 2000;
+	private static final int LAST_YEAR = 2020;
+
+	private static final Map<String, BiFunction<Options, ThreadLocalRandom, String>> REQUEST_TYPES = new LinkedHashMap<>();
+
+	static {
+		REQUEST_TYPES.put("metadata", (o, r) -> "/api/images/map?iso3=" + country(r));
+		REQUEST_TYPES.put("files", (o, r) -> "/api/worldpop/files?iso3=" + country(r));
+		REQUEST_TYPES.put("graphics", (o, r) -> "/api/graphics/" + country(r));
+		REQUEST_TYPES.put("series", (o, r) -> "/api/population/" + country(r) + "/series");
+		REQUEST_TYPES.put("render", (o, r) -> "/api/worldpop/tiff/convert?url="
+				+ URLEncoder.encode(o.stub + "/data/" + country(r) + '/' + year(r) + ".tif", StandardCharsets.UTF_8));
+	}
+
+	private final Options options;
+	private final HttpClient client;
+	private final String[] types;
+	private final int[] cumulativeWeights;
+
+	public LoadDriver(Options options) {
+		this.options = options;
+		this.client = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_1_1)
+				.connectTimeout(Duration.ofSeconds(5))
+				.build();
+		this.types = options.mix.keySet().toArray(new String[0]);
+		this.cumulativeWeights = new int[types.length];
+		int total = 0;
+		for (int i = 0; i < types.length; i++) {
+			total += options.mix.get(types[i]);
+			cumulativeWeights[i] = total;
+		}
+	}
+
+	/**
+	 * Runs the warm-up and the measured phase and returns the measured results.
+	 */
+	public Map<String, Recorder> run() throws InterruptedException {
+		if (options.warmup.toMillis() > 0) {
+			System.out.printf("Warming up for %ds...%n", options.warmup.toSeconds());
+			runPhase(options.warmup);
+		}
+		System.out.printf("Measuring for %ds with %d users...%n", options.duration.toSeconds(), options.users);
+		return runPhase(options.duration);
+	}
+
+	private Map<String, Recorder> runPhase(Duration duration) throws InterruptedException {
+		long deadline = System.nanoTime() + duration.toNanos();
+		List<Map<String, Recorder>> perUser = new ArrayList<>();
+		CountDownLatch done = new CountDownLatch(options.users);
+		for (int u = 0; u < options.users; u++) {
+			Map<String, Recorder> recorders = new LinkedHashMap<>();
+			for (String type : types) {
+				recorders.put(type, new Recorder());
+			}
+			perUser.add(recorders);
+			Thread user = new Thread(() -> {
+				try {
+					userLoop(deadline, recorders);
+				} finally {
+					done.countDown();
+				}
+			}, "load-user-" + u);
+			user.setDaemon(true);
+			user.start();
+		}
+		done.await();
+
+		Map<String, Recorder> merged = new LinkedHashMap<>();
+		for (String type : types) {
+			Recorder total = new Recorder();
+			for (Map<String, Recorder> recorders : perUser) {
+				total.merge(recorders.get(type));
+			}
+			merged.put(type, total);
+		}
+		return merged;
+	}
+
+	private void userLoop(long deadline, Map<String, Recorder> recorders) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		while (System.nanoTime() < deadline) {
+			String type = pickType(random);
+			String path = REQUEST_TYPES.get(type).apply(options, random);
+			HttpRequest request = HttpRequest.newBuilder(URI.create(options.target + path))
+					.timeout(options.timeout)
+					.GET()
+					.build();
+			long start = System.nanoTime();
+			boolean ok;
+			try {
+				HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+				// Read the body fully so timings include the transfer
+				try (InputStream body = response.body()) {
+					body.transferTo(OutputStream.nullOutputStream());
+				}
+				// 204 is a valid "nothing stored yet" answer for dashboard lookups
+				ok = response.statusCode() < 400;
+			} catch (IOException e) {
+				ok = false;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			recorders.get(type).record(System.nanoTime() - start, ok);
+
+			if (options.thinkMs > 0) {
+				try {
+					Thread.sleep(random.nextLong(options.thinkMs / 2, options.thinkMs * 3 / 2 + 1));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	private String pickType(ThreadLocalRandom random) {
+		int roll = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+		for (int i = 0; i < cumulativeWeights.length; i++) {
+			if (roll < cumulativeWeights[i]) {
+				return types[i];
+			}
+		}
+		return types[types.length - 1];
+	}
+
+	/**
+	 * Country with Zipf(1) popularity over {@link #COUNTRIES}.
+	 */
+	private static String country(ThreadLocalRandom random) {
+		double harmonic = 0;
+		for (int rank = 1; rank <= COUNTRIES.length; rank++) {
+			harmonic += 1.0 / rank;
+		}
+		double roll = random.nextDouble() * harmonic;
+		for (int rank = 1; rank <= COUNTRIES.length; rank++) {
+			roll -= 1.0 / rank;
+			if (roll <= 0) {
+				return COUNTRIES[rank - 1];
+			}
+		}
+		return COUNTRIES[COUNTRIES.length - 1];
+	}
+
+	/**
+	 * Year skewed towards the latest ones: half the requests ask for the last five years.
+	 */
+	private static int year(ThreadLocalRandom random) {
+		if (random.nextBoolean()) {
+			return LAST_YEAR - random.nextInt(5);
+		}
+		return FIRST_YEAR + random.nextInt(LAST_YEAR - FIRST_YEAR + 1);
+	}
+
+	static void report(Map<String, Recorder> results, Duration duration) {
+		double seconds = duration.toMillis() / 1000.0;
+		String format = "%-10s %9s %8s %10s %9s %9s %9s %9s %9s%n";
+		System.out.printf(format, "type", "requests", "errors", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+		Recorder all = new Recorder();
+		for (Map.Entry<String, Recorder> entry : results.entrySet()) {
+			entry.getValue().print(format, entry.getKey(), seconds);
+			all.merge(entry.getValue());
+		}
+		all.print(format, "total", seconds);
+	}
+
+	/**
+	 * Latencies of one request type. Not thread-safe; every user records into its own.
+	 */
+	public static final class Recorder {
+		private long[] latencies = new long[1024];
+		private int count;
+		private long errors;
+
+		void record(long nanos, boolean ok) {
+			if (count == latencies.length) {
+				latencies = Arrays.copyOf(latencies, count * 2);
+			}
+			latencies[count++] = nanos;
+			if (!ok) {
+				errors++;
+			}
+		}
+
+		void merge(Recorder other) {
+			for (int i = 0; i < other.count; i++) {
+				record(other.latencies[i], true);
+			}
+			errors += other.errors;
+		}
+
+		void print(String format, String label, double seconds) {
+			long[] sorted = Arrays.copyOf(latencies, count);
+			Arrays.sort(sorted);
+			System.out.printf(format, label, count, errors, String.format("%.1f", count / seconds),
+					millis(sorted, 0.50), millis(sorted, 0.90), millis(sorted, 0.99), millis(sorted, 0.999),
+					millis(sorted, 1.0));
+		}
+
+		private static String millis(long[] sorted, double quantile) {
+			if (sorted.length == 0) {
+				return "-";
+			}
+			int index = (int) Math.ceil(quantile * sorted.length) - 1;
+			return String.format("%.1f", sorted[Math.max(0, index)] / 1e6);
+		}
+	}
+
+	/**
+	 * Driver settings; parsed from {@code --name=value} arguments.
+	 */
+	public static final class Options {
+		String target = "http://localhost:8080";
+		String stub = "http://localhost:8089";
+		int users = 16;
+		Duration duration = Duration.ofSeconds(60);
+		Duration warmup = Duration.ofSeconds(10);
+		Duration timeout = Duration.ofSeconds(30);
+		long thinkMs = 0;
+		Map<String, Integer> mix = parseMix("metadata:40,files:10,graphics:25,series:10,render:15");
+
+		public static Options parse(String[] args) {
+			Options options = new Options();
+			for (String arg : args) {
+				String[] kv = arg.replaceFirst("^--", "").split("=", 2);
+				if (kv.length != 2) {
+					throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+				}
+				switch (kv[0]) {
+					case "target" -> options.target = kv[1].replaceAll("/$", "");
+					case "stub" -> options.stub = kv[1].replaceAll("/$", "");
+					case "users" -> options.users = Integer.parseInt(kv[1]);
+					case "duration" -> options.duration = parseDuration(kv[1]);
+					case "warmup" -> options.warmup = parseDuration(kv[1]);
+					case "timeout" -> options.timeout = parseDuration(kv[1]);
+					case "think-ms" -> options.thinkMs = Long.parseLong(kv[1]);
+					case "mix" -> options.mix = parseMix(kv[1]);
+					default -> throw new IllegalArgumentException("Unknown option: " + kv[0]);
+				}
+			}
+			return options;
+		}
+
+		static Duration parseDuration(String value) {
+			if (value.endsWith("ms")) {
+				return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+			}
+			if (value.endsWith("m")) {
+				return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+			}
+			return Duration.ofSeconds(Long.parseLong(value.replaceAll("s$", "")));
+		}
+
+		static Map<String, Integer> parseMix(String value) {
+			Map<String, Integer> mix = new LinkedHashMap<>();
+			for (String entry : value.split(",")) {
+				String[] kv = entry.split(":", 2);
+				if (!REQUEST_TYPES.containsKey(kv[0])) {
+					throw new IllegalArgumentException("Unknown request type '" + kv[0] + "', expected one of " + REQUEST_TYPES.keySet());
+				}
+				int weight = kv.length == 2 ? Integer.parseInt(kv[1]) : 1;
+				if (weight > 0) {
+					mix.put(kv[0], weight);
+				}
+			}
+			if (mix.isEmpty()) {
+				throw new IllegalArgumentException("Request mix is empty: " + value);
+			}
+			return mix;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = Options.parse(args);
+		Map<String, Recorder> results = new LoadDriver(options).run();
+		report(results, options.duration);
+	}
+}
@@ -0,0 +1,277 @@
+package com.daffidev.backcityplanner.loadtest;
+
+import com.daffidev.backcityplanner.benchmarks.Fixtures;
+import com.daffidev.backcityplanner.benchmarks.SyntheticGeoTiff;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stand-in for the WorldPop REST API and its data host, so the service can be
+ * load-tested offline and without hitting a third party.
+ *
+ * <ul>
+ *   <li>{@code GET /rest/data/pop/WPGP?iso3=XXX} and
+ *       {@code GET /rest/data/pop_density/pd_ic_1km?iso3=XXX} serve the recorded MEX
+ *       responses re-labelled for the requested country, with every file and image
+ *       URL rewritten to point back at this server.</li>
+ *   <li>{@code GET /data/{iso3}/{year}.tif} serves a synthetic float32 GeoTIFF whose
+ *       densities grow by 1.5% a year, so consecutive years differ.</li>
+ *   <li>{@code GET /img/{iso3}/{year}.png} serves a 1×1 placeholder PNG.</li>
+ * </ul>
+ *
+ * Every response can be delayed ({@code --latency-ms}, {@code --jitter-ms}),
+ * throttled ({@code --bandwidth-kbps}) or replaced by a 503 ({@code --error-rate}).
+ *
+ * Point the app at it with:
+ * <pre>
+ * --worldpop.api.population-url=http://localhost:8089/rest/data/pop/WPGP
+ * --worldpop.api.population-density-url=http://localhost:8089/rest/data/pop_density/pd_ic_1km
+ * </pre>
+ */
+public final class WorldPopStubServer implements AutoCloseable {
+
+	private static final Pattern TIFF_PATH = Pattern.compile("/data/([A-Za-z]{3})/(\\d{4})\\.tif");
+	private static final Pattern IMG_PATH = Pattern.compile("/img/([A-Za-z]{3})/(\\d{4})\\.png");
+	private static final Pattern FILES_URL = Pattern.compile(
+			"\"https://data\\.worldpop\\.org/[^\"]*?/(\\d{4})/MEX/[^\"]*\\.tif\"");
+	private static final Pattern IMG_URL = Pattern.compile(
+			"\"https://www\\.worldpop\\.org/tabs/gdata/img/[^\"]*?_(\\d{4})_[^\"]*\\.png\"");
+
+	private static final int BASE_YEAR = 2000;
+	private static final double ANNUAL_GROWTH = 0.015;
+	private static final int THROTTLE_CHUNK = 8192;
+
+	/** Smallest valid PNG: 1×1 transparent pixel. */
+	private static final byte[] PLACEHOLDER_PNG = Base64.getDecoder().decode(
+			"iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNkYPhfDwAChwGA60e6kgAAAABJRU5ErkJggg==");
+
+	private final Options options;
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final String populationTemplate;
+	private final String densityTemplate;
+	private final Map<String, byte[]> tiffs = new ConcurrentHashMap<>();
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong injectedErrors = new AtomicLong();
+
+	public WorldPopStubServer(Options options) throws IOException {
+		this.options = options;
+		this.populationTemplate = Fixtures.load(Fixtures.POPULATION_MEX);
+		this.densityTemplate = Fixtures.load(Fixtures.POPULATION_DENSITY_MEX);
+		this.server = HttpServer.create(new InetSocketAddress(options.port), 512);
+		// Latency is simulated by sleeping, so each in-flight request needs its own thread
+		this.executor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "worldpop-stub");
+			thread.setDaemon(true);
+			return thread;
+		});
+		server.setExecutor(executor);
+		server.createContext("/", this::handle);
+	}
+
+	public WorldPopStubServer start() {
+		server.start();
+		return this;
+	}
+
+	/**
+	 * Base URL of this server, e.g. {@code http://localhost:8089}.
+	 */
+	public String baseUrl() {
+		return "http://localhost:" + server.getAddress().getPort();
+	}
+
+	public long getRequests() {
+		return requests.get();
+	}
+
+	public long getInjectedErrors() {
+		return injectedErrors.get();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+		try (exchange) {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				send(exchange, 405, "text/plain", "Method not allowed".getBytes(StandardCharsets.UTF_8));
+				return;
+			}
+			delay();
+			if (options.errorRate > 0 && ThreadLocalRandom.current().nextDouble() < options.errorRate) {
+				injectedErrors.incrementAndGet();
+				send(exchange, 503, "text/plain", "Injected failure".getBytes(StandardCharsets.UTF_8));
+				return;
+			}
+
+			URI uri = exchange.getRequestURI();
+			String path = uri.getPath();
+			Matcher tiff = TIFF_PATH.matcher(path);
+			Matcher img = IMG_PATH.matcher(path);
+			if (path.equals("/rest/data/pop/WPGP")) {
+				sendMetadata(exchange, populationTemplate, uri);
+			} else if (path.equals("/rest/data/pop_density/pd_ic_1km")) {
+				sendMetadata(exchange, densityTemplate, uri);
+			} else if (tiff.matches()) {
+				String iso3 = tiff.group(1).toUpperCase(Locale.ROOT);
+				int year = Integer.parseInt(tiff.group(2));
+				send(exchange, 200, "image/tiff", tiffs.computeIfAbsent(iso3 + '/' + year, key -> tiff(year)));
+			} else if (img.matches()) {
+				send(exchange, 200, "image/png", PLACEHOLDER_PNG);
+			} else {
+				send(exchange, 404, "text/plain", "Not found".getBytes(StandardCharsets.UTF_8));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void sendMetadata(HttpExchange exchange, String template, URI uri) throws IOException, InterruptedException {
+		String iso3 = queryParam(uri, "iso3");
+		if (iso3 == null || !iso3.matches("[A-Za-z]{3}")) {
+			send(exchange, 400, "application/json", "{\"error\":\"iso3 is required\"}".getBytes(StandardCharsets.UTF_8));
+			return;
+		}
+		String json = rewrite(template, iso3.toUpperCase(Locale.ROOT));
+		send(exchange, 200, "application/json", json.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Points file and image URLs at this server and re-labels the country.
+	 */
+	private String rewrite(String template, String iso3) {
+		String base = baseUrl();
+		String json = FILES_URL.matcher(template)
+				.replaceAll(match -> Matcher.quoteReplacement('"' + base + "/data/" + iso3 + '/' + match.group(1) + ".tif\""));
+		json = IMG_URL.matcher(json)
+				.replaceAll(match -> Matcher.quoteReplacement('"' + base + "/img/" + iso3 + '/' + match.group(1) + ".png\""));
+		return json.replace("\"iso3\": \"MEX\"", "\"iso3\": \"" + iso3 + '"')
+				.replace("/MEX/", '/' + iso3 + '/')
+				.replace("mex_", iso3.toLowerCase(Locale.ROOT) + '_');
+	}
+
+	private byte[] tiff(int year) {
+		double scale = Math.pow(1 + ANNUAL_GROWTH, year - BASE_YEAR);
+		float[] samples = SyntheticGeoTiff.samples(options.rasterWidth, options.rasterHeight, scale);
+		return SyntheticGeoTiff.encode(samples, options.rasterWidth, options.rasterHeight,
+				SyntheticGeoTiff.Layout.STRIP, SyntheticGeoTiff.Compression.DEFLATE);
+	}
+
+	private void delay() throws InterruptedException {
+		long millis = options.latencyMs;
+		if (options.jitterMs > 0) {
+			millis += ThreadLocalRandom.current().nextLong(options.jitterMs + 1);
+		}
+		if (millis > 0) {
+			Thread.sleep(millis);
+		}
+	}
+
+	private void send(HttpExchange exchange, int status, String contentType, byte[] body)
+			throws IOException, InterruptedException {
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			if (options.bandwidthKbps <= 0) {
+				out.write(body);
+				return;
+			}
+			// Write in chunks and sleep so the average rate matches the configured bandwidth
+			double bytesPerMilli = options.bandwidthKbps * 1024 / 8.0 / 1000.0;
+			long start = System.nanoTime();
+			for (int offset = 0; offset < body.length; offset += THROTTLE_CHUNK) {
+				int length = Math.min(THROTTLE_CHUNK, body.length - offset);
+				out.write(body, offset, length);
+				long dueMillis = (long) ((offset + length) / bytesPerMilli);
+				long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+				if (dueMillis > elapsedMillis) {
+					Thread.sleep(dueMillis - elapsedMillis);
+				}
+			}
+		}
+	}
+
+	static String queryParam(URI uri, String name) {
+		String query = uri.getRawQuery();
+		if (query == null) {
+			return null;
+		}
+		for (String pair : query.split("&")) {
+			int eq = pair.indexOf('=');
+			if (eq > 0 && pair.substring(0, eq).equals(name)) {
+				return URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Stub server settings; parsed from {@code --name=value} arguments.
+	 */
+	public static final class Options {
+		int port = 8089;
+		long latencyMs = 0;
+		long jitterMs = 0;
+		long bandwidthKbps = 0;
+		double errorRate = 0;
+		int rasterWidth = 1024;
+		int rasterHeight = 512;
+
+		public static Options parse(String[] args) {
+			Options options = new Options();
+			for (String arg : args) {
+				String[] kv = arg.replaceFirst("^--", "").split("=", 2);
+				if (kv.length != 2) {
+					throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+				}
+				switch (kv[0]) {
+					case "port" -> options.port = Integer.parseInt(kv[1]);
+					case "latency-ms" -> options.latencyMs = Long.parseLong(kv[1]);
+					case "jitter-ms" -> options.jitterMs = Long.parseLong(kv[1]);
+					case "bandwidth-kbps" -> options.bandwidthKbps = Long.parseLong(kv[1]);
+					case "error-rate" -> options.errorRate = Double.parseDouble(kv[1]);
+					case "raster-size" -> {
+						int[] size = SyntheticGeoTiff.parseSize(kv[1]);
+						options.rasterWidth = size[0];
+						options.rasterHeight = size[1];
+					}
+					default -> throw new IllegalArgumentException("Unknown option: " + kv[0]);
+				}
+			}
+			return options;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		Options options = Options.parse(args);
+		WorldPopStubServer stub = new WorldPopStubServer(options).start();
+		System.out.printf("WorldPop stub listening on %s (latency=%dms+%dms, bandwidth=%s, error-rate=%.3f, raster=%dx%d)%n",
+				stub.baseUrl(), options.latencyMs, options.jitterMs,
+				options.bandwidthKbps > 0 ? options.bandwidthKbps + "kbps" : "unlimited",
+				options.errorRate, options.rasterWidth, options.rasterHeight);
+		Runtime.getRuntime().addShutdownHook(new Thread(stub::close));
+		Thread.currentThread().join();
+	}
+}